@@ -0,0 +1,64 @@
+package com.vesta.rest_api.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vesta.rest_api.events.EventBus;
+import com.vesta.rest_api.events.EventPayload;
+import com.vesta.rest_api.events.ObservableEvents;
+import com.vesta.rest_api.patterns.Subject;
+
+/**
+ * Publishing an event to observers through {@link Subject#notifyObservers}.
+ *
+ * Delivery is asynchronous, so this measures what the publisher pays, the
+ * observers only count what they receive.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+
+	@Param({ "1", "4", "16" })
+	public int observers;
+
+	private EventBus bus;
+	private Subject subject;
+	private final LongAdder received = new LongAdder();
+	private final EventPayload<String> event = new EventPayload<>(ObservableEvents.NEW_SONG, "song");
+
+	@Setup
+	public void setup() {
+		bus = new EventBus(2, 64);
+		subject = () -> bus;
+		for (int i = 0; i < observers; i++) {
+			subject.attach(e -> received.increment(), ObservableEvents.NEW_SONG);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		bus.close();
+	}
+
+	@Benchmark
+	public void notifyObservers() {
+		subject.notifyObservers(event);
+	}
+}
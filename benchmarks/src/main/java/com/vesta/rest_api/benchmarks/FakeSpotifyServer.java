@@ -0,0 +1,81 @@
+package com.vesta.rest_api.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import se.michaelthelin.spotify.SpotifyApi;
+
+/**
+ * A local server answering the Spotify endpoints a poll uses with canned
+ * responses, so a tick can be measured without a network or an account.
+ *
+ * If the song is set to change, every currently-playing request returns the
+ * next of two tracks, the worst case where each tick redraws the board.
+ */
+class FakeSpotifyServer implements AutoCloseable {
+	private static final String PROFILE = "{\"id\":\"bench\",\"display_name\":\"Bench\",\"type\":\"user\",\"uri\":\"spotify:user:bench\"}";
+
+	private final HttpServer server;
+	private final boolean songChanges;
+	private final AtomicLong plays = new AtomicLong();
+
+	FakeSpotifyServer(boolean songChanges) throws IOException {
+		this.songChanges = songChanges;
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/v1/me/player/currently-playing", exchange -> respond(exchange, currentlyPlaying()));
+		server.createContext("/v1/me/player/queue", exchange -> respond(exchange, queue()));
+		server.createContext("/v1/me", exchange -> respond(exchange, PROFILE));
+		server.setExecutor(Executors.newFixedThreadPool(2));
+		server.start();
+	}
+
+	/**
+	 * @return An API pointed at this server and already holding a token.
+	 */
+	SpotifyApi api() {
+		return new SpotifyApi.Builder()
+				.setScheme("http")
+				.setHost("127.0.0.1")
+				.setPort(server.getAddress().getPort())
+				.setAccessToken("bench-token")
+				.build();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+
+	private String currentlyPlaying() {
+		long play = songChanges ? plays.getAndIncrement() : 0;
+		return "{\"timestamp\":0,\"progress_ms\":1000,\"is_playing\":true,\"currently_playing_type\":\"track\","
+				+ "\"item\":" + track(play % 2 == 0 ? "a" : "b") + "}";
+	}
+
+	private String queue() {
+		return "{\"currently_playing\":" + track("a") + ",\"queue\":[" + track("c") + "]}";
+	}
+
+	private static String track(String id) {
+		return "{\"id\":\"" + id + "\",\"type\":\"track\",\"uri\":\"spotify:track:" + id + "\","
+				+ "\"name\":\"Track " + id + " (feat. Someone) - Remastered 2011\",\"duration_ms\":200000,"
+				+ "\"artists\":[{\"name\":\"Artist " + id + "\",\"type\":\"artist\"}],"
+				+ "\"album\":{\"name\":\"Album\",\"images\":[{\"url\":\"https://example.com/" + id + ".jpg\"}]}}";
+	}
+
+	private static void respond(HttpExchange exchange, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
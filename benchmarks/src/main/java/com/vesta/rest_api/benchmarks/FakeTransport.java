@@ -0,0 +1,52 @@
+package com.vesta.rest_api.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.vesta.rest_api.http.HttpResult;
+import com.vesta.rest_api.http.HttpTransport;
+
+/**
+ * A transport that answers every request itself, standing in for the
+ * Vestaboard and VBML APIs so only our own work is measured.
+ */
+class FakeTransport extends HttpTransport {
+	private static final String BLANK_LAYOUT;
+
+	static {
+		StringBuilder layout = new StringBuilder("[");
+		for (int row = 0; row < 6; row++) {
+			layout.append(row > 0 ? ",[" : "[");
+			for (int column = 0; column < 22; column++) {
+				layout.append(column > 0 ? ",0" : "0");
+			}
+			layout.append(']');
+		}
+		BLANK_LAYOUT = layout.append(']').toString();
+	}
+
+	private final AtomicLong requests = new AtomicLong();
+
+	FakeTransport() {
+		super(1, 1, 1000, 1000, 1000);
+	}
+
+	@Override
+	public HttpResult get(String url, Map<String, String> headers) {
+		requests.incrementAndGet();
+		return new HttpResult(200, "{\"currentMessage\":{\"layout\":\"" + BLANK_LAYOUT + "\"}}");
+	}
+
+	@Override
+	public HttpResult postJson(String url, Map<String, String> headers, String json) {
+		requests.incrementAndGet();
+		if (url.contains("vbml")) {
+			return new HttpResult(200, BLANK_LAYOUT);
+		}
+		return new HttpResult(200, "{\"status\":\"ok\"}");
+	}
+
+	long getRequests() {
+		return requests.get();
+	}
+}
@@ -0,0 +1,109 @@
+package com.vesta.rest_api.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vesta.rest_api.Component;
+import com.vesta.rest_api.Song;
+import com.vesta.rest_api.SpotifyState;
+import com.vesta.rest_api.board.BoardMirror;
+import com.vesta.rest_api.timer.HashedWheelTimer;
+import com.vesta.rest_api.vbml.TitleNormalizer;
+
+/**
+ * The work done each time the song changes, cleaning up the titles, laying out
+ * the board and building the VBML request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RenderBenchmark {
+	private static final String TITLE = "Don\u2019t Stop Me Now (feat. Someone) - Remastered 2011";
+	private static final String ARTIST = "Beyonc\u00E9";
+
+	private final Song[][] states = {
+			{ new Song(TITLE, ARTIST, null, "now-1"), new Song("Hopp\u00EDpolla", "Sigur R\u00F3s", null, "next-1") },
+			{ new Song("Somebody That I Used To Know", "Gotye", null, "now-2"), new Song("Creep", "Radiohead", null, "next-2") },
+	};
+
+	private Song song;
+	private Component nowPlaying;
+	private Component upNext;
+	private FakeTransport transport;
+	private HashedWheelTimer timer;
+	private SpotifyState board;
+	private int pushes;
+
+	@Setup
+	public void setup() {
+		song = new Song(TITLE, ARTIST, null, "track-1");
+
+		nowPlaying = new Component();
+		nowPlaying.setAlign("top");
+		nowPlaying.setJustify("left");
+		nowPlaying.setHeight(3);
+		nowPlaying.setBody("{66} Now Playing\n{64} Don't Stop Me Now\n{63} Beyonce");
+		upNext = new Component();
+		upNext.setAlign("top");
+		upNext.setJustify("left");
+		upNext.setHeight(3);
+		upNext.setBody("\n{65} Next Up\n{67} Sigur Ros");
+
+		transport = new FakeTransport();
+		timer = new HashedWheelTimer(10, 512, 1);
+		board = new SpotifyState("bench-key", transport, new BoardMirror(), timer);
+	}
+
+	@TearDown
+	public void tearDown() {
+		timer.close();
+	}
+
+	/** A song seen before, answered from the memo. */
+	@Benchmark
+	public String trimmedTitle() {
+		return song.getTrimmedTitle();
+	}
+
+	/** A song seen for the first time. */
+	@Benchmark
+	public String normalizeUncached() {
+		return TitleNormalizer.transliterate(TitleNormalizer.stripTags(TITLE));
+	}
+
+	/** Building the VBML API request, the fake transport answers it straight away. */
+	@Benchmark
+	public String compileComponents() {
+		return Component.compileComponents(transport, nowPlaying, upNext);
+	}
+
+	/** Laying the components out locally, the path used for the board. */
+	@Benchmark
+	public int[][] compose() {
+		return Component.compose(nowPlaying, upNext);
+	}
+
+	/**
+	 * A state change, rendered and handed to the screen scheduler, which sends it
+	 * in the background.
+	 */
+	@Benchmark
+	public void push() {
+		Song[] state = states[pushes++ & 1];
+		board.transition(state[0], state[1]);
+	}
+}
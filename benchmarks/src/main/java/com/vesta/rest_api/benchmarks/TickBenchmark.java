@@ -0,0 +1,71 @@
+package com.vesta.rest_api.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vesta.rest_api.SpotifyIntegration;
+import com.vesta.rest_api.patterns.SpotifyUserSingleton;
+import com.vesta.rest_api.ratelimit.RateLimiter;
+import com.vesta.rest_api.timer.HashedWheelTimer;
+
+/**
+ * A whole {@link SpotifyIntegration#run()} tick, against a fake Spotify server
+ * on loopback and a fake Vestaboard.
+ *
+ * The requests to the fake server are part of the measurement, so compare
+ * allocation per tick more than time per tick between runs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TickBenchmark {
+
+	/** Whether every tick sees a new song, or the same song keeps playing. */
+	@Param({ "false", "true" })
+	public boolean songChanges;
+
+	private FakeSpotifyServer server;
+	private HashedWheelTimer timer;
+	private SpotifyIntegration spot;
+
+	@Setup
+	public void setup() throws IOException {
+		server = new FakeSpotifyServer(songChanges);
+		timer = new HashedWheelTimer(10, 512, 2);
+		// far above what the benchmark can reach, so no tick is rate limited.
+		RateLimiter unlimited = new RateLimiter(1_000_000, 1_000_000, 1);
+		SpotifyUserSingleton user = SpotifyUserSingleton.forApi(server.api(), unlimited, timer);
+		spot = new SpotifyIntegration(user, "bench-key", new FakeTransport(), timer);
+		spot.updateCache();
+		if (!spot.isConnected()) {
+			throw new IllegalStateException("Could not connect to the fake Spotify server");
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		timer.close();
+		server.close();
+	}
+
+	@Benchmark
+	public void tick() {
+		spot.run();
+	}
+}
@@ -1,26 +1,32 @@
 package com.vesta.rest_api;
 
 import java.util.HashMap;
+import java.util.Map;
 
-import org.apache.http.HttpResponse;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import com.google.gson.Gson;
+import com.vesta.rest_api.http.HttpResult;
+import com.vesta.rest_api.http.HttpTransport;
+import com.vesta.rest_api.metrics.CallMetrics;
+import com.vesta.rest_api.vbml.Compositor;
 
 public class Component {
+	private static final Logger LOG = LogManager.getLogger(Component.class);
+	private static final String URL = "https://vbml.vestaboard.com/compose";
+
 	private String justify;
 	private String align;
 	private String body;
 	private Integer height;
+	private Integer width;
 
 	public Component() {
 		justify = "center";
 		align = "center";
 		height = 6;
+		width = 22;
 	}
 
 	public void setJustify(String style) {
@@ -55,6 +61,14 @@ public class Component {
 		return height;
 	}
 
+	public void setWidth(Integer w) {
+		width = w;
+	}
+
+	public Integer getWidth() {
+		return width;
+	}
+
 	/**
 	 * Builds a JSON request string for a component.
 	 *
@@ -65,9 +79,7 @@ public class Component {
 	 *
 	 * @return A JSON string representing the component.
 	 */
-	private String buildRequest() {
-		Gson gson = new Gson();
-
+	private String buildRequest(Gson gson) {
 		HashMap<String, Object> component = new HashMap<>();
 
 		HashMap<String, Object> style = new HashMap<>();
@@ -88,8 +100,32 @@ public class Component {
 		return json;
 	}
 
+	/**
+	 * Lays out the components locally into a board layout.
+	 *
+	 * Unlike {@link #compileComponents(Component...)} this doesn't make a request
+	 * to the VBML API, so use this when sending to the board.
+	 *
+	 * @return A 6x22 array of character codes, ready for
+	 *         {@link Vestaboard#sendLayout(int[][])}.
+	 */
+	public static int[][] compose(Component... components) {
+		return Compositor.compose(components);
+	}
+
 	public static String compileComponents(Component... components) {
-		Gson gson = new Gson();
+		return compileComponents(HttpTransport.getDefault(), components);
+	}
+
+	/**
+	 * Compiles components into a board layout with the VBML API.
+	 *
+	 * @param transport  The shared transport to send the request with.
+	 * @param components The components to compile.
+	 * @return The VBML API's response, a JSON 2D array of character codes, or
+	 *         null if the request fails.
+	 */
+	public static String compileComponents(HttpTransport transport, Component... components) {
 		HashMap<String, Object> compiledComponents = new HashMap<>();
 		HashMap<String, Object>[] componentArray = new HashMap[components.length];
 
@@ -99,6 +135,7 @@ public class Component {
 			style.put("justify", components[i].getJustify());
 			style.put("align", components[i].getAlign());
 			style.put("height", components[i].getHeight());
+			style.put("width", components[i].getWidth());
 
 			component.put("style", style);
 			component.put("template", components[i].getBody());
@@ -107,61 +144,39 @@ public class Component {
 		}
 
 		compiledComponents.put("components", componentArray);
-		String component = gson.toJson(compiledComponents);
-
-		try (CloseableHttpClient client = HttpClients.createDefault()) {
-			HttpPost request = new HttpPost("https://vbml.vestaboard.com/compose");
-			request.setHeader("Content-Type", "application/json");
-			final StringEntity requestBody = new StringEntity(component);
-			request.setEntity(requestBody);
-
-			try {
-				HttpResponse response = client.execute(request);
-				String responseString = EntityUtils.toString(response.getEntity());
-				System.out.println(responseString);
-				return responseString;
-			} catch (Exception e) {
-				e.printStackTrace();
-				return null;
-			}
+		String component = transport.getGson().toJson(compiledComponents);
+
+		try {
+			HttpResult response = CallMetrics.VBML.record("compose", () -> transport.postJson(URL, Map.of(), component));
+			LOG.debug("Response from the VBML API: " + response.body());
+			return response.body();
 		} catch (Exception e) {
 			e.printStackTrace();
 			return null;
 		}
 	}
 
+	public String getVBML() {
+		return getVBML(HttpTransport.getDefault());
+	}
+
 	/**
 	 * Creates a 2D Array for the component.
 	 *
 	 * This method submits the JSON from buildRequest() to Vestaboards VBML API,
 	 * which returns a components 2D array.
 	 *
+	 * @param transport The shared transport to send the request with.
 	 * @return A JSON string representing the component.
 	 */
-	public String getVBML() {
-		final String URL = "https://vbml.vestaboard.com/compose";
-
-		try (CloseableHttpClient client = HttpClients.createDefault()) {
-			HttpPost request = new HttpPost(URL);
-			request.setHeader("Content-Type", "application/json");
-			final String bodyString = buildRequest();
-			final StringEntity requestBody = new StringEntity(bodyString);
-			request.setEntity(requestBody);
-
-			// Who decided needing to nest a try catch inside another try catch was a good
-			// idea.
-			try {
-				HttpResponse response = client.execute(request);
-				String result = EntityUtils.toString(response.getEntity());
-				return result;
-			} catch (Exception e) {
-				e.printStackTrace();
-				;
-				return null;
-			}
+	public String getVBML(HttpTransport transport) {
+		try {
+			final String bodyString = buildRequest(transport.getGson());
+			HttpResult response = CallMetrics.VBML.record("compose", () -> transport.postJson(URL, Map.of(), bodyString));
+			return response.body();
 		} catch (Exception e) {
 			e.printStackTrace();
 			return null;
 		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,25 @@
+package com.vesta.rest_api;
+
+/**
+ * Everything one polling tick needs to know about the user's playback, built
+ * from a single currently-playing request.
+ *
+ * @param song       The song that is playing, including its track ID.
+ * @param isPlaying  Whether playback is running, false if paused.
+ * @param progressMs How far into the song playback was when fetched.
+ * @param durationMs The length of the song.
+ * @param fetchedAt  When the snapshot was fetched, in epoch milliseconds.
+ */
+public record PlaybackSnapshot(Song song, boolean isPlaying, int progressMs, int durationMs, long fetchedAt) {
+
+	/**
+	 * Estimates how much of the song is left, accounting for the time since the
+	 * snapshot was fetched.
+	 *
+	 * @return The remaining time in milliseconds, never negative.
+	 */
+	public long getRemainingMs() {
+		long elapsed = isPlaying ? System.currentTimeMillis() - fetchedAt : 0;
+		return Math.max(0, durationMs - progressMs - elapsed);
+	}
+}
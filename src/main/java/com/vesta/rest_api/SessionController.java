@@ -0,0 +1,117 @@
+package com.vesta.rest_api;
+
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.vesta.rest_api.session.Session;
+import com.vesta.rest_api.session.SessionKey;
+import com.vesta.rest_api.session.SessionRegistry;
+
+/**
+ * Endpoints for running many users and boards from one deployment, see
+ * {@link SessionRegistry}.
+ *
+ * Opening a session returns a token, every other request for the session has
+ * to send it in the X-Session-Token header.
+ *
+ * The single user endpoints in {@link VestaboardController} keep working
+ * alongside these.
+ */
+@RestController
+public class SessionController {
+
+    private static final String TOKEN_HEADER = "X-Session-Token";
+
+    private final SessionRegistry sessions;
+
+    public SessionController(SessionRegistry sessions) {
+        this.sessions = sessions;
+    }
+
+    /**
+     * Opens a session for a user and board, and starts logging the user in.
+     *
+     * @return The token for the session under "token", and the Spotify login
+     *         URL for the user under "auth_url", or 409 if the session is
+     *         already open.
+     */
+    @PostMapping("/sessions")
+    public ResponseEntity<Response> openSession(@RequestParam(value = "user") String user,
+            @RequestParam(value = "board") String board,
+            @RequestParam(value = "board_key") String boardKey) {
+        Session session = sessions.open(new SessionKey(user, board), boardKey);
+        if (session == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(new Response("failure", "Session already open, close it to change the board key"));
+        }
+        return ResponseEntity.ok(new Response("success",
+                Map.of("token", session.token(), "auth_url", sessions.beginLogin(session))));
+    }
+
+    /**
+     * Returns a new Spotify login URL for an open session.
+     */
+    @GetMapping("/sessions/{user}/{board}/auth_url")
+    public ResponseEntity<Response> getAuthURL(@PathVariable String user, @PathVariable String board,
+            @RequestHeader(value = TOKEN_HEADER, required = false) String token) {
+        Session session = sessions.authorize(new SessionKey(user, board), token);
+        if (session == null) {
+            return noSuchSession();
+        }
+        return ResponseEntity.ok(new Response("success", Map.of("auth_url", sessions.beginLogin(session))));
+    }
+
+    /**
+     * Returns the current state of a session's board.
+     */
+    @GetMapping("/sessions/{user}/{board}/current")
+    public ResponseEntity<Response> getCurrentState(@PathVariable String user, @PathVariable String board,
+            @RequestHeader(value = TOKEN_HEADER, required = false) String token) {
+        Session session = sessions.authorize(new SessionKey(user, board), token);
+        if (session == null) {
+            return noSuchSession();
+        }
+        SpotifyIntegration spot = session.spot();
+        Song[] songs = spot.getSongState();
+        return ResponseEntity.ok(new Response("success", new StateResponse(spot.isConnected(), null,
+                spot.isPlaying(), songs[0], songs[1])));
+    }
+
+    /**
+     * Logs the user out, clears the board and forgets the session.
+     */
+    @DeleteMapping("/sessions/{user}/{board}")
+    public ResponseEntity<Response> closeSession(@PathVariable String user, @PathVariable String board,
+            @RequestHeader(value = TOKEN_HEADER, required = false) String token) {
+        Session session = sessions.authorize(new SessionKey(user, board), token);
+        if (session == null) {
+            return noSuchSession();
+        }
+        return ResponseEntity.ok(new Response("success", sessions.close(session.key())));
+    }
+
+    /**
+     * Endpoint to get how many sessions are open and connected.
+     */
+    @GetMapping("/session_stats")
+    public Response getSessionStats() {
+        return new Response("success", sessions.getStats());
+    }
+
+    /**
+     * A wrong token gets the same answer as a session that isn't open, so
+     * neither tells a caller which sessions exist.
+     */
+    private static ResponseEntity<Response> noSuchSession() {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new Response("failure", "No such session"));
+    }
+}
@@ -1,9 +1,18 @@
 package com.vesta.rest_api;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Objects;
 
-public record Song(String title, String artist, String albumArt) { 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.vesta.rest_api.vbml.TitleNormalizer;
+
+public record Song(String title, String artist, String albumArt, String id) { 
+
+	/**
+	 * Create a song that isn't tied to a Spotify track.
+	 */
+	public Song(String title, String artist, String albumArt) {
+		this(title, artist, albumArt, null);
+	}
 	
 	public String getTitle() {
 		return title;
@@ -16,15 +25,48 @@ public record Song(String title, String artist, String albumArt) {
 		return albumArt;
 	}
 
-    public String getTrimmedTitle() {
-        // use regex to remove features from the title.
-        String pattern = "\\s*\\(.*?\\b(ft|featuring|with|feat)\\b.*?\\)";
+	/**
+	 * @return The Spotify track ID, or null if the song isn't a Spotify track.
+	 */
+	public String getId() {
+		return id;
+	}
 
-        Pattern regex = Pattern.compile(pattern, Pattern.CASE_INSENSITIVE);
-        Matcher matcher = regex.matcher(title);
+	/**
+	 * Checks if two songs are the same Spotify track, comparing only the track
+	 * IDs rather than the whole record. Local files have no ID, so if either
+	 * song is missing one the title and artist are compared instead.
+	 *
+	 * @param other The song to compare to, may be null.
+	 * @return true if both songs are the same track.
+	 */
+	public boolean isSameTrack(Song other) {
+		if (other == null) {
+			return false;
+		}
+		if (id == null || other.id == null) {
+			return title != null && title.equals(other.title) && Objects.equals(artist, other.artist);
+		}
+		return id.equals(other.id);
+	}
 
-        String strippedTitle = matcher.replaceAll("");
+	/**
+	 * @return The title without feature credits, remaster or version tags, in
+	 *         characters the board can display. Only for the board, it's left
+	 *         out of the JSON.
+	 * @see TitleNormalizer
+	 */
+	@JsonIgnore
+	public String getTrimmedTitle() {
+		return TitleNormalizer.normalize(id, title, artist).title();
+	}
 
-        return strippedTitle;
-    }
+	/**
+	 * @return The artist in characters the board can display, left out of the
+	 *         JSON.
+	 */
+	@JsonIgnore
+	public String getDisplayArtist() {
+		return TitleNormalizer.normalize(id, title, artist).artist();
+	}
 }
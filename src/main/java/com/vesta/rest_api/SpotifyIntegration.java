@@ -1,15 +1,35 @@
 package com.vesta.rest_api;
 
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.hc.core5.http.ParseException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.vesta.rest_api.board.AlbumArtCache;
+import com.vesta.rest_api.board.BoardMirror;
+import com.vesta.rest_api.cache.StateJournal;
+import com.vesta.rest_api.cache.TrackCache;
+import com.vesta.rest_api.cache.TrackCatalog;
+import com.vesta.rest_api.events.EventBus;
+import com.vesta.rest_api.events.EventPayload;
 import com.vesta.rest_api.events.ObservableEvents;
+import com.vesta.rest_api.history.PlayHistory;
+import com.vesta.rest_api.http.HttpTransport;
+import com.vesta.rest_api.metrics.CallMetrics;
 import com.vesta.rest_api.patterns.SongChangeObserver;
+import com.vesta.rest_api.patterns.SpotifyAPIObserver;
 import com.vesta.rest_api.patterns.SpotifyUserSingleton;
 import com.vesta.rest_api.patterns.Subject;
+import com.vesta.rest_api.ratelimit.RateLimitedException;
+import com.vesta.rest_api.ratelimit.RateLimiter;
+import com.vesta.rest_api.timer.HashedWheelTimer;
 
 import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
 import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
+import se.michaelthelin.spotify.exceptions.detailed.UnauthorizedException;
 
 /**
  * Respoonsible for facillitating the connection of the
@@ -42,19 +62,133 @@ public class SpotifyIntegration implements Subject {
 
     private SpotifyState board;
 
-    public SpotifyIntegration(String clientID, String clientSecret, String redirectURI, String vestaboardKey) {
+    /**
+     * Delivers events to this integration's observers, off the polling thread.
+     */
+    private final EventBus events;
+
+    /**
+     * How many undelivered events an observer can have before the oldest are
+     * dropped.
+     */
+    private static final int EVENT_QUEUE_CAPACITY = 16;
+
+    /**
+     * A state and its version, the version goes up by one every time the state
+     * changes.
+     *
+     * @param version The version of the state.
+     * @param state   The state as returned by /current.
+     */
+    public record VersionedState(long version, StateResponse state) {
+    }
+
+    /**
+     * The state most recently published as a STATE_UPDATE event.
+     */
+    private volatile VersionedState publishedState;
+
+    /**
+     * Where the state is saved for the next start, null if it isn't.
+     */
+    private StateJournal journal;
+
+    /**
+     * Where every song that starts playing is logged, null if they aren't.
+     */
+    private final PlayHistory history;
+
+    /**
+     * The playback fetched by the most recent successful poll, null if nothing
+     * was playing.
+     */
+    private volatile PlaybackSnapshot lastSnapshot;
+
+    /**
+     * Creates an integration for one session of a multi user deployment.
+     *
+     * @param spot          The Spotify user this integration polls.
+     * @param vestaboardKey The read-write key of the user's board.
+     * @param transport     The shared transport every request to the Vestaboard
+     *                      is sent with.
+     * @param timer         Schedules board writes and delivers events, shared
+     *                      between sessions.
+     */
+    public SpotifyIntegration(SpotifyUserSingleton spot, String vestaboardKey, HttpTransport transport,
+            HashedWheelTimer timer) {
+        this(spot, vestaboardKey, transport, timer, null);
+    }
+
+    /**
+     * @param journal Where the token, state and last frame are saved, and
+     *                restored from when starting, may be null.
+     */
+    public SpotifyIntegration(SpotifyUserSingleton spot, String vestaboardKey, HttpTransport transport,
+            HashedWheelTimer timer, StateJournal journal) {
+        this(spot, vestaboardKey, transport, timer, journal, null);
+    }
+
+    /**
+     * @param history Where every song that starts playing is logged, may be
+     *                null.
+     */
+    public SpotifyIntegration(SpotifyUserSingleton spot, String vestaboardKey, HttpTransport transport,
+            HashedWheelTimer timer, StateJournal journal, PlayHistory history) {
         LOG.debug("SpotifyIntegration created.");
+        this.history = history;
 
-        isConnectedCached = false;
+        // a user handed over with a token is already connected.
+        isConnectedCached = spot.isAuthenticated();
         isPlayingCached = false;
+        this.spot = spot;
+        events = new EventBus(timer.getExecutor(), EVENT_QUEUE_CAPACITY);
+
+        // both write to the same board, so they share what they know is on it.
+        BoardMirror mirror = new BoardMirror();
+        board = new SpotifyState(vestaboardKey, transport, mirror, timer);
+
+        SongChangeObserver onSongChange = new SongChangeObserver(vestaboardKey, transport, mirror);
+        // the board is cleared through the state on logout, so it goes through the screen scheduler.
+        attach(onSongChange, ObservableEvents.NEW_SONG);
+        attach(new SpotifyAPIObserver(spot), ObservableEvents.SPOTIFY_TOKEN_EXPIRED);
+        if (journal != null) {
+            restore(journal, mirror);
+        }
+        publishedState = new VersionedState(0, getState());
+    }
 
-        board = new SpotifyState();
+    /**
+     * Pick up where the service left off before a restart, so /current is right
+     * straight away and the board isn't pushed again, then keep the journal up
+     * to date.
+     */
+    private void restore(StateJournal journal, BoardMirror mirror) {
+        int[][] frame = journal.getFrame();
+        if (frame != null) {
+            mirror.seed(frame);
+        }
+        // registered first so a rejected refresh token is cleared from the journal.
+        spot.onRefreshToken(journal::writeRefreshToken);
+        String refreshToken = journal.getRefreshToken();
+        if (refreshToken != null && !spot.isAuthenticated()) {
+            LOG.info("Restoring Spotify login from the state journal.");
+            spot.restoreRefreshToken(refreshToken);
+            StateResponse state = journal.getState();
+            if (state != null) {
+                board.restore(state.nowPlaying(), state.upNext());
+                isPlayingCached = Boolean.TRUE.equals(state.isPlaying());
+                connectedUserCached = state.connectedUser();
+            }
+            isConnectedCached = true;
+        }
 
-        SongChangeObserver onSongChange = new SongChangeObserver(vestaboardKey);
-        attach(onSongChange);
+        mirror.onUpdate(journal::writeFrame);
+        this.journal = journal;
+    }
 
-        spot = SpotifyUserSingleton.getInstance(clientID, clientSecret, redirectURI);
-        LOG.debug("SpotifyUserSingleton has been created.");
+    @Override
+    public EventBus getEventBus() {
+        return events;
     }
 
     /**
@@ -68,6 +202,14 @@ public class SpotifyIntegration implements Subject {
         return authURL;
     }
 
+    /**
+     * Same as {@link #getAuthURL()}, with a state Spotify passes back to the
+     * redirect URI along with the code.
+     */
+    public String getAuthURL(String state) {
+        return spot.getAuthURL(state);
+    }
+
     /**
      * When the user submits an auth token, this method is responsible
      * for "logging in" the user.
@@ -84,6 +226,7 @@ public class SpotifyIntegration implements Subject {
             LOG.info("Error submitting auth token, ERROR_MSG: " + e.getMessage());
         }
         isConnectedCached = spot.isAuthenticated();
+        publishStateIfChanged();
         return isConnectedCached;
     }
 
@@ -92,8 +235,11 @@ public class SpotifyIntegration implements Subject {
         LOG.info("Logged out, resetting spotify auth");
         spot.resetAuth();
         isConnectedCached = false;
+        connectedUserCached = null;
 
+        board.clear();
         notifyObservers(ObservableEvents.LOGOUT);
+        publishStateIfChanged();
     }
 
     public String getConnectedUser() {
@@ -136,6 +282,14 @@ public class SpotifyIntegration implements Subject {
         return isConnectedCached;
     }
 
+    /**
+     * @return The playback fetched by the most recent poll, or null if nothing
+     *         was playing.
+     */
+    public PlaybackSnapshot getLastSnapshot() {
+        return lastSnapshot;
+    }
+
     /**
      * @return A boolean variable representing whether or not the user is currently
      *         playing a song.
@@ -145,42 +299,33 @@ public class SpotifyIntegration implements Subject {
     }
 
     /**
-     * Retrieves the currently playing song from the Spotify service.
+     * Retrieves a snapshot of the user's playback from the Spotify service.
      * 
-     * @return the currently playing {@link Song} if available, or {@code null} if
+     * @return the {@link PlaybackSnapshot} if available, or {@code null} if
      *         an error occurs or no song is playing.
      * @throws RuntimeException if there is an issue with the Spotify service or
      *                          user authentication.
      */
-    private Song getCurrentSong() {
+    private PlaybackSnapshot getPlaybackSnapshot() {
         try {
-            Song currentSong = spot.getCurrentSong();
-            isPlayingCached = true;
-            return currentSong;
+            PlaybackSnapshot snapshot = spot.getPlaybackSnapshot();
+            isPlayingCached = snapshot != null && snapshot.isPlaying();
+            lastSnapshot = snapshot;
+            return snapshot;
         } catch (TooManyRequestsException e) {
-            Integer retryAfter = e.getRetryAfter();
-            LOG.warn("getCurrentSong() raised TooManyRequests exceptions, backing off for " + retryAfter + " seconds.");
-
-            // backoff
-            try {
-                // NOTE: Not a fan of this backoff implementation,
-                // try to see if this can be moved to a RateLimitObserver class.
-                Thread.sleep(retryAfter * 1000);
-                LOG.info("Backoff finished, retrying.");
-                return getCurrentSong();
-            } catch (InterruptedException i) {
-                LOG.warn("Backoff attempt interrupted, ERROR_MSG: " + i.getMessage());
-            }
-
+            // the rate limiter now holds back every request until the Retry-After passes,
+            // the poller picks the tick up again after that instead of this thread sleeping.
+            LOG.warn("getPlaybackSnapshot() raised TooManyRequests exceptions, backing off for " + e.getRetryAfter()
+                    + " seconds.");
+        } catch (RateLimitedException e) {
+            LOG.info("Skipping tick, " + e.getMessage());
+        } catch (UnauthorizedException e) {
+            // the token is normally refreshed before it expires, this only happens if Spotify revoked it early.
+            LOG.warn("Access token was rejected, refreshing it. ERROR MSG: " + e.getLocalizedMessage());
+            notifyObservers(ObservableEvents.SPOTIFY_TOKEN_EXPIRED);
         } catch (SpotifyWebApiException s) {
             String message = s.getLocalizedMessage();
             LOG.warn("Could not get current song due to SpotifyWebApiException ERROR MSG: " + message);
-
-            if (message.equals("The access token expired")) {
-                LOG.warn("Expired access token, should create a method to refresh access token.");
-                notifyObservers(ObservableEvents.SPOTIFY_TOKEN_EXPIRED);
-            }
-
         } catch (IndexOutOfBoundsException e) {
             // typically is thrown when the user isn't playing anything at all
             LOG.info("Not playing anything.");
@@ -201,16 +346,14 @@ public class SpotifyIntegration implements Subject {
      * @throws Throwable if there is an issue retrieving the next song.
      */
     private Song getNextUp() {
-        if (isPlayingCached) {
-            try {
-                return spot.getNextUp();
-            } catch (NullPointerException n) {
-                // typically thrown when nothing is playing
-                LOG.info("Could not get next up due to NullPointerException, likely user isn't playing anything.");
-            } catch (Throwable t) {
-                String message = t.getLocalizedMessage();
-                LOG.warn("Could not get next song, is the user authenticated? ERROR MSG: " + message);
-            }
+        try {
+            return spot.getNextUp();
+        } catch (NullPointerException n) {
+            // typically thrown when nothing is playing
+            LOG.info("Could not get next up due to NullPointerException, likely user isn't playing anything.");
+        } catch (Throwable t) {
+            String message = t.getLocalizedMessage();
+            LOG.warn("Could not get next song, is the user authenticated? ERROR MSG: " + message);
         }
         return null;
     }
@@ -229,61 +372,187 @@ public class SpotifyIntegration implements Subject {
         return null;
     }
 
-    public Song requestSong(String trackName, String artistName) {
-        String query = "\"track\":" + trackName + "\"artist:\"" + artistName;
-        return spot.addToQueue(query);
+    /**
+     * @return How long Spotify requests are blocked for by a Retry-After, 0 if
+     *         not blocked.
+     */
+    public long getRetryDelayMs() {
+        return spot.getRetryDelayMs();
+    }
+
+    /**
+     * @return The counters and quota estimate of the Spotify rate limiter.
+     */
+    public RateLimiter.Stats getRateLimiterStats() {
+        return spot.getRateLimiterStats();
+    }
+
+    /**
+     * @return The hit and miss counters of the track metadata cache.
+     */
+    public TrackCache.Stats getTrackCacheStats() {
+        return spot.getTrackCacheStats();
+    }
+
+    /**
+     * Autocomplete from the tracks seen so far, without asking Spotify.
+     */
+    public List<Song> searchCatalog(String prefix, int limit) {
+        return spot.searchCatalog(prefix, limit);
+    }
+
+    /**
+     * @return The size of the track catalog and how many searches it saved.
+     */
+    public TrackCatalog.Stats getCatalogStats() {
+        return spot.getCatalogStats();
+    }
+
+    /**
+     * @return The send counters and latency of the screen scheduler, under
+     *         "scheduler", and how many frames were sent or skipped because they were already
+     *         on the board, under "mirror", the event bus counters under
+     *         "events", and the album cover cache counters under "albumArt" if
+     *         covers are shown.
+     */
+    public HashMap<String, Object> getBoardStats() {
+        HashMap<String, Object> stats = new HashMap<>();
+        stats.put("events", events.getStats());
+        stats.put("scheduler", board.getSchedulerStats());
+        stats.put("mirror", board.getMirror().getStats());
+        AlbumArtCache.Stats albumArt = board.getAlbumArtStats();
+        if (albumArt != null) {
+            stats.put("albumArt", albumArt);
+        }
+        return stats;
+    }
+
+    /**
+     * Adds a song to the queue and confirms it on the board.
+     *
+     * @return The song added to the queue, or null if nothing was found.
+     * @throws IOException            If there is an issue with network
+     *                                communication.
+     * @throws ParseException         If there is an issue parsing the response.
+     * @throws SpotifyWebApiException If there is an issue with the Spotify Web API.
+     */
+    public Song requestSong(String trackName, String artistName)
+            throws IOException, ParseException, SpotifyWebApiException {
+        Song requested = spot.addToQueue(trackName, artistName);
+        if (requested != null) {
+            board.confirmRequest(requested);
+        }
+        return requested;
     }
 
     /**
      * Main function that runs the main program, designed to be run every n seconds,
      * if the song playing is different from the last time it ran, update the board.
+     *
+     * Each stage is timed in {@link CallMetrics#TICK}.
      */
     public void run() {
         try {
             // Won't run if spotify isn't authenticated, that way I won't get any errors.
-            if (isConnectedCached) {
-                Song currentSong = getCurrentSong();
-                Song upNext = getNextUp();
-                isPlayingCached = spot.isPlaying();
-
-                // if cached songs are empty, that likely means user just logged in.
-                if (board.getCurrentSong() == null && board.getNextSong() == null) {
-                    LOG.trace("Cached songs are empty, updating currentSongCached and upNextCached");
-                    board.setCurrentSong(currentSong);
-                    board.setNextSong(upNext);
-                }
+            if (isConnectedCached && !spot.isAuthenticated()) {
+                // Spotify rejected the refresh token, so stop reporting the user.
+                logout();
+            } else if (isConnectedCached) {
+                CallMetrics.TICK.run("tick", this::tick);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
 
-                /*
-                 * BUG: Apparently this if statement doesn't run on the first update when a user
-                 * connects,
-                 * meaning that the board will only start working after the first song/queue
-                 * change,
-                 * figure this out later.
-                 */
-                if (currentSong != null && !currentSong.equals(board.getCurrentSong())) {
-                    LOG.info("Now playing changed from " + board.getCurrentSong().getTitle() + " to "
-                            + currentSong.getTitle());
-
-                    /*
-                     * update the cache to match the current song before
-                     * notifying the observer
-                     */
-                    board.setCurrentSong(currentSong);
-                    board.setNextSong(upNext);
-                }
-                // also update if the queue is updated. will come useful when requests are
-                // implemented.
-                else if (upNext != null && !upNext.equals(board.getNextSong())) {
+    private void tick() {
+        // one currently-playing request covers the song, play state and progress.
+        PlaybackSnapshot snapshot = CallMetrics.TICK.record("snapshot", this::getPlaybackSnapshot);
+        Song currentSong = snapshot != null ? snapshot.song() : null;
+        Song upNext = snapshot != null ? CallMetrics.TICK.record("next-up", this::getNextUp) : null;
 
-                    LOG.info("Up next changed from " + board.getNextSong().getTitle() + " to " + upNext.getTitle());
+        CallMetrics.TICK.run("update-board", () -> updateBoard(currentSong, upNext));
+        CallMetrics.TICK.run("publish", this::publishStateIfChanged);
+    }
 
-                    // see above
-                    board.setCurrentSong(currentSong);
-                    board.setNextSong(upNext);
-                }
+    /**
+     * Transition the board to the songs if they changed.
+     */
+    private void updateBoard(Song currentSong, Song upNext) {
+        // if cached songs are empty, that likely means user just logged in.
+        if (board.getCurrentSong() == null && board.getNextSong() == null) {
+            LOG.trace("Cached songs are empty, updating currentSongCached and upNextCached");
+            board.transition(currentSong, upNext);
+        }
+
+        /*
+         * BUG: Apparently this if statement doesn't run on the first update when a user
+         * connects,
+         * meaning that the board will only start working after the first song/queue
+         * change,
+         * figure this out later.
+         */
+        if (currentSong != null && !currentSong.isSameTrack(board.getCurrentSong())) {
+            LOG.info("Now playing changed from " + board.getCurrentSong().getTitle() + " to "
+                    + currentSong.getTitle());
+
+            /*
+             * update the cache to match the current song before
+             * notifying the observer
+             */
+            board.transition(currentSong, upNext);
+            recordPlay(lastSnapshot);
+        }
+        // also update if the queue is updated. will come useful when requests are
+        // implemented.
+        else if (upNext != null && !upNext.isSameTrack(board.getNextSong())) {
+
+            LOG.info("Up next changed from " + board.getNextSong().getTitle() + " to " + upNext.getTitle());
+
+            // see above
+            board.transition(currentSong, upNext);
+        }
+    }
+
+    /**
+     * Log a song that just started playing in the play history, dated from when
+     * it started rather than when the poll noticed.
+     */
+    private void recordPlay(PlaybackSnapshot snapshot) {
+        if (history != null && snapshot != null) {
+            history.recordPlay(snapshot.song(), snapshot.fetchedAt() - snapshot.progressMs());
+        }
+    }
+
+    /**
+     * The state as returned by /current, built from the cache so it doesn't
+     * make any requests.
+     */
+    public StateResponse getState() {
+        return new StateResponse(isConnectedCached, connectedUserCached, isPlayingCached, board.getCurrentSong(),
+                board.getNextSong());
+    }
+
+    /**
+     * @return The state as of the last poll, with its version, without making
+     *         any requests.
+     */
+    public VersionedState getVersionedState() {
+        return publishedState;
+    }
+
+    /**
+     * Publish a STATE_UPDATE event if the state differs from the last one
+     * published.
+     */
+    private synchronized void publishStateIfChanged() {
+        StateResponse state = getState();
+        if (!state.equals(publishedState.state())) {
+            publishedState = new VersionedState(publishedState.version() + 1, state);
+            notifyObservers(new EventPayload<StateResponse>(ObservableEvents.STATE_UPDATE, state));
+            if (journal != null) {
+                journal.writeState(state);
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
     }
 
@@ -293,14 +562,21 @@ public class SpotifyIntegration implements Subject {
      */
     public void updateCache() {
         try {
-            isPlayingCached = spot.isPlaying();
+            PlaybackSnapshot snapshot = spot.getPlaybackSnapshot();
+            isPlayingCached = snapshot != null && snapshot.isPlaying();
+            lastSnapshot = snapshot;
+            isConnectedCached = spot.isAuthenticated();
+            // /current serves the cached user, so fetch it even if nothing is playing.
+            connectedUserCached = spot.getConnectedUser();
 
             if (isPlayingCached) {
-                isConnectedCached = spot.isAuthenticated();
-                board.setCurrentSong(spot.getCurrentSong());
-                connectedUserCached = spot.getConnectedUser();
-                board.setNextSong(spot.getNextUp());
+                boolean newSong = !snapshot.song().isSameTrack(board.getCurrentSong());
+                board.transition(snapshot.song(), spot.getNextUp());
+                if (newSong) {
+                    recordPlay(snapshot);
+                }
             }
+            publishStateIfChanged();
         } catch (Exception e) {
             LOG.warn("Error updating cache, ERROR MSG: " + e.getMessage());
         }
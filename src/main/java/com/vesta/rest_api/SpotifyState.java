@@ -1,10 +1,21 @@
 package com.vesta.rest_api;
 
+import java.util.concurrent.CompletableFuture;
+
 // Logging
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import java.util.Timer;
-import java.util.TimerTask;
+
+import com.vesta.rest_api.board.AlbumArtCache;
+import com.vesta.rest_api.board.BoardMirror;
+import com.vesta.rest_api.board.ScreenScheduler;
+import com.vesta.rest_api.board.ScreenScheduler.Slot;
+import com.vesta.rest_api.http.HttpTransport;
+import com.vesta.rest_api.ratelimit.RateLimiter;
+import com.vesta.rest_api.timer.HashedWheelTimer;
+import com.vesta.rest_api.vbml.Compositor;
+import com.vesta.rest_api.vbml.Mosaic;
+import com.vesta.rest_api.vbml.TitleNormalizer;
 
 /**
  * Represents the state of the connected Spotify User
@@ -15,11 +26,11 @@ public class SpotifyState extends Vestaboard {
 	/**
 	 * Represents the current song being played.
 	 */
-	private Song currentSong;
+	private volatile Song currentSong;
 	/**
 	 * Represents the next song to be played.
 	 */
-	private Song nextSong;
+	private volatile Song nextSong;
 
 	/**
 	 * Indicates whether the Spotify player is currently playing.
@@ -38,32 +49,76 @@ public class SpotifyState extends Vestaboard {
 	 */
 	private static final Logger LOG = LogManager.getLogger(SpotifyState.class);
 
+	private static final Song EMPTY_SONG = new Song("", "", "");
+
 	/**
-	 * A flag indicating whether a display update is pending.
-	 * When set to true, indicates that changes have been made but not yet displayed on the Vestaboard.
-	 * When set to false, indicates that all changes have been successfully displayed.
-	 * 
+	 * Sends the state to the board off the caller's thread, keeping only the
+	 * newest state if changes come in faster than the board can show them.
+	 *
 	 * Used primarily in schedulePush()
 	 */
-	private boolean updatePending = false;
-	
+	private final ScreenScheduler scheduler;
 
 	/**
-	 * A Timer instance used for scheduling and executing tasks at specified intervals.
-	 * The timer runs as a dedicated thread for executing scheduled tasks.
-	 *
-	 * Used primarily in schedulePush()
+	 * How long the scheduler waits for more changes before writing, so a burst
+	 * of changes results in a single write.
+	 */
+	private static final long PUSH_LINGER_MS = 100;
+
+	/**
+	 * How long a frame stays on the board before the next one replaces it, the
+	 * flaps take a few seconds to settle.
+	 */
+	private static final long MIN_DISPLAY_MS = 10_000;
+
+	/**
+	 * How many frames may be written to the board a minute, Vestaboard allows
+	 * about one every 15 seconds.
+	 */
+	private static final int WRITES_PER_MINUTE = 4;
+
+	/**
+	 * How many columns the album cover takes when it's shown, the rest are left
+	 * for the songs.
+	 */
+	private static final int ART_COLUMNS = 8;
+
+	/**
+	 * How many rendered album covers are kept.
+	 */
+	private static final int ART_CACHE_SIZE = 256;
+
+	/**
+	 * The album covers of the songs as color chips, null unless
+	 * VESTABOARD_ALBUM_ART is true.
+	 */
+	private final AlbumArtCache albumArt;
+	/**
+	 * The cover a push is waiting on, so it's only waited on once however often
+	 * the state is rendered while it loads.
 	 */
-	private final Timer timer = new Timer();
+	private String awaitedArt;
 
-	public SpotifyState() {
-		super(System.getenv("VESTABOARD_KEY"));
+	/**
+	 * @param key       The read-write key of the board.
+	 * @param transport The shared transport used to send the state to the board.
+	 * @param mirror    The mirror of the board.
+	 * @param timer     The timer board writes are scheduled on.
+	 */
+	public SpotifyState(String key, HttpTransport transport, BoardMirror mirror, HashedWheelTimer timer) {
+		super(key, transport, mirror);
 		LOG.info("Attaching observers to SpotifyState object.");
 		LOG.info("Observers attached!");
 
 		// set the song states to empty songs by default.
-		currentSong = new Song("", "", "");
-		nextSong = new Song("", "", "");
+		currentSong = EMPTY_SONG;
+		nextSong = EMPTY_SONG;
+		RateLimiter budget = new RateLimiter(WRITES_PER_MINUTE, WRITES_PER_MINUTE, 60_000);
+		scheduler = new ScreenScheduler(this, PUSH_LINGER_MS, MIN_DISPLAY_MS, budget, timer);
+		albumArt = Boolean.parseBoolean(System.getenv("VESTABOARD_ALBUM_ART"))
+				? new AlbumArtCache(ART_CACHE_SIZE, Compositor.ROWS, ART_COLUMNS, AlbumArtCache.download(transport),
+						timer.getExecutor())
+				: null;
 	}
 
 	/**
@@ -80,53 +135,171 @@ public class SpotifyState extends Vestaboard {
 	 *
 	 * @param nextSong the Song object representing the next song
 	 */
-	public void setNextSong(Song nextSong) {
-		if (this.nextSong != nextSong) {
+	public synchronized void setNextSong(Song nextSong) {
+		transition(currentSong, nextSong);
+	}
 
-			LOG.info("Updating next song in state to " + nextSong.getTitle());
-			this.nextSong = nextSong;
-			schedulePush();
+	/**
+	 * Atomically updates the current and next song, then pushes the new state to
+	 * the board.
+	 *
+	 * Use this instead of calling {@link #setCurrentSong(Song)} and
+	 * {@link #setNextSong(Song)} one after the other, so the board never shows a
+	 * half updated state.
+	 *
+	 * @param currentSong the song that is now playing
+	 * @param nextSong    the song that is up next
+	 */
+	public synchronized void transition(Song currentSong, Song nextSong) {
+		currentSong = currentSong != null ? currentSong : EMPTY_SONG;
+		nextSong = nextSong != null ? nextSong : EMPTY_SONG;
+		if (this.currentSong == currentSong && this.nextSong == nextSong) {
+			return;
 		}
 
+		LOG.info("Updating state to NOW PLAYING: " + currentSong.getTitle() + " UP NEXT: " + nextSong.getTitle());
+		// a new song matters more than a new next up if the board can only show one.
+		Slot slot = currentSong.equals(this.currentSong) ? Slot.NEXT_UP : Slot.NOW_PLAYING;
+		this.currentSong = currentSong;
+		this.nextSong = nextSong;
+		schedulePush(slot);
 	}
 
 	/**
-	 * "push" the state to the board. basically updates it.
+	 * Forgets the songs and blanks the board, ahead of anything waiting to be
+	 * shown.
+	 */
+	public synchronized void clear() {
+		currentSong = EMPTY_SONG;
+		nextSong = EMPTY_SONG;
+		scheduler.submit(Slot.CLEAR, new int[Compositor.ROWS][Compositor.COLUMNS]);
+	}
+
+	/**
+	 * Briefly shows a requested song on the board, the state is shown again
+	 * once it has been up for the minimum display time.
+	 */
+	public void confirmRequest(Song requested) {
+		Component confirmation = new Component();
+		confirmation.setAlign("center");
+		confirmation.setJustify("center");
+		confirmation.setBody(
+				"{66} Requested {66}\n" +
+						TitleNormalizer.fit(requested.getTrimmedTitle(), Compositor.COLUMNS) +
+						"\n" +
+						TitleNormalizer.fit(requested.getDisplayArtist(), Compositor.COLUMNS));
+		scheduler.submit(Slot.REQUEST_CONFIRMATION, Component.compose(confirmation));
+	}
+
+	/**
+	 * Sets the songs saved before a restart without pushing them, the board
+	 * already shows them.
+	 */
+	public synchronized void restore(Song currentSong, Song nextSong) {
+		this.currentSong = currentSong != null ? currentSong : EMPTY_SONG;
+		this.nextSong = nextSong != null ? nextSong : EMPTY_SONG;
+	}
+
+	/**
+	 * The columns left on a line after its color chip and a space.
+	 */
+	private static final int TEXT_COLUMNS = Compositor.COLUMNS - 2;
+
+	/**
+	 * The columns left on a line next to the album cover, after a blank column,
+	 * a color chip and a space.
+	 */
+	private static final int ART_TEXT_COLUMNS = Compositor.COLUMNS - ART_COLUMNS - 3;
+
+	/**
+	 * Lays out the state as it should appear on the board, each title and artist
+	 * cut to a single line.
 	 */
-	private void push() {
+	private int[][] render() {
+		int[][] art = currentArt();
+		if (art != null) {
+			return render(art);
+		}
 		Component nowPlaying = new Component();
 		nowPlaying.setAlign("top");
 		nowPlaying.setJustify("left");
 		nowPlaying.setHeight(3);
 		nowPlaying.setBody(
 				"{66} Now Playing\n{64} " +
-						currentSong.getTrimmedTitle() +
+						TitleNormalizer.fit(currentSong.getTrimmedTitle(), TEXT_COLUMNS) +
 						"\n{63} " +
-						currentSong.getArtist());
+						TitleNormalizer.fit(currentSong.getDisplayArtist(), TEXT_COLUMNS));
 		Component upNext = new Component();
 		upNext.setAlign("top");
 		upNext.setJustify("left");
 		upNext.setHeight(3);
 		upNext.setBody(
 				"\n{65} Next Up\n{67} " +
-						nextSong.getTrimmedTitle());
-		String VBML = Component.compileComponents(nowPlaying, upNext);
-		LOG.info("Submitting state to board, NOW PLAYING: " + currentSong.getTrimmedTitle() + " UP NEXT: "
-				+ nextSong.getTrimmedTitle());
-		sendRaw(VBML);
+						TitleNormalizer.fit(nextSong.getTrimmedTitle(), TEXT_COLUMNS));
+		return Component.compose(nowPlaying, upNext);
 	}
 
-	public Song getCurrentSong() {
-		return currentSong;
+	/**
+	 * Lays out the state next to the album cover of the current song.
+	 */
+	private int[][] render(int[][] art) {
+		Component cover = new Component();
+		cover.setAlign("top");
+		cover.setJustify("left");
+		cover.setWidth(ART_COLUMNS);
+		cover.setBody(Mosaic.toTemplate(art));
+		Component gap = new Component();
+		gap.setWidth(1);
+		Component songs = new Component();
+		songs.setAlign("top");
+		songs.setJustify("left");
+		songs.setWidth(ART_TEXT_COLUMNS + 2);
+		songs.setBody(
+				"{66} Now Playing\n{64} " +
+						TitleNormalizer.fit(currentSong.getTrimmedTitle(), ART_TEXT_COLUMNS) +
+						"\n{63} " +
+						TitleNormalizer.fit(currentSong.getDisplayArtist(), ART_TEXT_COLUMNS) +
+						"\n\n{65} Next Up\n{67} " +
+						TitleNormalizer.fit(nextSong.getTrimmedTitle(), ART_TEXT_COLUMNS));
+		return Component.compose(cover, gap, songs);
 	}
 
-	public void setCurrentSong(Song currentSong) {
-		if (this.currentSong != currentSong) {
+	/**
+	 * @return The album cover of the current song as color chips, or null if
+	 *         covers aren't shown or this one isn't ready yet, the state is
+	 *         pushed again once it is. Called holding the lock.
+	 */
+	private int[][] currentArt() {
+		String url = currentSong.getAlbumArt();
+		if (albumArt == null || url == null || url.isEmpty()) {
+			return null;
+		}
+		CompletableFuture<int[][]> art = albumArt.get(url);
+		if (!art.isDone() && !url.equals(awaitedArt)) {
+			awaitedArt = url;
+			art.thenAccept(chips -> artLoaded(url, chips));
+		}
+		return art.getNow(null);
+	}
 
-			LOG.info("Updating current song in state to " + currentSong.getTitle());
-			this.currentSong = currentSong;
-			schedulePush();
+	/**
+	 * Shows the cover that just loaded, unless the song changed while it did.
+	 */
+	private synchronized void artLoaded(String url, int[][] chips) {
+		if (url.equals(awaitedArt)) {
+			awaitedArt = null;
+		}
+		if (chips != null && url.equals(currentSong.getAlbumArt())) {
+			schedulePush(Slot.NOW_PLAYING);
 		}
+	}
+
+	public Song getCurrentSong() {
+		return currentSong;
+	}
+
+	public synchronized void setCurrentSong(Song currentSong) {
+		transition(currentSong, nextSong);
 	};
 
 	/**
@@ -167,24 +340,31 @@ public class SpotifyState extends Vestaboard {
 		this.isConnected = isConnected;
 	}
 
-	
-	/**
-	 * Schedules a push update to the board with a 100ms delay if no update is currently pending.
-	 * This method uses a timer to avoid excessive updates and ensures that only one update
-	 * is scheduled at a time by checking and setting the updatePending flag.
-	 * Once the scheduled push is complete, the updatePending flag is reset to false.
-	 */
-	private void schedulePush() {
-		// debounce
-		if (!updatePending) {
-			updatePending = true;
-			timer.schedule(new TimerTask() {
-				@Override
-				public void run() {
-					push();
-					updatePending = false;
-				}
-			}, 100); // Delay of 100 milliseconds
-		}
+	/**
+	 * @return The send counters and latency of the screen scheduler.
+	 */
+	public ScreenScheduler.Stats getSchedulerStats() {
+		return scheduler.getStats();
+	}
+
+	/**
+	 * @return The album cover cache counters, or null if covers aren't shown.
+	 */
+	public AlbumArtCache.Stats getAlbumArtStats() {
+		return albumArt != null ? albumArt.getStats() : null;
+	}
+
+	/**
+	 * "push" the state to the board. basically updates it.
+	 *
+	 * The layout is handed to the {@link ScreenScheduler}, which sends it once
+	 * the board can take it unless a newer state replaces it first.
+	 *
+	 * @param slot Whether the song or only the next up changed.
+	 */
+	private void schedulePush(Slot slot) {
+		LOG.info("Submitting state to board, NOW PLAYING: " + currentSong.getTrimmedTitle() + " UP NEXT: "
+				+ nextSong.getTrimmedTitle());
+		scheduler.submit(slot, render());
 	}
 }
\ No newline at end of file
@@ -1,29 +1,99 @@
 package com.vesta.rest_api;
 
 import com.google.gson.Gson;
+import com.vesta.rest_api.board.BoardMirror;
+import com.vesta.rest_api.http.HttpResult;
+import com.vesta.rest_api.http.HttpTransport;
+import com.vesta.rest_api.metrics.CallMetrics;
+import com.vesta.rest_api.vbml.Compositor;
+
 import java.util.HashMap;
 import java.util.Map;
 
-import org.apache.http.HttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
-
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 public class Vestaboard {
 
+    private static final String URL = "https://rw.vestaboard.com/";
+
     private String key;
     private Gson gson;
+    private HttpTransport transport;
+    private Map<String, String> headers;
+    private BoardMirror mirror;
     private static final Logger LOG = LogManager.getLogger(Vestaboard.class.getName());
 
-    public Vestaboard(String key) {
+    /**
+     * How sending a layout went.
+     */
+    public enum Outcome {
+        /** The board accepted the layout. */
+        SENT,
+        /** The layout was already on the board, so nothing was sent. */
+        UNCHANGED,
+        /** The board refused the layout with a 4xx, sending it again won't help. */
+        REJECTED,
+        /** The request failed, was rate limited or hit a server error. */
+        FAILED
+    }
+
+    /**
+     * What came of sending a layout.
+     *
+     * @param outcome  How the send went.
+     * @param response The response from the Vestaboard API, or null if an error
+     *                 occurs.
+     */
+    public record LayoutResult(Outcome outcome, HashMap<String, String> response) {
+
+        /**
+         * @return Whether the board shows the layout now.
+         */
+        public boolean accepted() {
+            return outcome == Outcome.SENT || outcome == Outcome.UNCHANGED;
+        }
+    }
+
+    /**
+     * @param key       The read-write key of the board.
+     * @param transport The shared transport requests are sent with.
+     * @param mirror    The mirror of the board, shared with every other
+     *                  Vestaboard writing to the same board.
+     */
+    public Vestaboard(String key, HttpTransport transport, BoardMirror mirror) {
         this.key = key;
-        this.gson = new Gson();
+        this.transport = transport;
+        this.gson = transport.getGson();
+        // without a key the requests go out unauthenticated and fail, instead of the app failing to start.
+        this.headers = key != null ? Map.of("X-Vestaboard-Read-Write-Key", key) : Map.of();
+        this.mirror = mirror;
+    }
+
+    public Vestaboard(String key, HttpTransport transport) {
+        this(key, transport, new BoardMirror());
+    }
+
+    /**
+     * Creates a Vestaboard using the default {@link HttpTransport}, for use
+     * outside of Spring.
+     */
+    public Vestaboard(String key) {
+        this(key, HttpTransport.getDefault());
+    }
+
+    /**
+     * @return The mirror of what is on the board.
+     */
+    public BoardMirror getMirror() {
+        return mirror;
+    }
+
+    /**
+     * @return The shared transport this board sends requests with.
+     */
+    protected HttpTransport getTransport() {
+        return transport;
     }
 
     /**
@@ -38,16 +108,11 @@ public class Vestaboard {
      *         null if an exception occurs.
      */
     public String getState() {
-        try (CloseableHttpClient client = HttpClients.createDefault()) {
-            HttpGet request = new HttpGet("https://rw.vestaboard.com/");
-            request.setHeader("X-Vestaboard-Read-Write-Key", this.key);
+        try {
+            HttpResult response = CallMetrics.BOARD.record("get-state", () -> transport.get(URL, headers));
 
-            HttpResponse response = client.execute(request);
-            String result = EntityUtils.toString(response.getEntity());
-
-            Gson gson = new Gson();
             Map<String, Map<String, String>> json = gson.fromJson(
-                    result,
+                    response.body(),
                     Map.class);
             String state = json.get("currentMessage").get("layout");
             return state;
@@ -66,55 +131,95 @@ public class Vestaboard {
      */
     public String sendMessage(String message) {
         // send a message with a string
-        try (CloseableHttpClient client = HttpClients.createDefault()) {
-            HttpPost request = new HttpPost("https://rw.vestaboard.com");
-            request.setHeader("X-Vestaboard-Read-Write-Key", this.key);
-            request.setHeader("Content-Type", "application/json");
-            final String messageBody = String.format(
-                    "{\"text\": \"%s\"}",
-                    message);
+        try {
+            final String messageBody = gson.toJson(Map.of("text", message));
             System.err.println(messageBody);
-            final StringEntity body = new StringEntity(messageBody);
-            request.setEntity(body);
-
-            try {
-                HttpResponse response = client.execute(request);
-                String result = EntityUtils.toString(response.getEntity());
-                return result;
-            } catch (Exception e) {
-                e.printStackTrace();
-                System.err.println(
-                        "This might be because you are trying to submit text that is already on the board.");
-                return null;
+            HttpResult response = CallMetrics.BOARD.record("send-message",
+                    () -> transport.postJson(URL, headers, messageBody));
+            // only a cleared board can be mirrored, any other text is laid out by Vestaboard.
+            if (response.isSuccess() && message.isBlank()) {
+                mirror.update(new int[Compositor.ROWS][Compositor.COLUMNS]);
+            } else {
+                mirror.invalidate();
             }
+            return response.body();
         } catch (Exception e) {
+            mirror.invalidate();
             e.printStackTrace();
+            System.err.println(
+                    "This might be because you are trying to submit text that is already on the board.");
             return null;
         }
     }
 
+    /**
+     * Sends an already composed layout to the board.
+     *
+     * @param layout A 6x22 array of character codes, see
+     *               {@link Component#compose(Component...)}.
+     * @return Whether the board accepted the layout, and the response.
+     */
+    public LayoutResult sendLayout(int[][] layout) {
+        if (!mirror.isSeeded()) {
+            mirror.seed(getState(), gson);
+        }
+        if (mirror.shouldSkip(layout)) {
+            LOG.info("Layout is already on the board, not sending it.");
+            HashMap<String, String> unchanged = new HashMap<>();
+            unchanged.put("status", "unchanged");
+            return new LayoutResult(Outcome.UNCHANGED, unchanged);
+        }
+
+        HttpResult response = post("send-layout", gson.toJson(layout));
+        Outcome outcome;
+        if (response == null) {
+            outcome = Outcome.FAILED;
+        } else if (response.isSuccess()) {
+            outcome = Outcome.SENT;
+        } else if (response.status() >= 400 && response.status() < 500 && response.status() != 429) {
+            outcome = Outcome.REJECTED;
+        } else {
+            outcome = Outcome.FAILED;
+        }
+        if (outcome == Outcome.SENT) {
+            mirror.update(layout);
+        } else {
+            mirror.invalidate();
+        }
+        return new LayoutResult(outcome, toMap(response));
+    }
+
     public HashMap<String, String> sendRaw(String body) {
-        try (CloseableHttpClient client = HttpClients.createDefault()) {
-            HttpPost request = new HttpPost("https://rw.vestaboard.com");
-            request.setHeader("X-Vestaboard-Read-Write-Key", this.key);
-            request.setHeader("Content-Type", "application/json");
-            final StringEntity requestBody = new StringEntity(body);
-            request.setEntity(requestBody);
-
-            try {
-                HttpResponse response = client.execute(request);
-                String result = EntityUtils.toString(response.getEntity());
-                HashMap<String, String> responseMap = gson.fromJson(result, HashMap.class);
-                return responseMap;
-            } catch (Exception e) {
-                e.printStackTrace();
-                System.err.println(
-                        "This might be because you are trying to submit text that is already on the board.");
-                return null;
-            }
+        HttpResult response = post("send-raw", body);
+        // raw bodies aren't mirrored, so the board contents are unknown after this.
+        mirror.invalidate();
+        return toMap(response);
+    }
+
+    private HashMap<String, String> toMap(HttpResult response) {
+        if (response == null) {
+            return null;
+        }
+        try {
+            return gson.fromJson(response.body(), HashMap.class);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * @param endpoint What the request is tagged with in
+     *                 {@link CallMetrics#BOARD}.
+     */
+    private HttpResult post(String endpoint, String body) {
+        try {
+            return CallMetrics.BOARD.record(endpoint, () -> transport.postJson(URL, headers, body));
         } catch (Exception e) {
             e.printStackTrace();
+            System.err.println(
+                    "This might be because you are trying to submit text that is already on the board.");
             return null;
         }
     }
-}
\ No newline at end of file
+}
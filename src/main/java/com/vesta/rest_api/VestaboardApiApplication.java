@@ -1,5 +1,6 @@
 package com.vesta.rest_api;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -7,12 +8,18 @@ import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.boot.web.servlet.support.SpringBootServletInitializer;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
-import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import com.vesta.rest_api.cache.StateJournal;
+import com.vesta.rest_api.history.PlayHistory;
+import com.vesta.rest_api.http.HttpTransport;
+import com.vesta.rest_api.patterns.SpotifyUserSingleton;
+import com.vesta.rest_api.session.SessionRegistry;
+import com.vesta.rest_api.stream.StateBroadcaster;
+import com.vesta.rest_api.timer.HashedWheelTimer;
+
 @SpringBootApplication
-@EnableScheduling
 public class VestaboardApiApplication extends SpringBootServletInitializer {
 
 	@Override
@@ -40,6 +47,82 @@ public class VestaboardApiApplication extends SpringBootServletInitializer {
 		};
 	}
 
+	/**
+	 * The HTTP transport shared by every request to the Vestaboard and VBML
+	 * APIs, configured with the vestaboard.http.* properties.
+	 */
+	@Bean(destroyMethod = "close")
+	public HttpTransport httpTransport(
+			@Value("${vestaboard.http.max-connections:20}") int maxConnections,
+			@Value("${vestaboard.http.max-connections-per-route:10}") int maxPerRoute,
+			@Value("${vestaboard.http.connect-timeout-ms:5000}") int connectTimeoutMs,
+			@Value("${vestaboard.http.read-timeout-ms:10000}") int readTimeoutMs,
+			@Value("${vestaboard.http.keep-alive-ms:30000}") long keepAliveMs) {
+		return new HttpTransport(maxConnections, maxPerRoute, connectTimeoutMs, readTimeoutMs, keepAliveMs);
+	}
+
+	/**
+	 * The sessions of a multi user deployment. They are users of the same
+	 * Spotify app as the single user endpoints, so they share its track cache
+	 * and rate limiter.
+	 */
+	@Bean(destroyMethod = "close")
+	public SessionRegistry sessionRegistry(SpotifyUserSingleton app, HttpTransport transport,
+			HashedWheelTimer timer) {
+		return new SessionRegistry(app, transport, timer);
+	}
+
+	/**
+	 * Pushes the state to the clients of /current/stream, closed on shutdown so
+	 * the clients are told the stream ended.
+	 */
+	@Bean(destroyMethod = "close")
+	public StateBroadcaster stateBroadcaster(HashedWheelTimer timer) {
+		return new StateBroadcaster(timer);
+	}
+
+	/**
+	 * Saves the login, state and last frame of the single user endpoints so a
+	 * restart picks up where it left off.
+	 */
+	@Bean(destroyMethod = "close")
+	public StateJournal stateJournal(@Value("${vestaboard.journal.path:cache/state.journal}") String path) {
+		return new StateJournal(path);
+	}
+
+	/**
+	 * Logs every song played by the single user endpoints, for /stats.
+	 */
+	@Bean(destroyMethod = "close")
+	public PlayHistory playHistory(@Value("${vestaboard.history.path:cache/plays.log}") String path) {
+		return new PlayHistory(path);
+	}
+
+	/**
+	 * The Spotify user of the single user endpoints, and the app every session
+	 * is a user of, its token refreshes run on the shared timer.
+	 */
+	@Bean
+	public SpotifyUserSingleton spotifyUser(HashedWheelTimer hashedWheelTimer) {
+		return SpotifyUserSingleton.getInstance(
+				System.getenv("CLIENT_ID"),
+				System.getenv("CLIENT_SECRET"),
+				System.getenv("REDIRECT_URL"),
+				hashedWheelTimer);
+	}
+
+	/**
+	 * The timer every poll, board write, backoff and token refresh is scheduled
+	 * on, configured with the vestaboard.timer.* properties.
+	 */
+	@Bean(destroyMethod = "close")
+	public HashedWheelTimer hashedWheelTimer(
+			@Value("${vestaboard.timer.tick-ms:10}") long tickMs,
+			@Value("${vestaboard.timer.wheel-size:512}") int wheelSize,
+			@Value("${vestaboard.timer.threads:8}") int threads) {
+		return new HashedWheelTimer(tickMs, wheelSize, threads);
+	}
+
 	// Enabling CORS
 	@Bean
 	public WebMvcConfigurer corsConfiguration() {
@@ -47,11 +130,14 @@ public class VestaboardApiApplication extends SpringBootServletInitializer {
 			@Override
 			public void addCorsMappings(CorsRegistry registry) {
 				registry.addMapping("/request_song").allowedOrigins("http://localhost:3000");
+				registry.addMapping("/request_song/**").allowedOrigins("http://localhost:3000");
 				registry.addMapping("/current").allowedOrigins("http://localhost:3000");
+				registry.addMapping("/current/stream").allowedOrigins("http://localhost:3000");
 				registry.addMapping("/get_auth_url").allowedOrigins("http://localhost:3000");
 				registry.addMapping("/send_auth_token").allowedOrigins("http://localhost:3000");
 				registry.addMapping("/auth_status").allowedOrigins("http://localhost:3000");
 				registry.addMapping("/*").allowedOrigins("http://localhost:3000");
+				registry.addMapping("/sessions/**").allowedOrigins("http://localhost:3000");
 			}
 		};
 	}
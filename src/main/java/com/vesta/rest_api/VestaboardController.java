@@ -1,21 +1,110 @@
 package com.vesta.rest_api;
 
-import org.springframework.scheduling.annotation.Scheduled;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vesta.rest_api.cache.StateJournal;
+import com.vesta.rest_api.events.ObservableEvents;
+import com.vesta.rest_api.history.PlayHistory;
+import com.vesta.rest_api.http.HttpTransport;
+import com.vesta.rest_api.patterns.SpotifyUserSingleton;
+import com.vesta.rest_api.requests.SongRequestQueue;
+import com.vesta.rest_api.scheduling.AdaptivePoller;
+import com.vesta.rest_api.session.SessionRegistry;
+import com.vesta.rest_api.stream.StateBroadcaster;
+import com.vesta.rest_api.stream.StateResponseCache;
+import com.vesta.rest_api.timer.HashedWheelTimer;
 
 @RestController
 public class VestaboardController {
 
     private SpotifyIntegration spot;
 
-    public VestaboardController() {
-        String clientID = System.getenv("CLIENT_ID");
-        String clientSecret = System.getenv("CLIENT_SECRET");
-        String redirectURL = System.getenv("REDIRECT_URL");
+    /**
+     * Polls Spotify for changes, replacing a fixed rate schedule.
+     */
+    private AdaptivePoller poller;
+
+    /**
+     * Pushes state changes to every client of /current/stream.
+     */
+    private StateBroadcaster broadcaster;
+
+    /**
+     * The serialized body of /current, kept until the state changes.
+     */
+    private StateResponseCache currentCache;
+
+    /**
+     * Sessions of a multi user deployment, logins for them come back through
+     * /send_auth_token too.
+     */
+    private SessionRegistry sessions;
+
+    /**
+     * Song requests waiting to be searched for and queued.
+     */
+    private SongRequestQueue songRequests;
+
+    /**
+     * Every song played, and the stats served from /stats.
+     */
+    private PlayHistory history;
+
+    /**
+     * How many song requests can wait before new ones are turned away.
+     */
+    private static final int SONG_REQUEST_CAPACITY = 64;
+
+    /**
+     * How long a client can wait on /request_song/{id}/stream.
+     */
+    private static final long SONG_REQUEST_STREAM_TIMEOUT_MS = 60_000;
+
+    /**
+     * The most songs /search returns.
+     */
+    private static final int MAX_SEARCH_RESULTS = 50;
+
+    /**
+     * The most artists and tracks /stats returns.
+     */
+    private static final int MAX_STATS_TOP = 50;
+
+    public VestaboardController(SpotifyUserSingleton spotifyUser, StateJournal journal, PlayHistory history,
+            HttpTransport transport, HashedWheelTimer timer, SessionRegistry sessions, StateBroadcaster broadcaster,
+            ObjectMapper objectMapper) {
+        this.sessions = sessions;
+        this.history = history;
         String vestaboardKey = System.getenv("VESTABOARD_KEY");
-        spot = new SpotifyIntegration(clientID, clientSecret, redirectURL, vestaboardKey);
+        spot = new SpotifyIntegration(spotifyUser, vestaboardKey, transport, timer, journal, history);
+        poller = new AdaptivePoller(spot, timer);
+        poller.start();
+        this.broadcaster = broadcaster;
+        // clients that connect before anything changes get the state from startup.
+        broadcaster.publish(spot.getState());
+        spot.attach(broadcaster, ObservableEvents.STATE_UPDATE);
+        currentCache = new StateResponseCache(objectMapper);
+        String dedupe = System.getenv("SONG_REQUEST_DEDUPE_MS");
+        songRequests = new SongRequestQueue(timer.getExecutor(), this::queueSong, SONG_REQUEST_CAPACITY,
+                dedupe != null ? Long.parseLong(dedupe) : 0);
     }
 
     @GetMapping("/get_auth_url")
@@ -24,7 +113,12 @@ public class VestaboardController {
     }
 
     @GetMapping("/send_auth_token")
-    public boolean sendToken(@RequestParam(value = "code") String token) {
+    public boolean sendToken(@RequestParam(value = "code") String token,
+            @RequestParam(value = "state", required = false) String state) {
+        if (state != null) {
+            // only logins started for a session carry a state.
+            return sessions.completeLogin(state, token);
+        }
         // This assumes the spotify app is configured to send a request to this
         // endpoint.
         // In the future, I will have spotify send the code to my frontend and post it
@@ -32,21 +126,60 @@ public class VestaboardController {
 
         // BUG: Despite returning true, when using accounts other than mine
         // I can't utilize the API, will work on this later.
-        return spot.useAuthToken(token);
+        boolean authenticated = spot.useAuthToken(token);
+        // start polling at full speed now there is something to poll.
+        poller.boost();
+        return authenticated;
     }
 
     /**
      * Returns the current state of the board.
+     *
+     * The body is only serialized once per state version, clients sending its
+     * ETag in If-None-Match get a 304, and the max-age follows how long is left
+     * of the current song.
      */
-    @GetMapping("/current")
-    public StateResponse getCurrentState() {
-        Song[] songs = spot.getSongState();
-        Song currentSong = songs[0];
-        Song upNext = songs[1];
+    @GetMapping(path = "/current", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getCurrentState(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+            throws JsonProcessingException {
+        StateResponseCache.Entry current = currentCache.get(spot.getVersionedState());
+        CacheControl cacheControl = CacheControl
+                .maxAge(StateResponseCache.maxAgeSeconds(spot.getLastSnapshot()), TimeUnit.SECONDS)
+                .mustRevalidate();
 
-        StateResponse stateResponse = new StateResponse(spot.isConnected(), spot.getConnectedUser(), spot.isPlaying(),
-                currentSong, upNext);
-        return stateResponse;
+        if (StateResponseCache.matches(ifNoneMatch, current.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(current.etag())
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(current.etag())
+                .cacheControl(cacheControl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(current.body());
+    }
+
+    /**
+     * Streams the current state as Server-Sent Events, a new "state" event is
+     * sent whenever it changes.
+     *
+     * @param lastEventId Sent by reconnecting clients, so they are sent the
+     *                    states they missed.
+     */
+    @GetMapping(path = "/current/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamCurrentState(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return broadcaster.subscribe(lastEventId);
+    }
+
+    /**
+     * Endpoint to get how many clients are connected to /current/stream.
+     */
+    @GetMapping("/stream_stats")
+    public Response getStreamStats() {
+        return new Response("success", broadcaster.getStats());
     }
 
     @GetMapping("/logout")
@@ -87,17 +220,153 @@ public class VestaboardController {
         return spot.getConnectedUser();
     }
 
+    /**
+     * Endpoint to get the hit and miss counters of the track metadata cache.
+     */
+    @GetMapping("/cache_stats")
+    public Response getCacheStats() {
+        return new Response("success", spot.getTrackCacheStats());
+    }
+
+    /**
+     * Autocompletes song requests from every track seen so far, answered from
+     * memory without asking Spotify.
+     *
+     * @param prefix What has been typed so far, every word has to start a word
+     *               of the title or artist.
+     * @param limit  The most songs to return.
+     */
+    @GetMapping("/search")
+    public Response search(@RequestParam(value = "prefix") String prefix,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return new Response("success", spot.searchCatalog(prefix, Math.min(limit, MAX_SEARCH_RESULTS)));
+    }
+
+    /**
+     * Endpoint to get how many tracks are in the catalog, and how many song
+     * requests it answered without a Spotify search.
+     */
+    @GetMapping("/catalog_stats")
+    public Response getCatalogStats() {
+        return new Response("success", spot.getCatalogStats());
+    }
+
+    /**
+     * Returns the most played artists and tracks, plays by hour of the day and
+     * how many requested songs went on to play, kept up to date as songs play.
+     *
+     * @param top How many artists and tracks to include.
+     */
+    @GetMapping("/stats")
+    public Response getPlayStats(@RequestParam(value = "top", defaultValue = "10") int top) {
+        return new Response("success", history.getStats(Math.max(0, Math.min(top, MAX_STATS_TOP))));
+    }
+
+    /**
+     * Endpoint to get the send counters and latency of board writes.
+     */
+    @GetMapping("/board_stats")
+    public Response getBoardStats() {
+        return new Response("success", spot.getBoardStats());
+    }
+
+    /**
+     * Endpoint to get the poll rate, Spotify calls per hour and how quickly song
+     * changes are noticed.
+     */
+    @GetMapping("/poll_stats")
+    public Response getPollStats() {
+        return new Response("success", poller.getStats());
+    }
+
+    /**
+     * Endpoint to get the Spotify rate limiter counters and quota estimate.
+     */
+    @GetMapping("/rate_limit_stats")
+    public Response getRateLimitStats() {
+        return new Response("success", spot.getRateLimiterStats());
+    }
+
+    /**
+     * Accepts a song request without waiting for Spotify, identical requests
+     * get the same ticket.
+     *
+     * @return 202 with the ticket, look it up at the Location to see how it went.
+     */
     @GetMapping("/request_song")
-    public Song requestSong(@RequestParam(value = "title") String title,
+    public ResponseEntity<Response> requestSong(@RequestParam(value = "title") String title,
             @RequestParam(value = "artist") String artist) {
-        return spot.requestSong(title, artist);
+        SongRequestQueue.Ticket ticket = songRequests.submit(title, artist);
+        if (ticket == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(new Response("failure", "Too many song requests waiting, try again later"));
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/request_song/" + ticket.id()))
+                .body(new Response("success", ticket));
+    }
+
+    /**
+     * Returns how a song request went.
+     */
+    @GetMapping("/request_song/{id}")
+    public ResponseEntity<Response> getSongRequest(@PathVariable String id) {
+        SongRequestQueue.Ticket ticket = songRequests.getTicket(id);
+        if (ticket == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new Response("failure", "No such request"));
+        }
+        return ResponseEntity.ok(new Response("success", ticket));
     }
 
-    @Scheduled(fixedRate = 8000)
+    /**
+     * Streams a song request as Server-Sent Events, a "ticket" event is sent
+     * while it's waiting and again once it's done, then the stream ends.
+     */
+    @GetMapping(path = "/request_song/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamSongRequest(@PathVariable String id) {
+        CompletableFuture<SongRequestQueue.Ticket> done = songRequests.whenDone(id);
+        if (done == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No such request");
+        }
+        SseEmitter emitter = new SseEmitter(SONG_REQUEST_STREAM_TIMEOUT_MS);
+        try {
+            if (!done.isDone()) {
+                emitter.send(SseEmitter.event().name("ticket").data(songRequests.getTicket(id)));
+            }
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+            return emitter;
+        }
+        done.thenAccept(ticket -> {
+            try {
+                emitter.send(SseEmitter.event().name("ticket").data(ticket));
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
 
-    public void update() {
-        // This will run every 5 seconds to update the board.
-        System.out.println("Checking for update...");
-        spot.run();
+    /**
+     * Endpoint to get how many song requests were received, coalesced and
+     * queued.
+     */
+    @GetMapping("/request_stats")
+    public Response getRequestStats() {
+        return new Response("success", songRequests.getStats());
+    }
+
+    /**
+     * Searches for and queues a song, run by the {@link SongRequestQueue}.
+     */
+    private Song queueSong(String title, String artist) throws Exception {
+        Song requested = spot.requestSong(title, artist);
+        if (requested != null) {
+            history.recordRequest(requested);
+            // the queue just changed, so look for the new next up soon.
+            poller.boost();
+        }
+        return requested;
     }
 }
\ No newline at end of file
@@ -0,0 +1,277 @@
+package com.vesta.rest_api.auth;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.vesta.rest_api.metrics.CallMetrics;
+import com.vesta.rest_api.metrics.CallMetrics.Call;
+import com.vesta.rest_api.timer.HashedWheelTimer;
+import com.vesta.rest_api.timer.HashedWheelTimer.Timeout;
+
+import se.michaelthelin.spotify.SpotifyApi;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.exceptions.detailed.BadRequestException;
+import se.michaelthelin.spotify.model_objects.credentials.AuthorizationCodeCredentials;
+
+/**
+ * Keeps the Spotify access token fresh.
+ *
+ * The expiry of the access token is tracked alongside the refresh token, and
+ * the token is refreshed in the background shortly before it expires. If a
+ * request is about to be made with a token that has already expired it waits
+ * for the refresh instead of making a request that is certain to fail. Every
+ * caller that needs a refresh at the same time shares the same one.
+ *
+ * Every login and logout starts a new generation, and a refresh that was
+ * started for an older one is dropped when it finishes, so it can't bring
+ * back a token that was logged out or replaced.
+ */
+public class TokenRefresher {
+	private static final Logger LOG = LogManager.getLogger(TokenRefresher.class);
+
+	/** How long before expiry the token is refreshed. */
+	private static final long REFRESH_MARGIN_MS = 60_000;
+	/** How long to wait before trying again after a failed refresh. */
+	static final long RETRY_DELAY_MS = 15_000;
+	/** The longest a request waits for a refresh before giving up. */
+	private static final long REFRESH_TIMEOUT_MS = 10_000;
+
+	/**
+	 * One refresh, run by whoever gets to it first, the timer's task pool or a
+	 * request waiting for the token.
+	 */
+	private final class Refresh implements Runnable {
+		final long generation;
+		final CompletableFuture<Void> done = new CompletableFuture<>();
+		private final AtomicBoolean started = new AtomicBoolean();
+
+		Refresh(long generation) {
+			this.generation = generation;
+		}
+
+		@Override
+		public void run() {
+			if (started.compareAndSet(false, true)) {
+				execute(this);
+			}
+		}
+	}
+
+	private final SpotifyApi spot;
+	private final HashedWheelTimer timer;
+	private final Call<AuthorizationCodeCredentials, Exception> exchange;
+	private final LongSupplier clock;
+
+	private volatile long expiresAt;
+	/** Bumped by every login and logout. */
+	private long generation;
+	private Refresh inFlight;
+	private Timeout scheduled;
+	/** Told about every new refresh token, and null once logged out. */
+	private Consumer<String> listener;
+	/** Told when Spotify rejects the refresh token, so the user is logged out. */
+	private Runnable revokedListener;
+
+	/**
+	 * @param spot  The API whose token is kept fresh.
+	 * @param timer The timer refreshes are scheduled and run on.
+	 */
+	public TokenRefresher(SpotifyApi spot, HashedWheelTimer timer) {
+		this(spot, timer, () -> spot.authorizationCodeRefresh().build().execute(), System::currentTimeMillis);
+	}
+
+	/**
+	 * @param exchange Trades the refresh token for new credentials.
+	 * @param clock    The current time in epoch milliseconds, the same clock the
+	 *                 timer runs on.
+	 */
+	TokenRefresher(SpotifyApi spot, HashedWheelTimer timer, Call<AuthorizationCodeCredentials, Exception> exchange,
+			LongSupplier clock) {
+		this.spot = spot;
+		this.timer = timer;
+		this.exchange = exchange;
+		this.clock = clock;
+	}
+
+	/**
+	 * Use new credentials from logging in, and schedule the next refresh. A
+	 * refresh of the previous login that is still running is dropped.
+	 */
+	public synchronized void setCredentials(AuthorizationCodeCredentials creds) {
+		generation++;
+		apply(creds);
+	}
+
+	/**
+	 * Log back in with a refresh token saved before a restart, the access token
+	 * is fetched in the background and requests wait for it.
+	 */
+	public synchronized CompletableFuture<Void> restore(String refreshToken) {
+		generation++;
+		spot.setRefreshToken(refreshToken);
+		// there is no access token yet, so it counts as long expired.
+		expiresAt = 1;
+		return refresh();
+	}
+
+	/**
+	 * Be told about every new refresh token, and null once logged out.
+	 */
+	public synchronized void onRefreshToken(Consumer<String> listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Be told when Spotify rejects the refresh token, such as after the user
+	 * removed the app from their account. Refreshing stops until the next login.
+	 */
+	public synchronized void onRevoked(Runnable listener) {
+		this.revokedListener = listener;
+	}
+
+	/**
+	 * @return When the access token expires, in epoch milliseconds, 0 if there is
+	 *         no token.
+	 */
+	public long getExpiresAt() {
+		return expiresAt;
+	}
+
+	/**
+	 * Refresh the access token, joining a refresh that is already running.
+	 *
+	 * @return A future completed once the new token is in use.
+	 */
+	public synchronized CompletableFuture<Void> refresh() {
+		if (inFlight != null && !inFlight.done.isDone()) {
+			return inFlight.done;
+		}
+		inFlight = new Refresh(generation);
+		timer.getExecutor().execute(inFlight);
+		return inFlight.done;
+	}
+
+	/**
+	 * Make sure the access token hasn't expired before a request is made,
+	 * waiting for a refresh if it has.
+	 *
+	 * @throws SpotifyWebApiException If the token couldn't be refreshed.
+	 */
+	public void ensureFresh() throws SpotifyWebApiException {
+		if (expiresAt == 0 || clock.getAsLong() < expiresAt) {
+			return;
+		}
+		Refresh refresh;
+		synchronized (this) {
+			refresh();
+			refresh = inFlight;
+		}
+		// requests run on the same pool as the refresh, so if the pool hasn't got
+		// to it yet it's run here instead of every thread waiting on the queue.
+		refresh.run();
+		try {
+			refresh.done.get(REFRESH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SpotifyWebApiException("Interrupted while refreshing the access token");
+		} catch (ExecutionException | TimeoutException e) {
+			throw new SpotifyWebApiException("The access token expired and could not be refreshed");
+		}
+	}
+
+	/**
+	 * Forget the token and stop refreshing it, for when the user logs out.
+	 */
+	public synchronized void reset() {
+		generation++;
+		expiresAt = 0;
+		if (scheduled != null) {
+			scheduled.cancel();
+			scheduled = null;
+		}
+		if (listener != null) {
+			listener.accept(null);
+		}
+	}
+
+	private void execute(Refresh refresh) {
+		if (expiresAt == 0) {
+			// logged out, nothing to refresh.
+			refresh.done.complete(null);
+			return;
+		}
+		try {
+			LOG.info("Refreshing Spotify access token.");
+			AuthorizationCodeCredentials creds = CallMetrics.SPOTIFY.record("refresh-token", exchange);
+			synchronized (this) {
+				if (refresh.generation == generation) {
+					apply(creds);
+				} else {
+					LOG.info("Dropping a refresh for a login that was since replaced or logged out.");
+				}
+			}
+			refresh.done.complete(null);
+		} catch (BadRequestException e) {
+			// invalid_grant, retrying the same refresh token will never work.
+			LOG.warn("Refresh token was rejected, ERROR_MSG: " + e.getMessage());
+			synchronized (this) {
+				// held while logging out, so a login that comes in meanwhile isn't logged out.
+				if (refresh.generation == generation) {
+					LOG.warn("Logging out.");
+					revoked();
+				}
+			}
+			refresh.done.completeExceptionally(e);
+		} catch (Exception e) {
+			LOG.warn("Could not refresh access token, ERROR_MSG: " + e.getMessage());
+			synchronized (this) {
+				if (refresh.generation == generation) {
+					schedule(RETRY_DELAY_MS);
+				}
+			}
+			refresh.done.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Use new credentials, from logging in or a refresh, and schedule the next
+	 * refresh. Called holding the lock.
+	 */
+	private void apply(AuthorizationCodeCredentials creds) {
+		spot.setAccessToken(creds.getAccessToken());
+		// Spotify only sometimes rotates the refresh token.
+		if (creds.getRefreshToken() != null) {
+			spot.setRefreshToken(creds.getRefreshToken());
+			if (listener != null) {
+				listener.accept(creds.getRefreshToken());
+			}
+		}
+		long now = clock.getAsLong();
+		expiresAt = now + creds.getExpiresIn() * 1000L;
+		schedule(expiresAt - REFRESH_MARGIN_MS - now);
+		LOG.debug("Access token expires in " + creds.getExpiresIn() + " seconds.");
+	}
+
+	private void revoked() {
+		if (revokedListener != null) {
+			revokedListener.run();
+		} else {
+			reset();
+		}
+	}
+
+	private void schedule(long delayMs) {
+		if (scheduled != null) {
+			scheduled.cancel();
+		}
+		scheduled = timer.newTimeout(this::refresh, delayMs);
+	}
+}
@@ -0,0 +1,175 @@
+package com.vesta.rest_api.board;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import javax.imageio.ImageIO;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.vesta.rest_api.http.HttpTransport;
+import com.vesta.rest_api.vbml.Mosaic;
+
+/**
+ * Album covers rendered as color chips, keyed by the URL of the cover.
+ *
+ * A cover is downloaded and rendered once, off the caller's thread, and the
+ * chips are kept in a bounded LRU map, so playing the same album again costs
+ * nothing. Requests for a cover that is still loading share the one download.
+ * A cover that couldn't be loaded isn't tried again for a while, so a broken
+ * URL isn't downloaded on every push.
+ */
+public class AlbumArtCache {
+	private static final Logger LOG = LogManager.getLogger(AlbumArtCache.class);
+
+	/** How long a cover that couldn't be loaded is left before trying again. */
+	static final long RETRY_AFTER_MS = 60_000;
+
+	/**
+	 * Snapshot of the cache counters.
+	 *
+	 * @param hits     Covers found already rendered.
+	 * @param renders  Covers downloaded and rendered.
+	 * @param failures Covers that couldn't be downloaded or decoded.
+	 * @param size     Covers held.
+	 */
+	public record Stats(long hits, long renders, long failures, int size) {
+	}
+
+	/**
+	 * Gets the image at a URL.
+	 */
+	@FunctionalInterface
+	public interface Fetcher {
+		BufferedImage fetch(String url) throws IOException;
+	}
+
+	private final int rows;
+	private final int columns;
+	private final Fetcher fetcher;
+	private final Executor executor;
+	private final LongSupplier clock;
+
+	// all guarded by this.
+	private final Map<String, int[][]> rendered;
+	private final Map<String, CompletableFuture<int[][]>> loading = new HashMap<>();
+	/** When each cover that couldn't be loaded last failed. */
+	private final Map<String, Long> failed;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong renders = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+
+	/**
+	 * @param capacity The most covers kept.
+	 * @param rows     The height of a rendered cover in flaps.
+	 * @param columns  The width of a rendered cover in flaps.
+	 * @param fetcher  Gets the covers.
+	 * @param executor Runs the downloads and renders.
+	 */
+	public AlbumArtCache(int capacity, int rows, int columns, Fetcher fetcher, Executor executor) {
+		this(capacity, rows, columns, fetcher, executor, System::currentTimeMillis);
+	}
+
+	/**
+	 * @param clock The current time in milliseconds.
+	 */
+	AlbumArtCache(int capacity, int rows, int columns, Fetcher fetcher, Executor executor, LongSupplier clock) {
+		this.rows = rows;
+		this.columns = columns;
+		this.fetcher = fetcher;
+		this.executor = executor;
+		this.clock = clock;
+		// access ordered, so the eldest entry is the least recently used.
+		this.rendered = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, int[][]> eldest) {
+				return size() > capacity;
+			}
+		};
+		this.failed = new LinkedHashMap<>() {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * @return A fetcher downloading covers with the shared transport.
+	 */
+	public static Fetcher download(HttpTransport transport) {
+		return url -> {
+			BufferedImage image = ImageIO.read(new ByteArrayInputStream(transport.download(url)));
+			if (image == null) {
+				throw new IOException("Can't decode the image at " + url);
+			}
+			return image;
+		};
+	}
+
+	/**
+	 * Get a cover as color chips, downloading it if it hasn't been before.
+	 *
+	 * @param url The URL of the cover.
+	 * @return The chips, already complete if the cover was rendered before. It
+	 *         completes with null if the cover couldn't be loaded, and is null
+	 *         straight away until {@link #RETRY_AFTER_MS} after that.
+	 */
+	public synchronized CompletableFuture<int[][]> get(String url) {
+		int[][] chips = rendered.get(url);
+		if (chips != null) {
+			hits.incrementAndGet();
+			return CompletableFuture.completedFuture(chips);
+		}
+		Long failedAt = failed.get(url);
+		if (failedAt != null) {
+			if (clock.getAsLong() - failedAt < RETRY_AFTER_MS) {
+				return CompletableFuture.completedFuture(null);
+			}
+			failed.remove(url);
+		}
+		CompletableFuture<int[][]> load = loading.get(url);
+		if (load == null) {
+			// in the map before it starts, so a render finishing straight away removes it.
+			CompletableFuture<int[][]> started = new CompletableFuture<>();
+			loading.put(url, started);
+			executor.execute(() -> started.complete(render(url)));
+			load = started;
+		}
+		return load;
+	}
+
+	private int[][] render(String url) {
+		int[][] chips = null;
+		try {
+			chips = Mosaic.render(fetcher.fetch(url), rows, columns);
+			renders.incrementAndGet();
+		} catch (Exception e) {
+			failures.incrementAndGet();
+			LOG.error("ERROR_MSG: Couldn't render the album art at " + url + ": " + e.getMessage());
+		}
+		synchronized (this) {
+			if (chips != null) {
+				rendered.put(url, chips);
+			} else {
+				failed.put(url, clock.getAsLong());
+			}
+			loading.remove(url);
+		}
+		return chips;
+	}
+
+	public synchronized Stats getStats() {
+		return new Stats(hits.get(), renders.get(), failures.get(), rendered.size());
+	}
+}
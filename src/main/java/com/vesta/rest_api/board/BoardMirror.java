@@ -0,0 +1,196 @@
+package com.vesta.rest_api.board;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import com.google.gson.Gson;
+import com.vesta.rest_api.vbml.Compositor;
+
+/**
+ * In-memory copy of what is on the board, used to skip sending frames that
+ * are already displayed.
+ *
+ * The board is kept as 132 bytes, one character code per cell. It is seeded
+ * once from the layout returned by the Vestaboard API, after that it follows
+ * every frame that is successfully sent. Share one mirror between every
+ * {@link com.vesta.rest_api.Vestaboard} that writes to the same board.
+ */
+public class BoardMirror {
+	public static final int CELLS = Compositor.ROWS * Compositor.COLUMNS;
+
+	/**
+	 * Snapshot of the mirror counters.
+	 *
+	 * @param sent    Frames that differed from the board and were sent.
+	 * @param skipped Frames that were already on the board and weren't sent.
+	 */
+	public record Stats(long sent, long skipped) {
+	}
+
+	private final byte[] cells = new byte[CELLS];
+
+	/**
+	 * Whether the mirror has been seeded from the board.
+	 */
+	private boolean seeded;
+
+	/**
+	 * Whether the contents of the board are known, false until seeded or if
+	 * something was sent that the mirror can't follow.
+	 */
+	private boolean known;
+
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong skipped = new AtomicLong();
+
+	/** Told about every frame that is now on the board. */
+	private Consumer<int[][]> listener;
+
+	public synchronized boolean isSeeded() {
+		return seeded;
+	}
+
+	/**
+	 * Seeds the mirror from the board's current layout.
+	 *
+	 * @param layout The layout JSON from the Vestaboard API, or null if it
+	 *               couldn't be read, in which case the board is treated as
+	 *               unknown until the next frame is sent.
+	 * @param gson   Gson instance to parse the layout with.
+	 */
+	public void seed(String layout, Gson gson) {
+		synchronized (this) {
+			seeded = true;
+		}
+		if (layout == null) {
+			return;
+		}
+		int[][] frame;
+		try {
+			frame = gson.fromJson(layout, int[][].class);
+		} catch (RuntimeException e) {
+			invalidate();
+			return;
+		}
+		update(frame);
+	}
+
+	/**
+	 * Seeds the mirror from a frame saved before a restart, instead of asking
+	 * the board.
+	 *
+	 * @param frame A 6x22 array of character codes.
+	 */
+	public void seed(int[][] frame) {
+		synchronized (this) {
+			seeded = true;
+		}
+		update(frame);
+	}
+
+	/**
+	 * Be told about every frame the mirror records as being on the board, so
+	 * it can be saved.
+	 */
+	public synchronized void onUpdate(Consumer<int[][]> listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Checks a frame against the board, counting it as skipped if it is already
+	 * displayed, or sent if it isn't.
+	 *
+	 * @param frame A 6x22 array of character codes.
+	 * @return true if the frame is already on the board and doesn't need sending.
+	 */
+	public synchronized boolean shouldSkip(int[][] frame) {
+		if (matches(frame)) {
+			skipped.incrementAndGet();
+			return true;
+		}
+		sent.incrementAndGet();
+		return false;
+	}
+
+	private boolean matches(int[][] frame) {
+		if (!known || frame.length != Compositor.ROWS) {
+			return false;
+		}
+		for (int row = 0; row < Compositor.ROWS; row++) {
+			if (frame[row].length != Compositor.COLUMNS) {
+				return false;
+			}
+			for (int column = 0; column < Compositor.COLUMNS; column++) {
+				if (cells[row * Compositor.COLUMNS + column] != frame[row][column]) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Records a frame as being on the board, call this once the board accepted
+	 * it.
+	 *
+	 * The listener is given a copy of the frame, outside the lock, so saving it
+	 * doesn't hold up the next send.
+	 */
+	public void update(int[][] frame) {
+		Consumer<int[][]> listener;
+		int[][] copy;
+		synchronized (this) {
+			if (!record(frame)) {
+				return;
+			}
+			listener = this.listener;
+			copy = listener != null ? toFrame() : null;
+		}
+		if (listener != null) {
+			listener.accept(copy);
+		}
+	}
+
+	/**
+	 * @return Whether the frame could be recorded, the board is unknown if not.
+	 */
+	private boolean record(int[][] frame) {
+		if (frame == null || frame.length != Compositor.ROWS) {
+			known = false;
+			return false;
+		}
+		for (int row = 0; row < Compositor.ROWS; row++) {
+			if (frame[row].length != Compositor.COLUMNS) {
+				known = false;
+				return false;
+			}
+			for (int column = 0; column < Compositor.COLUMNS; column++) {
+				cells[row * Compositor.COLUMNS + column] = (byte) frame[row][column];
+			}
+		}
+		known = true;
+		return true;
+	}
+
+	private int[][] toFrame() {
+		int[][] frame = new int[Compositor.ROWS][Compositor.COLUMNS];
+		for (int row = 0; row < Compositor.ROWS; row++) {
+			for (int column = 0; column < Compositor.COLUMNS; column++) {
+				frame[row][column] = cells[row * Compositor.COLUMNS + column];
+			}
+		}
+		return frame;
+	}
+
+	/**
+	 * Marks the board contents as unknown, for when something was sent that
+	 * can't be mirrored, such as a plain text message.
+	 */
+	public synchronized void invalidate() {
+		known = false;
+	}
+
+	public Stats getStats() {
+		return new Stats(sent.get(), skipped.get());
+	}
+}
@@ -0,0 +1,261 @@
+package com.vesta.rest_api.board;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.vesta.rest_api.Vestaboard;
+import com.vesta.rest_api.ratelimit.RateLimiter;
+import com.vesta.rest_api.timer.HashedWheelTimer;
+
+/**
+ * Decides which frame goes to the board next, and when, off the caller's
+ * thread.
+ *
+ * The board flaps slowly and Vestaboard throttles writes, so frames are not
+ * sent as soon as they're submitted. Each frame goes in a {@link Slot}, a
+ * newer frame replacing an unsent one in the same slot, and when the board
+ * can take a write the frame in the highest priority slot is sent. A frame
+ * stays up for at least the minimum display time before anything but a
+ * {@link Slot#CLEAR} replaces it, and writes are limited by a
+ * {@link RateLimiter} budget, so a burst of quick skips results in the board
+ * showing the last song once instead of flapping through all of them.
+ *
+ * Only one request is ever in flight, and the writer waits a short linger
+ * before the first send so changes that come in together are merged. A frame
+ * the board didn't accept is put back, unless something newer took its place
+ * or the board refused it outright. A frame the {@link BoardMirror} finds is
+ * already up isn't sent, and doesn't use up the write budget.
+ */
+public class ScreenScheduler {
+	private static final Logger LOG = LogManager.getLogger(ScreenScheduler.class);
+
+	/**
+	 * What a frame shows, in order of priority.
+	 */
+	public enum Slot {
+		/** A blank board after logging out, replaces everything else. */
+		CLEAR,
+		/** Confirms a requested song, the state is shown again after it. */
+		REQUEST_CONFIRMATION,
+		/** The state after the song changed. */
+		NOW_PLAYING,
+		/** The state after only the next up changed. */
+		NEXT_UP;
+
+		/**
+		 * @return Whether the frame shows the state, the state slots hold the whole
+		 *         state so only one of them is ever pending.
+		 */
+		boolean isState() {
+			return this == NOW_PLAYING || this == NEXT_UP;
+		}
+	}
+
+	/**
+	 * Snapshot of the scheduler counters.
+	 *
+	 * @param sent             Frames the board accepted, not counting those that
+	 *                         were already on it.
+	 * @param failed           Frames the board didn't accept, they are sent
+	 *                         again unless replaced or refused with a 4xx.
+	 * @param superseded       Frames replaced by a newer frame before being sent.
+	 * @param heldBack         Times a send waited for the minimum display time or
+	 *                         the write budget.
+	 * @param pending          Frames waiting to be sent.
+	 * @param lastLatencyMs    How long the last send took.
+	 * @param averageLatencyMs The average time a request to the board takes,
+	 *                         accepted or not.
+	 */
+	public record Stats(long sent, long failed, long superseded, long heldBack, int pending, long lastLatencyMs,
+			double averageLatencyMs) {
+	}
+
+	private final Vestaboard board;
+	private final long lingerMs;
+	private final long minDisplayMs;
+	private final RateLimiter budget;
+	private final HashedWheelTimer timer;
+	private final LongSupplier clock;
+
+	// everything below is guarded by this, only the send itself happens outside it.
+	private final Map<Slot, int[][]> pending = new EnumMap<>(Slot.class);
+	/** Whether a drain is scheduled or running. */
+	private boolean scheduled;
+	/** When the frame on the board was sent, 0 if nothing has been sent yet. */
+	private long shownAt;
+	/** The newest state frame, shown again after a request confirmation. */
+	private int[][] lastState;
+
+	private long sent;
+	private long failed;
+	private long superseded;
+	private long heldBack;
+	private long lastLatencyMs;
+	private long totalLatencyMs;
+
+	/**
+	 * @param board        The board frames are sent to.
+	 * @param lingerMs     How long to wait for more changes before sending.
+	 * @param minDisplayMs How long a frame stays on the board before another
+	 *                     replaces it.
+	 * @param budget       Limits how often the board is written to.
+	 * @param timer        The timer the sends are scheduled on.
+	 */
+	public ScreenScheduler(Vestaboard board, long lingerMs, long minDisplayMs, RateLimiter budget,
+			HashedWheelTimer timer) {
+		this(board, lingerMs, minDisplayMs, budget, timer, System::currentTimeMillis);
+	}
+
+	/**
+	 * @param clock The current time in epoch milliseconds, the same clock the
+	 *              timer runs on.
+	 */
+	ScreenScheduler(Vestaboard board, long lingerMs, long minDisplayMs, RateLimiter budget, HashedWheelTimer timer,
+			LongSupplier clock) {
+		this.board = board;
+		this.lingerMs = lingerMs;
+		this.minDisplayMs = minDisplayMs;
+		this.budget = budget;
+		this.timer = timer;
+		this.clock = clock;
+	}
+
+	/**
+	 * Queue a frame to be sent, replacing any unsent frame in the same slot.
+	 *
+	 * A state frame also replaces an unsent state frame in the other state slot,
+	 * keeping the higher of the two priorities, and a clear drops every unsent
+	 * frame.
+	 *
+	 * @param slot  What the frame shows.
+	 * @param frame A 6x22 array of character codes.
+	 */
+	public synchronized void submit(Slot slot, int[][] frame) {
+		if (slot == Slot.CLEAR) {
+			superseded += pending.size();
+			pending.clear();
+			lastState = null;
+		} else if (slot.isState()) {
+			lastState = frame;
+			if (pending.remove(Slot.NOW_PLAYING) != null) {
+				slot = Slot.NOW_PLAYING;
+				superseded++;
+			} else if (pending.remove(Slot.NEXT_UP) != null) {
+				superseded++;
+			}
+		}
+		if (pending.put(slot, frame) != null) {
+			superseded++;
+		}
+		if (!scheduled) {
+			scheduled = true;
+			timer.newTimeout(this::drain, lingerMs);
+		}
+	}
+
+	/**
+	 * Sends the highest priority frame if the board can take it, otherwise
+	 * checks again once it can. Only one drain is scheduled at a time.
+	 */
+	private void drain() {
+		Slot slot;
+		int[][] frame;
+		synchronized (this) {
+			if (pending.isEmpty()) {
+				scheduled = false;
+				return;
+			}
+			slot = pending.keySet().iterator().next();
+			long now = clock.getAsLong();
+			long wait = slot == Slot.CLEAR ? 0 : shownAt + minDisplayMs - now;
+			if (wait <= 0) {
+				wait = budget.tryAcquire(now);
+			}
+			if (wait > 0) {
+				heldBack++;
+				timer.newTimeout(this::drain, wait);
+				return;
+			}
+			frame = pending.remove(slot);
+		}
+
+		Vestaboard.Outcome outcome = Vestaboard.Outcome.FAILED;
+		try {
+			outcome = send(frame);
+		} finally {
+			synchronized (this) {
+				if (outcome == Vestaboard.Outcome.SENT) {
+					shownAt = clock.getAsLong();
+				} else if (outcome == Vestaboard.Outcome.UNCHANGED) {
+					// nothing was written, so the write is still in the budget.
+					budget.release();
+				} else if (outcome == Vestaboard.Outcome.FAILED && isStillWanted(slot)) {
+					pending.put(slot, frame);
+				}
+				// the confirmation is only up for a while, then the state comes back.
+				if (slot == Slot.REQUEST_CONFIRMATION && lastState != null && !pending.containsKey(Slot.NEXT_UP)) {
+					pending.putIfAbsent(Slot.NOW_PLAYING, lastState);
+				}
+				if (pending.isEmpty()) {
+					scheduled = false;
+				} else {
+					timer.newTimeout(this::drain, lingerMs);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Whether a frame that failed to send should be sent again, which it isn't
+	 * if a newer frame replaced it while it was being sent.
+	 */
+	private boolean isStillWanted(Slot slot) {
+		if (slot == Slot.CLEAR) {
+			// anything submitted after the clear comes after logging out.
+			return pending.isEmpty();
+		}
+		if (pending.containsKey(Slot.CLEAR)) {
+			return false;
+		}
+		if (slot.isState()) {
+			return !pending.containsKey(Slot.NOW_PLAYING) && !pending.containsKey(Slot.NEXT_UP);
+		}
+		return !pending.containsKey(slot);
+	}
+
+	/**
+	 * @return How sending the frame went.
+	 */
+	private Vestaboard.Outcome send(int[][] frame) {
+		long start = System.nanoTime();
+		Vestaboard.LayoutResult result = board.sendLayout(frame);
+		long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		if (result.outcome() == Vestaboard.Outcome.UNCHANGED) {
+			return result.outcome();
+		}
+		synchronized (this) {
+			lastLatencyMs = latency;
+			totalLatencyMs += latency;
+			if (result.outcome() == Vestaboard.Outcome.SENT) {
+				sent++;
+			} else {
+				failed++;
+			}
+		}
+		LOG.info("Board write took " + latency + "ms, outcome: " + result.outcome() + ", response: "
+				+ result.response());
+		return result.outcome();
+	}
+
+	public synchronized Stats getStats() {
+		long attempts = sent + failed;
+		double average = attempts > 0 ? (double) totalLatencyMs / attempts : 0;
+		return new Stats(sent, failed, superseded, heldBack, pending.size(), lastLatencyMs, average);
+	}
+}
@@ -0,0 +1,304 @@
+package com.vesta.rest_api.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.vesta.rest_api.Song;
+import com.vesta.rest_api.StateResponse;
+import com.vesta.rest_api.board.BoardMirror;
+import com.vesta.rest_api.vbml.Compositor;
+
+/**
+ * Append only on-disk journal of what the service needs to pick up where it
+ * left off after a restart, the Spotify refresh token, the last published
+ * state and the last frame sent to the board.
+ *
+ * Each change is appended as a record, a type byte followed by its fields,
+ * and the journal is replayed when opened, the last record of each type
+ * winning. Once the file grows past {@link #COMPACT_BYTES} it is rewritten
+ * with only the latest record of each type.
+ */
+public class StateJournal implements AutoCloseable {
+	private static final Logger LOG = LogManager.getLogger(StateJournal.class);
+
+	private static final byte TOKEN = 1;
+	private static final byte STATE = 2;
+	private static final byte FRAME = 3;
+
+	/** How large the journal may grow before it's compacted. */
+	static final long COMPACT_BYTES = 64 * 1024;
+	/** The journal holds the refresh token, so only its owner may read it. */
+	static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rw-------");
+
+	private final File journalFile;
+	private RandomAccessFile file;
+
+	private String refreshToken;
+	private StateResponse state;
+	private int[][] frame;
+
+	/**
+	 * Opens the journal and replays it, creating the file if it doesn't exist.
+	 *
+	 * If the file can't be opened the journal stays empty and writes are
+	 * ignored, the service just starts cold.
+	 *
+	 * @param path The path of the journal file.
+	 */
+	public StateJournal(String path) {
+		journalFile = new File(path);
+		try {
+			if (journalFile.getParentFile() != null) {
+				journalFile.getParentFile().mkdirs();
+			}
+			restrictToOwner(journalFile.toPath());
+			file = new RandomAccessFile(journalFile, "rw");
+			replay();
+			LOG.info("Replayed state journal at " + path + ", logged in: " + (refreshToken != null));
+		} catch (IOException e) {
+			LOG.warn("Could not open state journal at " + path + ", ERROR_MSG: " + e.getMessage());
+			file = null;
+		}
+	}
+
+	/**
+	 * Reads every record, truncating a partially written record at the end of
+	 * the file.
+	 */
+	private void replay() throws IOException {
+		long offset = 0;
+		file.seek(0);
+		try {
+			while (offset < file.length()) {
+				byte type = file.readByte();
+				switch (type) {
+					case TOKEN -> refreshToken = emptyToNull(file.readUTF());
+					case STATE -> state = readState();
+					case FRAME -> frame = readFrame();
+					default -> throw new EOFException("Unknown record type " + type);
+				}
+				offset = file.getFilePointer();
+			}
+		} catch (EOFException e) {
+			LOG.warn("State journal has a partial record at the end, truncating it.");
+			file.setLength(offset);
+		}
+	}
+
+	/**
+	 * @return The refresh token saved before the restart, or null if logged out.
+	 */
+	public synchronized String getRefreshToken() {
+		return refreshToken;
+	}
+
+	/**
+	 * @return The last published state, or null if there isn't one.
+	 */
+	public synchronized StateResponse getState() {
+		return state;
+	}
+
+	/**
+	 * @return The last frame the board accepted, or null if there isn't one.
+	 */
+	public synchronized int[][] getFrame() {
+		return frame;
+	}
+
+	/**
+	 * Record a new refresh token, or null once logged out.
+	 */
+	public synchronized void writeRefreshToken(String refreshToken) {
+		if (Objects.equals(this.refreshToken, refreshToken)) {
+			return;
+		}
+		this.refreshToken = refreshToken;
+		append(TOKEN, tokenFields(refreshToken));
+	}
+
+	public synchronized void writeState(StateResponse state) {
+		this.state = state;
+		append(STATE, stateFields(state));
+	}
+
+	/**
+	 * Record a frame the board accepted.
+	 *
+	 * @param frame A 6x22 array of character codes.
+	 */
+	public synchronized void writeFrame(int[][] frame) {
+		this.frame = frame;
+		append(FRAME, frameFields(frame));
+	}
+
+	@FunctionalInterface
+	private interface RecordWriter {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	private void append(byte type, RecordWriter fields) {
+		if (file == null) {
+			return;
+		}
+		try {
+			// build the record first so a failed write never leaves half a record behind.
+			byte[] record = toBytes(type, fields);
+			if (file.length() + record.length > COMPACT_BYTES) {
+				// the compacted journal already holds this record.
+				compact();
+				return;
+			}
+			file.seek(file.length());
+			file.write(record);
+		} catch (IOException e) {
+			LOG.warn("Could not write to state journal, ERROR_MSG: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Rewrites the journal with only the latest record of each type, swapping
+	 * the new file in once it's complete.
+	 */
+	private void compact() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		if (refreshToken != null) {
+			bytes.write(toBytes(TOKEN, tokenFields(refreshToken)));
+		}
+		if (state != null) {
+			bytes.write(toBytes(STATE, stateFields(state)));
+		}
+		if (frame != null) {
+			bytes.write(toBytes(FRAME, frameFields(frame)));
+		}
+
+		File compacted = new File(journalFile.getPath() + ".compact");
+		Files.deleteIfExists(compacted.toPath());
+		restrictToOwner(compacted.toPath());
+		Files.write(compacted.toPath(), bytes.toByteArray());
+		file.close();
+		try {
+			Files.move(compacted.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			// if the move failed the old journal is still there, keep appending to it.
+			file = new RandomAccessFile(journalFile, "rw");
+		}
+		LOG.info("Compacted state journal to " + bytes.size() + " bytes.");
+	}
+
+	/**
+	 * Creates the file readable and writable by its owner only, or tightens the
+	 * permissions of a journal written before they were set. File systems
+	 * without POSIX permissions are left alone.
+	 */
+	private static void restrictToOwner(Path path) throws IOException {
+		if (!path.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+			return;
+		}
+		if (Files.exists(path)) {
+			Files.setPosixFilePermissions(path, OWNER_ONLY);
+		} else {
+			Files.createFile(path, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+		}
+	}
+
+	private static byte[] toBytes(byte type, RecordWriter fields) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(type);
+		fields.write(out);
+		return bytes.toByteArray();
+	}
+
+	private static RecordWriter tokenFields(String refreshToken) {
+		return out -> out.writeUTF(nullToEmpty(refreshToken));
+	}
+
+	private static RecordWriter stateFields(StateResponse state) {
+		return out -> {
+			out.writeBoolean(Boolean.TRUE.equals(state.isConnected()));
+			out.writeUTF(nullToEmpty(state.connectedUser()));
+			out.writeBoolean(Boolean.TRUE.equals(state.isPlaying()));
+			writeSong(out, state.nowPlaying());
+			writeSong(out, state.upNext());
+		};
+	}
+
+	private static RecordWriter frameFields(int[][] frame) {
+		return out -> {
+			for (int[] row : frame) {
+				for (int code : row) {
+					out.writeByte(code);
+				}
+			}
+		};
+	}
+
+	private static void writeSong(DataOutputStream out, Song song) throws IOException {
+		out.writeBoolean(song != null);
+		if (song != null) {
+			out.writeUTF(nullToEmpty(song.title()));
+			out.writeUTF(nullToEmpty(song.artist()));
+			out.writeUTF(nullToEmpty(song.albumArt()));
+			out.writeUTF(nullToEmpty(song.id()));
+		}
+	}
+
+	private StateResponse readState() throws IOException {
+		boolean connected = file.readBoolean();
+		String user = emptyToNull(file.readUTF());
+		boolean playing = file.readBoolean();
+		return new StateResponse(connected, user, playing, readSong(), readSong());
+	}
+
+	private Song readSong() throws IOException {
+		if (!file.readBoolean()) {
+			return null;
+		}
+		String title = file.readUTF();
+		String artist = file.readUTF();
+		String albumArt = emptyToNull(file.readUTF());
+		return new Song(title, artist, albumArt, emptyToNull(file.readUTF()));
+	}
+
+	private int[][] readFrame() throws IOException {
+		byte[] cells = new byte[BoardMirror.CELLS];
+		file.readFully(cells);
+		int[][] layout = new int[Compositor.ROWS][Compositor.COLUMNS];
+		for (int i = 0; i < cells.length; i++) {
+			layout[i / Compositor.COLUMNS][i % Compositor.COLUMNS] = cells[i];
+		}
+		return layout;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (file != null) {
+			file.close();
+			file = null;
+		}
+	}
+
+	private static String nullToEmpty(String s) {
+		return s == null ? "" : s;
+	}
+
+	private static String emptyToNull(String s) {
+		return s.isEmpty() ? null : s;
+	}
+}
@@ -0,0 +1,130 @@
+package com.vesta.rest_api.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two tier cache of track metadata keyed by Spotify track ID.
+ *
+ * The first tier is a bounded in-memory LRU map, the second is a
+ * {@link TrackStore} on disk. A track found on disk is promoted back into
+ * memory. Hit and miss counters are kept so the amount of Spotify quota saved
+ * can be checked with {@link #getStats()}.
+ *
+ * Every track that goes through the cache, including the ones on disk from
+ * before a restart, is also added to a {@link TrackCatalog} for searching.
+ */
+public class TrackCache {
+
+	/**
+	 * Snapshot of the cache counters.
+	 *
+	 * @param memoryHits Lookups answered from memory.
+	 * @param diskHits   Lookups answered from the on-disk store.
+	 * @param misses     Lookups that had to go to Spotify.
+	 * @param size       Tracks currently held in memory.
+	 */
+	public record Stats(long memoryHits, long diskHits, long misses, int size) {
+	}
+
+	private final Map<String, TrackMetadata> memory;
+	private final TrackStore store;
+	private final TrackCatalog catalog = new TrackCatalog();
+
+	private final AtomicLong memoryHits = new AtomicLong();
+	private final AtomicLong diskHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param capacity The maximum number of tracks kept in memory.
+	 * @param store    The on-disk store backing the cache, may be null for a
+	 *                 memory only cache.
+	 */
+	public TrackCache(int capacity, TrackStore store) {
+		this.store = store;
+		// access ordered, so the eldest entry is the least recently used.
+		this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, TrackMetadata> eldest) {
+				return size() > capacity;
+			}
+		};
+		if (store != null) {
+			store.forEach(catalog::add);
+		}
+	}
+
+	/**
+	 * Create a cache configured from the environment, TRACK_CACHE_SIZE sets the
+	 * memory capacity (default 512) and TRACK_CACHE_PATH the store file (default
+	 * cache/tracks.dat).
+	 */
+	public static TrackCache fromEnvironment() {
+		String size = System.getenv("TRACK_CACHE_SIZE");
+		String path = System.getenv("TRACK_CACHE_PATH");
+		int capacity = size != null ? Integer.parseInt(size) : 512;
+		return new TrackCache(capacity, new TrackStore(path != null ? path : "cache/tracks.dat"));
+	}
+
+	/**
+	 * Look up a track.
+	 *
+	 * @param id The Spotify track ID.
+	 * @return The cached track, or null if the track needs to be fetched.
+	 */
+	public TrackMetadata get(String id) {
+		TrackMetadata track;
+		synchronized (memory) {
+			track = memory.get(id);
+		}
+		if (track != null) {
+			memoryHits.incrementAndGet();
+			return track;
+		}
+
+		track = store != null ? store.get(id) : null;
+		if (track != null) {
+			diskHits.incrementAndGet();
+			synchronized (memory) {
+				memory.put(id, track);
+			}
+			return track;
+		}
+
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Add a track fetched from Spotify to both tiers. Local files have no ID
+	 * and can't be looked up again, so they aren't cached.
+	 */
+	public void put(TrackMetadata track) {
+		if (track.id() == null) {
+			return;
+		}
+		synchronized (memory) {
+			memory.put(track.id(), track);
+		}
+		catalog.add(track);
+		if (store != null) {
+			store.put(track);
+		}
+	}
+
+	/**
+	 * @return The index of every track seen, for searching.
+	 */
+	public TrackCatalog getCatalog() {
+		return catalog;
+	}
+
+	public Stats getStats() {
+		int size;
+		synchronized (memory) {
+			size = memory.size();
+		}
+		return new Stats(memoryHits.get(), diskHits.get(), misses.get(), size);
+	}
+}
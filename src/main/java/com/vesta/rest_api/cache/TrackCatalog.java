@@ -0,0 +1,201 @@
+package com.vesta.rest_api.cache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.vesta.rest_api.vbml.TitleNormalizer;
+
+/**
+ * In-memory index of every track the service has seen, so songs can be
+ * searched for and requested without asking Spotify.
+ *
+ * Titles and artists are indexed by word, compared with
+ * {@link TitleNormalizer#searchKey(String)}. The words are kept sorted, so
+ * every word starting with a prefix is one range of the map, which makes a
+ * prefix lookup as cheap as walking a trie without keeping one node per
+ * letter.
+ */
+public class TrackCatalog {
+
+	/**
+	 * Snapshot of the catalog counters.
+	 *
+	 * @param tracks   Tracks in the catalog.
+	 * @param words    Distinct words indexed.
+	 * @param searches Prefix searches made.
+	 * @param lookups  Requests looked up by title and artist.
+	 * @param hits     Lookups the catalog answered, each one a Spotify search
+	 *                 saved.
+	 */
+	public record Stats(int tracks, int words, long searches, long lookups, long hits) {
+	}
+
+	/**
+	 * A track with its title and artist as compared.
+	 */
+	private record Entry(TrackMetadata track, String title, String strippedTitle, String artist) {
+	}
+
+	private final Map<String, Entry> tracks = new HashMap<>();
+	/** Every word of every title and artist, to the IDs of the tracks with it. */
+	private final TreeMap<String, Set<String>> words = new TreeMap<>();
+	/** Titles, with and without version tags, to the IDs of the tracks. */
+	private final Map<String, Set<String>> titles = new HashMap<>();
+
+	private long searches;
+	private long lookups;
+	private long hits;
+
+	/**
+	 * Add a track, or update it if its title or artist changed.
+	 */
+	public synchronized void add(TrackMetadata track) {
+		Entry existing = tracks.get(track.id());
+		if (existing != null) {
+			if (existing.track().equals(track)) {
+				return;
+			}
+			remove(existing);
+		}
+
+		Entry entry = new Entry(track, TitleNormalizer.searchKey(track.title()),
+				TitleNormalizer.searchKey(TitleNormalizer.stripTags(track.title())),
+				TitleNormalizer.searchKey(track.artist()));
+		tracks.put(track.id(), entry);
+		for (String word : wordsOf(entry)) {
+			words.computeIfAbsent(word, w -> new HashSet<>()).add(track.id());
+		}
+		titles.computeIfAbsent(entry.title(), t -> new HashSet<>()).add(track.id());
+		titles.computeIfAbsent(entry.strippedTitle(), t -> new HashSet<>()).add(track.id());
+	}
+
+	private void remove(Entry entry) {
+		String id = entry.track().id();
+		tracks.remove(id);
+		for (String word : wordsOf(entry)) {
+			removeID(words, word, id);
+		}
+		removeID(titles, entry.title(), id);
+		removeID(titles, entry.strippedTitle(), id);
+	}
+
+	private static void removeID(Map<String, Set<String>> index, String key, String id) {
+		Set<String> ids = index.get(key);
+		if (ids != null && ids.remove(id) && ids.isEmpty()) {
+			index.remove(key);
+		}
+	}
+
+	private static Set<String> wordsOf(Entry entry) {
+		Set<String> words = new HashSet<>();
+		for (String text : new String[] { entry.title(), entry.artist() }) {
+			for (String word : text.split(" ")) {
+				if (!word.isEmpty()) {
+					words.add(word);
+				}
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * Find tracks for autocomplete, every word typed has to start a word of the
+	 * title or artist, so "queen don" finds "Don't Stop Me Now" by Queen.
+	 *
+	 * Tracks whose title starts with what was typed come first, then tracks
+	 * where it matched the title, then the rest, each alphabetically.
+	 *
+	 * @param prefix What has been typed so far.
+	 * @param limit  The most tracks to return.
+	 */
+	public synchronized List<TrackMetadata> search(String prefix, int limit) {
+		searches++;
+		String query = TitleNormalizer.searchKey(prefix);
+		if (query.isEmpty() || limit <= 0) {
+			return List.of();
+		}
+
+		Set<String> candidates = null;
+		for (String term : query.split(" ")) {
+			Set<String> matches = new HashSet<>();
+			for (Set<String> ids : words.subMap(term, true, term + Character.MAX_VALUE, false).values()) {
+				matches.addAll(ids);
+			}
+			if (candidates == null) {
+				candidates = matches;
+			} else {
+				candidates.retainAll(matches);
+			}
+			if (candidates.isEmpty()) {
+				return List.of();
+			}
+		}
+
+		List<Entry> found = new ArrayList<>();
+		for (String id : candidates) {
+			found.add(tracks.get(id));
+		}
+		String firstTerm = query.split(" ")[0];
+		found.sort(Comparator.<Entry>comparingInt(entry -> rank(entry, query, firstTerm))
+				.thenComparing(Entry::title)
+				.thenComparing(Entry::artist));
+
+		List<TrackMetadata> results = new ArrayList<>();
+		for (int i = 0; i < found.size() && i < limit; i++) {
+			results.add(found.get(i).track());
+		}
+		return results;
+	}
+
+	private static int rank(Entry entry, String query, String firstTerm) {
+		if (entry.title().startsWith(query)) {
+			return 0;
+		}
+		return entry.title().startsWith(firstTerm) || entry.title().contains(' ' + firstTerm) ? 1 : 2;
+	}
+
+	/**
+	 * Look up a requested song, so it can be queued without searching Spotify.
+	 *
+	 * @param title  The title, matched whole, with or without version tags.
+	 * @param artist The artist, matched whole, or blank to match any artist.
+	 * @return The track, or null if the catalog doesn't have exactly one track
+	 *         matching.
+	 */
+	public synchronized TrackMetadata find(String title, String artist) {
+		lookups++;
+		Set<String> ids = titles.get(TitleNormalizer.searchKey(title));
+		if (ids == null) {
+			return null;
+		}
+		String artistKey = TitleNormalizer.searchKey(artist);
+		Entry match = null;
+		for (String id : ids) {
+			Entry entry = tracks.get(id);
+			if (!artistKey.isEmpty() && !entry.artist().equals(artistKey)) {
+				continue;
+			}
+			// the same song on several albums is fine, different songs need Spotify to pick.
+			if (match != null && (!match.strippedTitle().equals(entry.strippedTitle())
+					|| !match.artist().equals(entry.artist()))) {
+				return null;
+			}
+			match = entry;
+		}
+		if (match == null) {
+			return null;
+		}
+		hits++;
+		return match.track();
+	}
+
+	public synchronized Stats getStats() {
+		return new Stats(tracks.size(), words.size(), searches, lookups, hits);
+	}
+}
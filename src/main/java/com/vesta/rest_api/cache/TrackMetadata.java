@@ -0,0 +1,7 @@
+package com.vesta.rest_api.cache;
+
+/**
+ * The parts of a Spotify track the service needs, keyed by track ID.
+ */
+public record TrackMetadata(String id, String title, String artist, String albumArt) {
+}
@@ -0,0 +1,141 @@
+package com.vesta.rest_api.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Append only on-disk store of {@link TrackMetadata}, so tracks resolved before
+ * a restart don't need to be fetched from Spotify again.
+ *
+ * Records are written back to back as modified UTF-8 strings (id, title,
+ * artist, album art). Only the offset of each record is kept in memory, the
+ * record itself is read from disk when asked for.
+ */
+public class TrackStore {
+	private static final Logger LOG = LogManager.getLogger(TrackStore.class);
+
+	private final HashMap<String, Long> offsets = new HashMap<>();
+	private RandomAccessFile file;
+
+	/**
+	 * Opens the store, creating the file if it doesn't exist.
+	 *
+	 * If the file can't be opened the store stays empty and writes are ignored,
+	 * the cache still works, it just won't survive a restart.
+	 *
+	 * @param path The path of the store file.
+	 */
+	public TrackStore(String path) {
+		try {
+			File storeFile = new File(path);
+			if (storeFile.getParentFile() != null) {
+				storeFile.getParentFile().mkdirs();
+			}
+			file = new RandomAccessFile(storeFile, "rw");
+			loadIndex();
+			LOG.info("Loaded " + offsets.size() + " tracks from " + path);
+		} catch (IOException e) {
+			LOG.warn("Could not open track store at " + path + ", ERROR_MSG: " + e.getMessage());
+			file = null;
+		}
+	}
+
+	/**
+	 * Reads every record offset into memory, truncating a partially written
+	 * record at the end of the file.
+	 */
+	private void loadIndex() throws IOException {
+		long offset = 0;
+		file.seek(0);
+		try {
+			while (offset < file.length()) {
+				String id = file.readUTF();
+				file.readUTF();
+				file.readUTF();
+				file.readUTF();
+				offsets.put(id, offset);
+				offset = file.getFilePointer();
+			}
+		} catch (EOFException e) {
+			LOG.warn("Track store has a partial record at the end, truncating it.");
+			file.setLength(offset);
+		}
+	}
+
+	/**
+	 * @param id The Spotify track ID.
+	 * @return The stored track, or null if it isn't in the store.
+	 */
+	public synchronized TrackMetadata get(String id) {
+		Long offset = offsets.get(id);
+		if (offset == null || file == null) {
+			return null;
+		}
+		try {
+			file.seek(offset);
+			String storedID = file.readUTF();
+			String title = file.readUTF();
+			String artist = file.readUTF();
+			String albumArt = file.readUTF();
+			return new TrackMetadata(storedID, title, artist, albumArt.isEmpty() ? null : albumArt);
+		} catch (IOException e) {
+			LOG.warn("Could not read track " + id + " from store, ERROR_MSG: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Appends a track to the store, does nothing if it's already stored or has
+	 * no ID.
+	 */
+	public synchronized void put(TrackMetadata track) {
+		if (file == null || track.id() == null || offsets.containsKey(track.id())) {
+			return;
+		}
+		try {
+			// build the record first so a failed write never leaves half a record behind.
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream record = new DataOutputStream(bytes);
+			record.writeUTF(track.id());
+			record.writeUTF(nullToEmpty(track.title()));
+			record.writeUTF(nullToEmpty(track.artist()));
+			record.writeUTF(nullToEmpty(track.albumArt()));
+
+			long offset = file.length();
+			file.seek(offset);
+			file.write(bytes.toByteArray());
+			offsets.put(track.id(), offset);
+		} catch (IOException e) {
+			LOG.warn("Could not write track " + track.id() + " to store, ERROR_MSG: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Reads every stored track, for indexing them when starting.
+	 */
+	public synchronized void forEach(Consumer<TrackMetadata> action) {
+		for (String id : offsets.keySet()) {
+			TrackMetadata track = get(id);
+			if (track != null) {
+				action.accept(track);
+			}
+		}
+	}
+
+	public synchronized int size() {
+		return offsets.size();
+	}
+
+	private static String nullToEmpty(String s) {
+		return s == null ? "" : s;
+	}
+}
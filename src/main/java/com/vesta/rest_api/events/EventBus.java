@@ -0,0 +1,184 @@
+package com.vesta.rest_api.events;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.vesta.rest_api.patterns.Observer;
+
+/**
+ * Delivers events to the observers subscribed to their type.
+ *
+ * Every subscriber gets its own bounded queue and is drained on a shared
+ * executor, one event at a time and in the order they were published.
+ * Publishing never blocks, if a subscriber falls so far behind that its queue
+ * fills up the oldest event in it is dropped, so a slow observer can only
+ * delay itself.
+ */
+public class EventBus implements AutoCloseable {
+	private static final Logger LOG = LogManager.getLogger(EventBus.class);
+
+	/**
+	 * Snapshot of the bus counters.
+	 *
+	 * @param published Events published.
+	 * @param delivered Events handed to an observer.
+	 * @param dropped   Events dropped because a subscriber's queue was full.
+	 * @param failed    Deliveries where the observer threw.
+	 */
+	public record Stats(long published, long delivered, long dropped, long failed) {
+	}
+
+	private final Map<ObservableEvents, List<Subscription>> routes = new EnumMap<>(ObservableEvents.class);
+	private final ExecutorService executor;
+	private final boolean ownsExecutor;
+	private final int queueCapacity;
+
+	private final AtomicLong published = new AtomicLong();
+	private final AtomicLong delivered = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+
+	/**
+	 * @param threads       How many threads deliver events.
+	 * @param queueCapacity How many undelivered events each subscriber can have.
+	 */
+	public EventBus(int threads, int queueCapacity) {
+		this(newExecutor(threads), true, queueCapacity);
+	}
+
+	/**
+	 * Creates a bus delivering on an executor shared with other buses, closing
+	 * the bus leaves the executor running.
+	 *
+	 * @param executor      Delivers the events.
+	 * @param queueCapacity How many undelivered events each subscriber can have.
+	 */
+	public EventBus(ExecutorService executor, int queueCapacity) {
+		this(executor, false, queueCapacity);
+	}
+
+	private EventBus(ExecutorService executor, boolean ownsExecutor, int queueCapacity) {
+		this.executor = executor;
+		this.ownsExecutor = ownsExecutor;
+		this.queueCapacity = queueCapacity;
+		for (ObservableEvents type : ObservableEvents.values()) {
+			routes.put(type, new CopyOnWriteArrayList<>());
+		}
+	}
+
+	/**
+	 * Subscribe an observer to some event types, or every type if none are
+	 * given.
+	 */
+	public void subscribe(Observer observer, ObservableEvents... types) {
+		EnumSet<ObservableEvents> selected = types.length == 0
+				? EnumSet.allOf(ObservableEvents.class)
+				: EnumSet.copyOf(List.of(types));
+		Subscription subscription = new Subscription(observer);
+		for (ObservableEvents type : selected) {
+			routes.get(type).add(subscription);
+		}
+	}
+
+	/**
+	 * Unsubscribe an observer from every event type. Events already queued for it
+	 * are still delivered.
+	 */
+	public void unsubscribe(Observer observer) {
+		for (List<Subscription> subscriptions : routes.values()) {
+			subscriptions.removeIf(subscription -> subscription.observer == observer);
+		}
+	}
+
+	/**
+	 * Queue an event for every observer subscribed to its type, without waiting
+	 * for any of them.
+	 */
+	public void publish(EventPayload<?> event) {
+		published.incrementAndGet();
+		for (Subscription subscription : routes.get(event.getType())) {
+			subscription.offer(event);
+		}
+	}
+
+	public Stats getStats() {
+		return new Stats(published.get(), delivered.get(), dropped.get(), failed.get());
+	}
+
+	@Override
+	public void close() {
+		if (ownsExecutor) {
+			executor.shutdown();
+		}
+	}
+
+	private static ExecutorService newExecutor(int threads) {
+		AtomicInteger count = new AtomicInteger();
+		return Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "event-bus-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * An observer's queue, drained by at most one thread at a time.
+	 */
+	private class Subscription {
+		private final Observer observer;
+		private final ArrayBlockingQueue<EventPayload<?>> queue = new ArrayBlockingQueue<>(queueCapacity);
+		private final AtomicBoolean draining = new AtomicBoolean();
+
+		Subscription(Observer observer) {
+			this.observer = observer;
+		}
+
+		void offer(EventPayload<?> event) {
+			while (!queue.offer(event)) {
+				// make room by dropping the oldest event instead of waiting for the observer.
+				if (queue.poll() != null) {
+					dropped.incrementAndGet();
+					LOG.warn(observer.getClass().getSimpleName() + " is falling behind, dropped an event.");
+				}
+			}
+			scheduleDrain();
+		}
+
+		private void scheduleDrain() {
+			if (draining.compareAndSet(false, true)) {
+				executor.execute(this::drain);
+			}
+		}
+
+		private void drain() {
+			EventPayload<?> event;
+			while ((event = queue.poll()) != null) {
+				try {
+					observer.update(event);
+					delivered.incrementAndGet();
+				} catch (Exception e) {
+					failed.incrementAndGet();
+					LOG.error("Observer " + observer.getClass().getSimpleName() + " failed on " + event.getType()
+							+ " ERROR_MSG: " + e.getLocalizedMessage());
+				}
+			}
+			draining.set(false);
+			// an event may have been queued after the last poll but before the flag was cleared.
+			if (!queue.isEmpty()) {
+				scheduleDrain();
+			}
+		}
+	}
+}
@@ -14,5 +14,10 @@ public enum ObservableEvents {
 	 */
 	LOGOUT(),
 	VESTABOARD_500(),
+	/**
+	 * When anything in the state returned by /current changes, the payload is
+	 * the new {@link com.vesta.rest_api.StateResponse}.
+	 */
+	STATE_UPDATE(),
 	SPOTIFY_TOKEN_EXPIRED()
 }
@@ -0,0 +1,416 @@
+package com.vesta.rest_api.history;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.vesta.rest_api.Song;
+
+/**
+ * Append only log of every song played and requested, with stats kept up to
+ * date as plays are added.
+ *
+ * Each play is a fixed width record in a memory-mapped file, the time it
+ * started followed by the track ID, title and artist as numbers from a
+ * dictionary, so a play costs 24 bytes however long the title is. The
+ * dictionary is appended to a file next to the log, each string is only ever
+ * written once. The file is mapped a segment at a time, so it can grow to
+ * millions of plays without mapping all of it.
+ *
+ * The log is read once when opened to rebuild the stats, after that every
+ * play updates them directly, so {@link #getStats(int)} never reads the log.
+ */
+public class PlayHistory implements AutoCloseable {
+	private static final Logger LOG = LogManager.getLogger(PlayHistory.class);
+
+	private static final int MAGIC = 0x56504831; // "VPH1"
+	/** The magic number, the record size and the number of records. */
+	private static final int HEADER_BYTES = 16;
+	/** Start time, track, title, artist and flags. */
+	private static final int RECORD_BYTES = 24;
+	private static final int RECORDS_PER_SEGMENT = 64 * 1024;
+	private static final long SEGMENT_BYTES = (long) RECORDS_PER_SEGMENT * RECORD_BYTES;
+
+	/** The play was of a song requested through /request_song. */
+	private static final int REQUESTED = 1;
+	/** The record is a song queued through /request_song rather than a play. */
+	private static final int REQUEST = 2;
+	/** How many requested songs are remembered while waiting for them to play. */
+	private static final int MAX_AWAITED_REQUESTS = 256;
+
+	/**
+	 * How often an artist or track was played.
+	 */
+	public record Count(String title, String artist, long plays) {
+	}
+
+	/**
+	 * Snapshot of the stats.
+	 *
+	 * @param plays           Songs played.
+	 * @param tracks          Distinct tracks played.
+	 * @param artists         Distinct artists played.
+	 * @param topArtists      The most played artists, without a title.
+	 * @param topTracks       The most played tracks.
+	 * @param playsByHour     Plays started in each hour of the day, in the
+	 *                        server's time zone.
+	 * @param requests        Songs queued through /request_song.
+	 * @param requestsPlayed  Requested songs that went on to play.
+	 * @param requestHitRate  The share of requested songs that played.
+	 */
+	public record Stats(long plays, int tracks, int artists, List<Count> topArtists, List<Count> topTracks,
+			long[] playsByHour, long requests, long requestsPlayed, double requestHitRate) {
+	}
+
+	private record Ranked(int ref, long count) implements Comparable<Ranked> {
+		@Override
+		public int compareTo(Ranked other) {
+			int byCount = Long.compare(other.count, count);
+			return byCount != 0 ? byCount : Integer.compare(ref, other.ref);
+		}
+	}
+
+	/**
+	 * Play counts kept in order, so the top entries are read off the front
+	 * instead of sorting every count.
+	 */
+	private static final class Ranking {
+		private final Map<Integer, Long> counts = new HashMap<>();
+		private final TreeSet<Ranked> ranked = new TreeSet<>();
+
+		void increment(int ref) {
+			Long count = counts.get(ref);
+			if (count != null) {
+				ranked.remove(new Ranked(ref, count));
+			}
+			long updated = count != null ? count + 1 : 1;
+			counts.put(ref, updated);
+			ranked.add(new Ranked(ref, updated));
+		}
+
+		int size() {
+			return counts.size();
+		}
+	}
+
+	private final ZoneId zone;
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private MappedByteBuffer header;
+	/** The segment new records are written to. */
+	private MappedByteBuffer segment;
+	private int segmentIndex = -1;
+	private long count;
+
+	private DataOutputStream dictionaryOut;
+	private final Map<String, Integer> dictionary = new HashMap<>();
+	private final List<String> strings = new ArrayList<>();
+
+	private final Ranking topArtists = new Ranking();
+	private final Ranking topTracks = new Ranking();
+	/** The title and artist of each track, by track. */
+	private final Map<Integer, int[]> trackNames = new HashMap<>();
+	private long plays;
+	private final long[] playsByHour = new long[24];
+	private long requests;
+	private long requestsPlayed;
+	/** Requested songs that haven't played yet, by track ID. */
+	private final Map<String, Boolean> awaitedRequests = new LinkedHashMap<>() {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+			return size() > MAX_AWAITED_REQUESTS;
+		}
+	};
+
+	public PlayHistory(String path) {
+		this(path, ZoneId.systemDefault());
+	}
+
+	/**
+	 * Opens the log and rebuilds the stats from it, creating the files if they
+	 * don't exist.
+	 *
+	 * If the log can't be opened, or the file isn't a play history with
+	 * records of this size, the stats only cover plays since the start, and
+	 * nothing is written.
+	 *
+	 * @param path The path of the log, the dictionary is kept next to it with a
+	 *             .dict extension.
+	 * @param zone The time zone plays are counted by hour in.
+	 */
+	public PlayHistory(String path, ZoneId zone) {
+		this.zone = zone;
+		File logFile = new File(path);
+		try {
+			if (logFile.getParentFile() != null) {
+				logFile.getParentFile().mkdirs();
+			}
+			file = new RandomAccessFile(logFile, "rw");
+			boolean created = file.length() == 0;
+			if (!created && file.length() < HEADER_BYTES) {
+				throw new IOException("the file is too short to be a play history");
+			}
+			channel = file.getChannel();
+			header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+			if (created) {
+				header.putInt(0, MAGIC);
+				header.putInt(4, RECORD_BYTES);
+				header.putLong(8, 0);
+			} else if (header.getInt(0) != MAGIC) {
+				// left alone rather than overwritten, it may be someone else's file.
+				throw new IOException("the file is not a play history");
+			} else if (header.getInt(4) != RECORD_BYTES) {
+				throw new IOException("the records are " + header.getInt(4) + " bytes, expected " + RECORD_BYTES);
+			}
+
+			File dictionaryFile = new File(path + ".dict");
+			loadDictionary(dictionaryFile);
+			dictionaryOut = new DataOutputStream(new FileOutputStream(dictionaryFile, true));
+			replay(header.getLong(8));
+			LOG.info("Loaded " + count + " plays from " + path);
+		} catch (IOException e) {
+			LOG.warn("Could not open play history at " + path + ", ERROR_MSG: " + e.getMessage());
+			close();
+		}
+	}
+
+	/**
+	 * Reads the dictionary, dropping a partially written string at the end.
+	 */
+	private void loadDictionary(File dictionaryFile) throws IOException {
+		if (!dictionaryFile.exists()) {
+			return;
+		}
+		long valid = 0;
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(dictionaryFile)))) {
+			while (true) {
+				String value = in.readUTF();
+				dictionary.put(value, strings.size());
+				strings.add(value);
+				valid += 2 + utfLength(value);
+			}
+		} catch (EOFException e) {
+			// the end of the dictionary, or half a string that is cut off below.
+		}
+		if (valid < dictionaryFile.length()) {
+			try (RandomAccessFile truncated = new RandomAccessFile(dictionaryFile, "rw")) {
+				truncated.setLength(valid);
+			}
+		}
+	}
+
+	/**
+	 * Adds every play in the log to the stats, stopping at a record that refers
+	 * to a string the dictionary never got.
+	 */
+	private void replay(long records) throws IOException {
+		for (long i = 0; i < records; i++) {
+			MappedByteBuffer buffer = segmentFor(i);
+			int offset = (int) (i % RECORDS_PER_SEGMENT) * RECORD_BYTES;
+			long startedAt = buffer.getLong(offset);
+			int track = buffer.getInt(offset + 8);
+			int title = buffer.getInt(offset + 12);
+			int artist = buffer.getInt(offset + 16);
+			int flags = buffer.getInt(offset + 20);
+			if (track >= strings.size() || title >= strings.size() || artist >= strings.size()) {
+				LOG.warn("Play history refers to strings that weren't saved, dropping the last "
+						+ (records - i) + " plays.");
+				break;
+			}
+			if ((flags & REQUEST) != 0) {
+				tallyRequest(strings.get(track));
+			} else {
+				boolean requested = (flags & REQUESTED) != 0;
+				if (requested) {
+					awaitedRequests.remove(strings.get(track));
+				}
+				tally(startedAt, track, title, artist, requested);
+			}
+			count++;
+		}
+		header.putLong(8, count);
+	}
+
+	/**
+	 * Record that a song started playing.
+	 *
+	 * @param song      The song, its track ID identifies it in the top tracks.
+	 * @param startedAt When it started, in epoch milliseconds.
+	 */
+	public synchronized void recordPlay(Song song, long startedAt) {
+		boolean requested = awaitedRequests.remove(trackKey(song)) != null;
+		int track = intern(trackKey(song));
+		int title = intern(song.title());
+		int artist = intern(song.artist());
+		tally(startedAt, track, title, artist, requested);
+		append(startedAt, track, title, artist, requested ? REQUESTED : 0);
+	}
+
+	/**
+	 * Record that a song was queued through /request_song, so it's counted as a
+	 * hit if it plays.
+	 */
+	public synchronized void recordRequest(Song song) {
+		String key = trackKey(song);
+		tallyRequest(key);
+		append(System.currentTimeMillis(), intern(key), intern(song.title()), intern(song.artist()), REQUEST);
+	}
+
+	private static String trackKey(Song song) {
+		return song.id() != null ? song.id() : song.title() + '\u0000' + song.artist();
+	}
+
+	private void append(long time, int track, int title, int artist, int flags) {
+		if (channel == null) {
+			return;
+		}
+		try {
+			MappedByteBuffer buffer = segmentFor(count);
+			int offset = (int) (count % RECORDS_PER_SEGMENT) * RECORD_BYTES;
+			buffer.putLong(offset, time);
+			buffer.putInt(offset + 8, track);
+			buffer.putInt(offset + 12, title);
+			buffer.putInt(offset + 16, artist);
+			buffer.putInt(offset + 20, flags);
+			// the count goes last, so a record is only part of the log once it's complete.
+			count++;
+			header.putLong(8, count);
+		} catch (IOException e) {
+			LOG.warn("Could not write to play history, ERROR_MSG: " + e.getMessage());
+		}
+	}
+
+	private void tallyRequest(String trackKey) {
+		requests++;
+		awaitedRequests.put(trackKey, Boolean.TRUE);
+	}
+
+	private void tally(long startedAt, int track, int title, int artist, boolean requested) {
+		plays++;
+		topTracks.increment(track);
+		topArtists.increment(artist);
+		trackNames.put(track, new int[] { title, artist });
+		playsByHour[Instant.ofEpochMilli(startedAt).atZone(zone).getHour()]++;
+		if (requested) {
+			requestsPlayed++;
+		}
+	}
+
+	/**
+	 * @param top How many artists and tracks to include.
+	 */
+	public synchronized Stats getStats(int top) {
+		List<Count> artists = new ArrayList<>();
+		for (Ranked ranked : topArtists.ranked) {
+			if (artists.size() >= top) {
+				break;
+			}
+			artists.add(new Count(null, strings.get(ranked.ref()), ranked.count()));
+		}
+		List<Count> tracks = new ArrayList<>();
+		for (Ranked ranked : topTracks.ranked) {
+			if (tracks.size() >= top) {
+				break;
+			}
+			int[] names = trackNames.get(ranked.ref());
+			tracks.add(new Count(strings.get(names[0]), strings.get(names[1]), ranked.count()));
+		}
+		double hitRate = requests > 0 ? (double) requestsPlayed / requests : 0;
+		return new Stats(plays, topTracks.size(), topArtists.size(), artists, tracks, playsByHour.clone(),
+				requests, requestsPlayed, hitRate);
+	}
+
+	/**
+	 * @return The dictionary number of a string, adding it to the dictionary if
+	 *         it's new.
+	 */
+	private int intern(String value) {
+		String key = value != null ? value : "";
+		Integer ref = dictionary.get(key);
+		if (ref != null) {
+			return ref;
+		}
+		if (dictionaryOut != null) {
+			try {
+				dictionaryOut.writeUTF(key);
+				dictionaryOut.flush();
+			} catch (IOException e) {
+				// the string may be half written, every string after it would be read back with the wrong number.
+				LOG.warn("Could not write to play history dictionary, no longer writing plays, ERROR_MSG: "
+						+ e.getMessage());
+				close();
+			}
+		}
+		// still counted in the stats even if it couldn't be written.
+		ref = strings.size();
+		dictionary.put(key, ref);
+		strings.add(key);
+		return ref;
+	}
+
+	/**
+	 * @return The mapped segment holding a record, mapping it if it isn't the
+	 *         current segment.
+	 */
+	private MappedByteBuffer segmentFor(long record) throws IOException {
+		int index = (int) (record / RECORDS_PER_SEGMENT);
+		if (index != segmentIndex) {
+			segment = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + index * SEGMENT_BYTES,
+					SEGMENT_BYTES);
+			segmentIndex = index;
+		}
+		return segment;
+	}
+
+	private static int utfLength(String value) {
+		int length = 0;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			length += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+		}
+		return length;
+	}
+
+	@Override
+	public synchronized void close() {
+		try {
+			if (segment != null) {
+				segment.force();
+			}
+			if (header != null) {
+				header.force();
+			}
+			if (file != null) {
+				file.close();
+			}
+			if (dictionaryOut != null) {
+				dictionaryOut.close();
+			}
+		} catch (IOException e) {
+			LOG.warn("Could not close play history, ERROR_MSG: " + e.getMessage());
+		}
+		file = null;
+		channel = null;
+		dictionaryOut = null;
+	}
+}
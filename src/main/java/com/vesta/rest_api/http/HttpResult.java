@@ -0,0 +1,12 @@
+package com.vesta.rest_api.http;
+
+/**
+ * The status code and body of a response received through
+ * {@link HttpTransport}.
+ */
+public record HttpResult(int status, String body) {
+
+	public boolean isSuccess() {
+		return status >= 200 && status < 300;
+	}
+}
@@ -0,0 +1,166 @@
+package com.vesta.rest_api.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.gson.Gson;
+
+/**
+ * Shared HTTP client for talking to the Vestaboard and VBML APIs.
+ *
+ * Connections are pooled and kept alive between requests, and every
+ * connection is created from the same TLS socket factory so TLS sessions are
+ * resumed instead of renegotiated. One instance is created as a Spring bean
+ * and handed to every {@link com.vesta.rest_api.Vestaboard}, so requests no
+ * longer pay for DNS, TCP and TLS setup each time.
+ */
+public class HttpTransport implements Closeable {
+	private static final Logger LOG = LogManager.getLogger(HttpTransport.class);
+
+	private static HttpTransport defaultTransport;
+
+	private final CloseableHttpClient client;
+	private final PoolingHttpClientConnectionManager pool;
+	private final Gson gson;
+
+	/**
+	 * @param maxConnections   The maximum number of pooled connections.
+	 * @param maxPerRoute      The maximum number of pooled connections per host.
+	 * @param connectTimeoutMs How long to wait for a connection to be
+	 *                         established.
+	 * @param readTimeoutMs    How long to wait for data once connected.
+	 * @param keepAliveMs      How long an idle connection is kept if the server
+	 *                         doesn't say.
+	 */
+	public HttpTransport(int maxConnections, int maxPerRoute, int connectTimeoutMs, int readTimeoutMs,
+			long keepAliveMs) {
+		pool = new PoolingHttpClientConnectionManager(RegistryBuilder.<ConnectionSocketFactory>create()
+				.register("http", PlainConnectionSocketFactory.getSocketFactory())
+				.register("https", SSLConnectionSocketFactory.getSocketFactory())
+				.build());
+		pool.setMaxTotal(maxConnections);
+		pool.setDefaultMaxPerRoute(maxPerRoute);
+		// recheck connections that sat idle, the server may have closed them.
+		pool.setValidateAfterInactivity(2000);
+
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(connectTimeoutMs)
+				.setConnectionRequestTimeout(connectTimeoutMs)
+				.setSocketTimeout(readTimeoutMs)
+				.build();
+
+		ConnectionKeepAliveStrategy keepAlive = (response, context) -> {
+			long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+			return serverKeepAlive > 0 ? serverKeepAlive : keepAliveMs;
+		};
+
+		client = HttpClients.custom()
+				.setConnectionManager(pool)
+				.setDefaultRequestConfig(requestConfig)
+				.setKeepAliveStrategy(keepAlive)
+				.evictExpiredConnections()
+				.evictIdleConnections(keepAliveMs, TimeUnit.MILLISECONDS)
+				.build();
+		gson = new Gson();
+	}
+
+	/**
+	 * Get the transport used by code created outside of Spring, such as the
+	 * main methods used for testing.
+	 */
+	public static synchronized HttpTransport getDefault() {
+		if (defaultTransport == null) {
+			defaultTransport = new HttpTransport(20, 10, 5000, 10000, 30000);
+		}
+		return defaultTransport;
+	}
+
+	/**
+	 * @return A Gson instance shared by everything using this transport.
+	 */
+	public Gson getGson() {
+		return gson;
+	}
+
+	/**
+	 * Sends a GET request.
+	 *
+	 * @param url     The URL to request.
+	 * @param headers Headers to add to the request.
+	 * @return The status and body of the response.
+	 * @throws IOException If the request fails or times out.
+	 */
+	public HttpResult get(String url, Map<String, String> headers) throws IOException {
+		return execute(new HttpGet(url), headers);
+	}
+
+	/**
+	 * Downloads a file, such as an image, without decoding it as text.
+	 *
+	 * @param url The URL of the file.
+	 * @return The body of the response.
+	 * @throws IOException If the request fails, times out or isn't a 2xx.
+	 */
+	public byte[] download(String url) throws IOException {
+		try (CloseableHttpResponse response = client.execute(new HttpGet(url))) {
+			int status = response.getStatusLine().getStatusCode();
+			if (status < 200 || status >= 300 || response.getEntity() == null) {
+				throw new IOException("Downloading " + url + " failed with status " + status);
+			}
+			return EntityUtils.toByteArray(response.getEntity());
+		}
+	}
+
+	/**
+	 * Sends a POST request with a JSON body.
+	 *
+	 * @param url     The URL to request.
+	 * @param headers Headers to add to the request.
+	 * @param json    The request body.
+	 * @return The status and body of the response.
+	 * @throws IOException If the request fails or times out.
+	 */
+	public HttpResult postJson(String url, Map<String, String> headers, String json) throws IOException {
+		HttpPost request = new HttpPost(url);
+		request.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+		return execute(request, headers);
+	}
+
+	private HttpResult execute(HttpRequestBase request, Map<String, String> headers) throws IOException {
+		headers.forEach(request::setHeader);
+		// closing the response returns the connection to the pool.
+		try (CloseableHttpResponse response = client.execute(request)) {
+			String body = response.getEntity() != null ? EntityUtils.toString(response.getEntity()) : null;
+			return new HttpResult(response.getStatusLine().getStatusCode(), body);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		LOG.info("Closing HTTP transport.");
+		client.close();
+		pool.close();
+	}
+}
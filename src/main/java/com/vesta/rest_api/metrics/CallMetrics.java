@@ -0,0 +1,168 @@
+package com.vesta.rest_api.metrics;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.vesta.rest_api.http.HttpResult;
+import com.vesta.rest_api.ratelimit.RateLimitedException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
+import se.michaelthelin.spotify.exceptions.detailed.UnauthorizedException;
+
+/**
+ * Times calls to an outside service, or the stages of a tick, tagged by what
+ * was called and how it went.
+ *
+ * Each endpoint and outcome gets its own timer, so the count of a timer is
+ * also the number of calls, e.g. the 429s from Spotify are the count of
+ * {@code outcome="too_many_requests"}. The timers are registered with
+ * Micrometer's global registry by default, which Spring Boot adds the
+ * Prometheus registry to.
+ *
+ * Latencies are counted into a short, fixed list of buckets rather than a
+ * full percentile histogram, which would export dozens of series for every
+ * endpoint and outcome.
+ */
+public class CallMetrics {
+
+	public static final String SUCCESS = "success";
+	/** Held back by our own {@link com.vesta.rest_api.ratelimit.RateLimiter}. */
+	public static final String RATE_LIMITED = "rate_limited";
+	/** Spotify answered with a 429. */
+	public static final String TOO_MANY_REQUESTS = "too_many_requests";
+	public static final String UNAUTHORIZED = "unauthorized";
+	public static final String CLIENT_ERROR = "client_error";
+	public static final String SERVER_ERROR = "server_error";
+	/** The call threw, or returned nothing. */
+	public static final String ERROR = "error";
+
+	/** The latency buckets every timer exports. */
+	static final Duration[] BUCKETS = { Duration.ofMillis(50), Duration.ofMillis(100), Duration.ofMillis(250),
+			Duration.ofMillis(500), Duration.ofSeconds(1), Duration.ofMillis(2500), Duration.ofSeconds(5),
+			Duration.ofSeconds(10) };
+
+	/** Every request to the Spotify Web API, by endpoint. */
+	public static final CallMetrics SPOTIFY = new CallMetrics("vestaboard.spotify.requests", "endpoint");
+	/** Every request to the Vestaboard API, by endpoint. */
+	public static final CallMetrics BOARD = new CallMetrics("vestaboard.board.requests", "endpoint");
+	/** Every request to the VBML API. */
+	public static final CallMetrics VBML = new CallMetrics("vestaboard.vbml.requests", "endpoint");
+	/** Each stage of {@link com.vesta.rest_api.SpotifyIntegration#run()}. */
+	public static final CallMetrics TICK = new CallMetrics("vestaboard.tick", "stage");
+
+	/**
+	 * A call to time.
+	 */
+	@FunctionalInterface
+	public interface Call<T, E extends Exception> {
+		T execute() throws E;
+	}
+
+	/**
+	 * A call to time that doesn't return anything.
+	 */
+	@FunctionalInterface
+	public interface Task<E extends Exception> {
+		void execute() throws E;
+	}
+
+	private final MeterRegistry registry;
+	private final String name;
+	private final String tagKey;
+	private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+	public CallMetrics(String name, String tagKey) {
+		this(Metrics.globalRegistry, name, tagKey);
+	}
+
+	/**
+	 * @param registry The registry the timers are registered with.
+	 * @param name     The name of the timers.
+	 * @param tagKey   The tag naming what was called, "endpoint" or "stage".
+	 */
+	public CallMetrics(MeterRegistry registry, String name, String tagKey) {
+		this.registry = registry;
+		this.name = name;
+		this.tagKey = tagKey;
+	}
+
+	/**
+	 * Run a call and time it, a call that returns an {@link HttpResult} is
+	 * tagged with the class of its status.
+	 *
+	 * @param endpoint What is being called.
+	 */
+	public <T, E extends Exception> T record(String endpoint, Call<T, E> call) throws E {
+		long start = System.nanoTime();
+		String outcome = ERROR;
+		try {
+			T result = call.execute();
+			outcome = result instanceof HttpResult response ? outcomeOf(response.status()) : SUCCESS;
+			return result;
+		} catch (Exception e) {
+			outcome = outcomeOf(e);
+			throw e;
+		} finally {
+			record(endpoint, outcome, start);
+		}
+	}
+
+	/**
+	 * Time a call that doesn't return anything.
+	 */
+	public <E extends Exception> void run(String endpoint, Task<E> task) throws E {
+		record(endpoint, () -> {
+			task.execute();
+			return null;
+		});
+	}
+
+	/**
+	 * Record a call that was timed by the caller.
+	 *
+	 * @param startNanos When the call started, from {@link System#nanoTime()}.
+	 */
+	public void record(String endpoint, String outcome, long startNanos) {
+		timer(endpoint, outcome).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return The timer of an endpoint and outcome, created the first time it's
+	 *         needed.
+	 */
+	public Timer timer(String endpoint, String outcome) {
+		return timers.computeIfAbsent(endpoint + ' ' + outcome, key -> Timer.builder(name)
+				.tags(tagKey, endpoint, "outcome", outcome)
+				.serviceLevelObjectives(BUCKETS)
+				.register(registry));
+	}
+
+	public static String outcomeOf(int status) {
+		if (status == 429) {
+			return TOO_MANY_REQUESTS;
+		} else if (status == 401) {
+			return UNAUTHORIZED;
+		} else if (status >= 500) {
+			return SERVER_ERROR;
+		} else if (status >= 400) {
+			return CLIENT_ERROR;
+		}
+		return SUCCESS;
+	}
+
+	public static String outcomeOf(Exception e) {
+		if (e instanceof RateLimitedException) {
+			return RATE_LIMITED;
+		} else if (e instanceof TooManyRequestsException) {
+			return TOO_MANY_REQUESTS;
+		} else if (e instanceof UnauthorizedException) {
+			return UNAUTHORIZED;
+		}
+		return ERROR;
+	}
+}
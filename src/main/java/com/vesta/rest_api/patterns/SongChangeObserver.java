@@ -1,15 +1,17 @@
 package com.vesta.rest_api.patterns;
 
-import java.util.HashMap;
-
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.vesta.rest_api.Component;
 import com.vesta.rest_api.Song;
 import com.vesta.rest_api.Vestaboard;
+import com.vesta.rest_api.board.BoardMirror;
 import com.vesta.rest_api.events.EventPayload;
 import com.vesta.rest_api.events.ObservableEvents;
+import com.vesta.rest_api.http.HttpTransport;
+import com.vesta.rest_api.vbml.Compositor;
+import com.vesta.rest_api.vbml.TitleNormalizer;
 
 /**
  * SongChangeObserver is a class that extends Vestaboard and implements the
@@ -42,6 +44,17 @@ public class SongChangeObserver extends Vestaboard implements Observer {
 		super(vestaboardKey);
 	}
 
+	/**
+	 * @param vestaboardKey The key used to authenticate with the Vestaboard API.
+	 * @param transport     The shared transport requests are sent with.
+	 * @param mirror        The mirror of the board, shared with the
+	 *                      {@link com.vesta.rest_api.SpotifyState} writing to the
+	 *                      same board.
+	 */
+	public SongChangeObserver(String vestaboardKey, HttpTransport transport, BoardMirror mirror) {
+		super(vestaboardKey, transport, mirror);
+	}
+
 	/**
 	 * Default construtor, assumes Vestaboard Key is
 	 * stored in the environment variable.
@@ -64,19 +77,19 @@ public class SongChangeObserver extends Vestaboard implements Observer {
 		nowPlayingComponent.setHeight(3);
 		nowPlayingComponent.setBody(
 				"{66} Now Playing\n{64} " +
-						nowPlaying.getTrimmedTitle() +
+						TitleNormalizer.fit(nowPlaying.getTrimmedTitle(), Compositor.COLUMNS - 2) +
 						"\n{68} " +
-						nowPlaying.getArtist());
+						TitleNormalizer.fit(nowPlaying.getDisplayArtist(), Compositor.COLUMNS - 2));
 		Component upNextComponent = new Component();
 		upNextComponent.setAlign("top");
 		upNextComponent.setJustify("left");
 		upNextComponent.setHeight(3);
 		upNextComponent.setBody(
 				"\n{65} Next Up\n{67} " +
-						nextUp.getTrimmedTitle());
-		String VBML = Component.compileComponents(nowPlayingComponent, upNextComponent);
-		HashMap<String, String> result = super.sendRaw(VBML);
-		LOG.info("Response from Vestaboard API: " + result);
+						TitleNormalizer.fit(nextUp.getTrimmedTitle(), Compositor.COLUMNS - 2));
+		int[][] layout = Component.compose(nowPlayingComponent, upNextComponent);
+		Vestaboard.LayoutResult result = super.sendLayout(layout);
+		LOG.info("Response from Vestaboard API: " + result.response());
 
 	}
 
@@ -90,7 +103,7 @@ public class SongChangeObserver extends Vestaboard implements Observer {
 	public void update(EventPayload<?> event) {
 		if (event.getType() == ObservableEvents.NEW_SONG) {
 			Song[] songs = (Song[]) event.getPayload();
-			System.out.println("LENGTH: " + songs.length);
+			LOG.debug("New song event with " + songs.length + " songs, now playing and up next.");
 			Song nowPlaying = songs[0];
 			Song upNext = songs[1];
 			updateBoard(nowPlaying, upNext);
@@ -8,7 +8,14 @@ public class SpotifyAPIObserver implements Observer{
 	private SpotifyUserSingleton user;
 
 	public SpotifyAPIObserver() {
-		user = SpotifyUserSingleton.getInstance();
+		this(SpotifyUserSingleton.getInstance());
+	}
+
+	/**
+	 * @param user The user whose token is refreshed.
+	 */
+	public SpotifyAPIObserver(SpotifyUserSingleton user) {
+		this.user = user;
 	}
 
 	@Override
@@ -16,7 +23,8 @@ public class SpotifyAPIObserver implements Observer{
 		ObservableEvents type = event.getType();
 
 		if (type == ObservableEvents.SPOTIFY_TOKEN_EXPIRED) {
-			// refresh spotify token
+			// every caller shares the refresh, so this is a no-op if one is already running.
+			user.refreshAccessToken();
 		}
 	}
 }
@@ -2,13 +2,26 @@ package com.vesta.rest_api.patterns;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.vesta.rest_api.PlaybackSnapshot;
 import com.vesta.rest_api.Song;
+import com.vesta.rest_api.auth.TokenRefresher;
+import com.vesta.rest_api.cache.TrackCache;
+import com.vesta.rest_api.cache.TrackCatalog;
+import com.vesta.rest_api.cache.TrackMetadata;
+import com.vesta.rest_api.metrics.CallMetrics;
+import com.vesta.rest_api.ratelimit.RateLimitedException;
+import com.vesta.rest_api.ratelimit.RateLimiter;
+import com.vesta.rest_api.timer.HashedWheelTimer;
 
 import org.apache.commons.logging.Log;
 import org.apache.hc.core5.http.ParseException;
@@ -16,6 +29,7 @@ import org.apache.hc.core5.http.ParseException;
 import se.michaelthelin.spotify.SpotifyApi;
 import se.michaelthelin.spotify.SpotifyHttpManager;
 import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
 import se.michaelthelin.spotify.model_objects.IPlaylistItem;
 import se.michaelthelin.spotify.model_objects.credentials.AuthorizationCodeCredentials;
 import se.michaelthelin.spotify.model_objects.miscellaneous.CurrentlyPlaying;
@@ -23,6 +37,7 @@ import se.michaelthelin.spotify.model_objects.miscellaneous.CurrentlyPlayingCont
 import se.michaelthelin.spotify.model_objects.special.PlaybackQueue;
 import se.michaelthelin.spotify.requests.authorization.authorization_code.AuthorizationCodeUriRequest;
 import se.michaelthelin.spotify.requests.data.player.GetUsersCurrentlyPlayingTrackRequest;
+import se.michaelthelin.spotify.model_objects.specification.Image;
 import se.michaelthelin.spotify.model_objects.specification.Paging;
 import se.michaelthelin.spotify.model_objects.specification.Track;
 import se.michaelthelin.spotify.model_objects.specification.User;
@@ -30,26 +45,92 @@ import se.michaelthelin.spotify.model_objects.specification.User;
 public class SpotifyUserSingleton {
 	private static SpotifyUserSingleton instance;
 	private SpotifyApi spot;
-	private boolean isAuthenticated;
+	private volatile boolean isAuthenticated;
+	private TrackCache trackCache;
+	private TokenRefresher tokenRefresher;
+
+	/**
+	 * Shared by every request to the Spotify Web API, so a Retry-After from one
+	 * endpoint holds back all of them. Spotify rate limits per app rather than
+	 * per user, so sessions created with {@link #newSession} share it too.
+	 */
+	private final RateLimiter rateLimiter;
+
+	private final String clientID;
+	private final String clientSecret;
+	private final String redirectURI;
+
+	/**
+	 * A request to the Spotify Web API, see {@link #call(String, SpotifyCall)}.
+	 */
+	@FunctionalInterface
+	private interface SpotifyCall<T> {
+		T execute() throws IOException, ParseException, SpotifyWebApiException;
+	}
+
+	/**
+	 * The most tracks the several-tracks endpoint accepts in one request.
+	 */
+	private static final int TRACKS_PER_REQUEST = 50;
 	private static final Logger LOG = LogManager.getLogger(SpotifyUserSingleton.class);
 
 	/**
 	 * Singleton for interacting with spotify API.
+	 *
+	 * @param timer The timer token refreshes are scheduled on.
 	 */
-	private SpotifyUserSingleton(String clientID, String clientSecret, String redirectURI) {
-		// Initialize Logger
+	private SpotifyUserSingleton(String clientID, String clientSecret, String redirectURI, HashedWheelTimer timer) {
+		this(clientID, clientSecret, redirectURI, TrackCache.fromEnvironment(), new RateLimiter(90, 300, 30_000),
+				timer);
+	}
+
+	/**
+	 * @param timer The timer token refreshes are scheduled on.
+	 */
+	private SpotifyUserSingleton(String clientID, String clientSecret, String redirectURI, TrackCache trackCache,
+			RateLimiter rateLimiter, HashedWheelTimer timer) {
+		this(buildApi(clientID, clientSecret, redirectURI), clientID, clientSecret, redirectURI, trackCache,
+				rateLimiter, timer);
+	}
+
+	private SpotifyUserSingleton(SpotifyApi spot, String clientID, String clientSecret, String redirectURI,
+			TrackCache trackCache, RateLimiter rateLimiter, HashedWheelTimer timer) {
+		this.clientID = clientID;
+		this.clientSecret = clientSecret;
+		this.redirectURI = redirectURI;
+		this.trackCache = trackCache;
+		this.rateLimiter = rateLimiter;
+		this.spot = spot;
+
+		// an API handed over with a token is already logged in.
+		isAuthenticated = spot != null && spot.getAccessToken() != null;
+		tokenRefresher = new TokenRefresher(spot, timer);
+		tokenRefresher.onRevoked(this::resetAuth);
+	}
 
+	private static SpotifyApi buildApi(String clientID, String clientSecret, String redirectURI) {
 		try {
-			spot = new SpotifyApi.Builder()
+			return new SpotifyApi.Builder()
 					.setClientId(clientID)
 					.setClientSecret(clientSecret)
 					.setRedirectUri(SpotifyHttpManager.makeUri(redirectURI))
 					.build();
 		} catch (Exception e) {
 			LOG.warn("Failed to authenticate, are your keys correct? ERROR_MSG: " + e.getLocalizedMessage());
+			return null;
 		}
+	}
 
-		isAuthenticated = false;
+	/**
+	 * Creates a user around an existing {@link SpotifyApi}, for the benchmarks
+	 * and load tests that point it at a fake Spotify server.
+	 *
+	 * @param spot        The API, logged in if it already has an access token.
+	 * @param rateLimiter The rate limiter requests go through.
+	 * @param timer       The timer token refreshes are scheduled on.
+	 */
+	public static SpotifyUserSingleton forApi(SpotifyApi spot, RateLimiter rateLimiter, HashedWheelTimer timer) {
+		return new SpotifyUserSingleton(spot, null, null, null, new TrackCache(512, null), rateLimiter, timer);
 	}
 
 	/**
@@ -58,19 +139,35 @@ public class SpotifyUserSingleton {
 	 * @param clientID     The Spotify client ID.
 	 * @param clientSecret The Spotify client secret.
 	 * @param redirectURI  The redirect URI after authentication.
+	 * @param timer        The timer token refreshes are scheduled on.
 	 * @return The singleton instance of SpotifyUserSingleton.
 	 */
 	public static SpotifyUserSingleton getInstance(
 			String clientID,
 			String clientSecret,
-			String redirectURI) {
+			String redirectURI,
+			HashedWheelTimer timer) {
 		if (instance == null) {
-			instance = new SpotifyUserSingleton(clientID, clientSecret, redirectURI);
+			instance = new SpotifyUserSingleton(clientID, clientSecret, redirectURI, timer);
 			LOG.debug("SpotifyUserSingleton created.");
 		}
 		return instance;
 	}
 
+	/**
+	 * Creates another, separately authenticated, user of the same Spotify app.
+	 *
+	 * Despite the class name there can be one of these per session. They share
+	 * the track cache and rate limiter of this instance, so each one only costs
+	 * its own tokens.
+	 *
+	 * @param timer The timer the new user's token refreshes are scheduled on.
+	 * @return A user that isn't authenticated yet.
+	 */
+	public SpotifyUserSingleton newSession(HashedWheelTimer timer) {
+		return new SpotifyUserSingleton(clientID, clientSecret, redirectURI, trackCache, rateLimiter, timer);
+	}
+
 	public static SpotifyUserSingleton getInstance() {
 		if (instance != null) {
 			return instance;
@@ -80,6 +177,75 @@ public class SpotifyUserSingleton {
 
 	}
 
+	/**
+	 * Makes a request through the {@link RateLimiter}.
+	 *
+	 * Instead of waiting for capacity this fails straight away, so a caller
+	 * never holds its thread while rate limited.
+	 *
+	 * If the access token has already expired this waits for it to be refreshed
+	 * first, rather than making a request that is certain to fail.
+	 *
+	 * @throws RateLimitedException   If the request would go over the rate limit
+	 *                                or a Retry-After hasn't passed yet.
+	 * @throws SpotifyWebApiException If Spotify rejects the request, a 429 also
+	 *                                blocks later requests for its Retry-After.
+	 */
+	private <T> T call(String endpoint, SpotifyCall<T> request)
+			throws IOException, ParseException, SpotifyWebApiException {
+		return timed(endpoint, () -> {
+			tokenRefresher.ensureFresh();
+			long wait = rateLimiter.tryAcquire(System.currentTimeMillis());
+			if (wait > 0) {
+				throw new RateLimitedException("Rate limited, retry in " + wait + "ms", wait);
+			}
+			try {
+				return request.execute();
+			} catch (TooManyRequestsException e) {
+				LOG.warn("Spotify rate limited us, blocking requests for " + e.getRetryAfter() + " seconds.");
+				rateLimiter.onRateLimited(e.getRetryAfter() * 1000L, System.currentTimeMillis());
+				throw e;
+			}
+		});
+	}
+
+	/**
+	 * Makes a request, recording how long it took and how it went in
+	 * {@link CallMetrics#SPOTIFY}.
+	 *
+	 * @param endpoint The endpoint the metrics are tagged with.
+	 */
+	private static <T> T timed(String endpoint, SpotifyCall<T> request)
+			throws IOException, ParseException, SpotifyWebApiException {
+		long start = System.nanoTime();
+		String outcome = CallMetrics.ERROR;
+		try {
+			T result = request.execute();
+			outcome = CallMetrics.SUCCESS;
+			return result;
+		} catch (IOException | ParseException | SpotifyWebApiException e) {
+			outcome = CallMetrics.outcomeOf(e);
+			throw e;
+		} finally {
+			CallMetrics.SPOTIFY.record(endpoint, outcome, start);
+		}
+	}
+
+	/**
+	 * @return The counters and quota estimate of the Spotify rate limiter.
+	 */
+	public RateLimiter.Stats getRateLimiterStats() {
+		return rateLimiter.getStats();
+	}
+
+	/**
+	 * @return How long every request is blocked for by a Retry-After, 0 if not
+	 *         blocked.
+	 */
+	public long getRetryDelayMs() {
+		return rateLimiter.getBlockedForMs(System.currentTimeMillis());
+	}
+
 	/**
 	 * Creates an authorization code URI request for Spotify's OAuth 2.0 flow.
 	 * 
@@ -88,11 +254,24 @@ public class SpotifyUserSingleton {
 	 * @return A {@link String} containing a URL to the Spotify Authentication page.
 	 */
 	public String getAuthURL() {
-		final AuthorizationCodeUriRequest authorizationCodeUriRequest = spot
+		return getAuthURL(null);
+	}
+
+	/**
+	 * Same as {@link #getAuthURL()}, but Spotify sends the state back with the
+	 * authorization code, so the login can be matched to a session.
+	 *
+	 * @param state An opaque value passed back to the redirect URI, or null.
+	 */
+	public String getAuthURL(String state) {
+		AuthorizationCodeUriRequest.Builder builder = spot
 				.authorizationCodeUri()
 				.scope("user-modify-playback-state user-read-playback-state user-read-currently-playing user-read-email user-read-private")
-				.show_dialog(true)
-				.build();
+				.show_dialog(true);
+		if (state != null) {
+			builder = builder.state(state);
+		}
+		final AuthorizationCodeUriRequest authorizationCodeUriRequest = builder.build();
 		final String authURI = authorizationCodeUriRequest.execute().toString();
 		LOG.debug("Retrieved auth URL.");
 		return authURI;
@@ -111,10 +290,10 @@ public class SpotifyUserSingleton {
 		LOG.debug("Getting connected user");
 		String username;
 		User me;
-		me = spot
+		me = call("me", () -> spot
 				.getCurrentUsersProfile()
 				.build()
-				.execute();
+				.execute());
 		username = me.getDisplayName().toString();
 		return username;
 	}
@@ -125,7 +304,8 @@ public class SpotifyUserSingleton {
 	 * @return true if playing something, false if not.
 	 */
 	public boolean isPlaying() throws IOException, ParseException, SpotifyWebApiException {
-		CurrentlyPlayingContext playbackState = spot.getInformationAboutUsersCurrentPlayback().build().execute();
+		CurrentlyPlayingContext playbackState = call("player",
+				() -> spot.getInformationAboutUsersCurrentPlayback().build().execute());
 
 		// playbackState returns null if user isn't playing anything
 		if (playbackState == null) {
@@ -149,12 +329,11 @@ public class SpotifyUserSingleton {
 	 */
 	public boolean useAuthToken(String auth_code) throws IOException, ParseException, SpotifyWebApiException {
 		LOG.debug("Submitting an auth token");
-		AuthorizationCodeCredentials creds = spot
+		AuthorizationCodeCredentials creds = timed("authorization-code", () -> spot
 				.authorizationCode(auth_code)
 				.build()
-				.execute();
-		spot.setAccessToken(creds.getAccessToken());
-		spot.setRefreshToken(creds.getRefreshToken());
+				.execute());
+		tokenRefresher.setCredentials(creds);
 		isAuthenticated = true;
 		LOG.debug("Auth code is valid.");
 		return isAuthenticated;
@@ -171,10 +350,10 @@ public class SpotifyUserSingleton {
 	 */
 	public Track[] searchForTracks(String query) throws IOException, ParseException, SpotifyWebApiException {
 		// Search for the song
-		final Paging<Track> tracks = spot
+		final Paging<Track> tracks = call("search", () -> spot
 				.searchTracks(query)
 				.build()
-				.execute();
+				.execute());
 		return tracks.getItems();
 	}
 
@@ -182,35 +361,81 @@ public class SpotifyUserSingleton {
 		return isAuthenticated;
 	}
 
+	/**
+	 * Refreshes the access token, sharing the refresh with anyone else who
+	 * asked for one at the same time.
+	 *
+	 * @return A future completed once the new token is in use.
+	 */
+	public CompletableFuture<Void> refreshAccessToken() {
+		return tokenRefresher.refresh();
+	}
+
+	/**
+	 * @return When the access token expires, in epoch milliseconds.
+	 */
+	public long getTokenExpiresAt() {
+		return tokenRefresher.getExpiresAt();
+	}
+
 	/**
 	 * Retrieves the currently playing song from the Spotify API.
 	 *
-	 * @return A HashMap containing the song name and artist name if a song is
-	 *         currently playing,
-	 *         or null if no song is currently playing. The key "name" returns the
-	 *         songname, the key "artist" returns the artist.
+	 * @return The currently playing {@link Song}, or null if no song is
+	 *         currently playing.
 	 * @throws IOException            If there is an issue with network
 	 *                                communication.
 	 * @throws ParseException         If there is an issue parsing the response.
 	 * @throws SpotifyWebApiException If there is an issue with the Spotify Web API.
 	 */
 	public Song getCurrentSong() throws IOException, ParseException, SpotifyWebApiException {
+		PlaybackSnapshot snapshot = getPlaybackSnapshot();
+		return snapshot != null ? snapshot.song() : null;
+	}
+
+	/**
+	 * Retrieves the song, play state and progress of the user's playback in a
+	 * single request to the currently-playing endpoint.
+	 *
+	 * The item in the response is already a full {@link Track}, so unlike
+	 * calling {@link #getCurrentSong()} and {@link #isPlaying()} separately this
+	 * doesn't need any extra track lookups.
+	 *
+	 * @return A {@link PlaybackSnapshot}, or null if nothing is playing.
+	 * @throws IOException            If there is an issue with network
+	 *                                communication.
+	 * @throws ParseException         If there is an issue parsing the response.
+	 * @throws SpotifyWebApiException If there is an issue with the Spotify Web API.
+	 */
+	public PlaybackSnapshot getPlaybackSnapshot() throws IOException, ParseException, SpotifyWebApiException {
 		final GetUsersCurrentlyPlayingTrackRequest currentlyPlayingRequest = spot.getUsersCurrentlyPlayingTrack()
 				.build();
-		final CurrentlyPlaying currentlyPlaying = currentlyPlayingRequest.execute();
-		if (currentlyPlaying != null) { // Check if a song is actually playing at the moment.
-			String songName = currentlyPlaying.getItem().getName();
-			String songID = currentlyPlaying.getItem().getId();
-
-			String trackArtist = getSongArtistFromID(songID);
-			String albumArt = getAlbumArtFromSongID(songID);
+		final CurrentlyPlaying currentlyPlaying = call("currently-playing", currentlyPlayingRequest::execute);
+		// Check if a song is actually playing at the moment.
+		if (currentlyPlaying == null || currentlyPlaying.getItem() == null) {
+			return null;
+		}
 
-			Song currentSong = new Song(songName, trackArtist, albumArt);
-			LOG.debug("Retreiving current song, SONG: " + currentSong.getTitle() + " - " + currentSong.getArtist());
-			return currentSong;
+		final IPlaylistItem item = currentlyPlaying.getItem();
+		final TrackMetadata track;
+		if (item instanceof Track) {
+			track = toMetadata((Track) item);
+			trackCache.put(track);
 		} else {
-			return null;
+			track = getTrackFromID(item.getId());
 		}
+
+		Song currentSong = toSong(track);
+		LOG.debug("Retreiving current song, SONG: " + currentSong.getTitle() + " - " + currentSong.getArtist());
+
+		Integer progress = currentlyPlaying.getProgress_ms();
+		Integer duration = item.getDurationMs();
+		return new PlaybackSnapshot(
+				currentSong,
+				Boolean.TRUE.equals(currentlyPlaying.getIs_playing()),
+				progress != null ? progress : 0,
+				duration != null ? duration : 0,
+				System.currentTimeMillis());
 	}
 
 	/**
@@ -219,15 +444,46 @@ public class SpotifyUserSingleton {
 	 * object should be have the artist in it's attributes.
 	 */
 	private String getSongArtistFromID(String ID) throws IOException, ParseException, SpotifyWebApiException {
-		Track trackObj = spot.getTrack(ID).build().execute();
-		String trackArtist = trackObj.getArtists()[0].getName();
-		return trackArtist;
+		return getTrackFromID(ID).artist();
 	}
 
 	private String getAlbumArtFromSongID(String ID) throws IOException, ParseException, SpotifyWebApiException {
-		Track trackObj = spot.getTrack(ID).build().execute();
-		String albumArt = trackObj.getAlbum().getImages()[0].getUrl();
-		return albumArt;
+		return getTrackFromID(ID).albumArt();
+	}
+
+	/**
+	 * Get a track's metadata by its ID, only calls the Spotify API if the track
+	 * isn't in the {@link TrackCache}.
+	 */
+	private TrackMetadata getTrackFromID(String ID) throws IOException, ParseException, SpotifyWebApiException {
+		TrackMetadata track = trackCache.get(ID);
+		if (track == null) {
+			Track trackObj = call("track", () -> spot.getTrack(ID).build().execute());
+			track = toMetadata(trackObj);
+			trackCache.put(track);
+		}
+		return track;
+	}
+
+	private static TrackMetadata toMetadata(Track track) {
+		Image[] images = track.getAlbum().getImages();
+		String albumArt = images != null && images.length > 0 ? images[0].getUrl() : null;
+		return new TrackMetadata(
+				track.getId(),
+				track.getName(),
+				track.getArtists()[0].getName(),
+				albumArt);
+	}
+
+	private static Song toSong(TrackMetadata track) {
+		return new Song(track.title(), track.artist(), track.albumArt(), track.id());
+	}
+
+	/**
+	 * @return The hit and miss counters of the track metadata cache.
+	 */
+	public TrackCache.Stats getTrackCacheStats() {
+		return trackCache.getStats();
 	}
 
 	/**
@@ -239,73 +495,192 @@ public class SpotifyUserSingleton {
 	 * @throws SpotifyWebApiException if an error occurs with the Spotify Web API.
 	 */
 	public Song getNextUp() throws IOException, ParseException, SpotifyWebApiException {
-		final PlaybackQueue queue = spot
+		final PlaybackQueue queue = call("queue", () -> spot
 				.getTheUsersQueue()
 				.build()
-				.execute();
+				.execute());
 		final IPlaylistItem nextUp = queue.getQueue().get(0);
-		final String songName = nextUp.getName();
-		final String artist = getSongArtistFromID(nextUp.getId());
-		final String albumArt = getAlbumArtFromSongID(nextUp.getId());
-		Song nextSongUp = new Song(songName, artist, albumArt);
-		return nextSongUp;
+		return toSongs(List.of(nextUp))[0];
 	}
 
 	/**
 	 * Retrieves the current user's Spotify queue.
 	 *
-	 * @return An array of strings representing the names of the songs in the user's
-	 *         queue.
+	 * Costs one request for the queue, plus one request per
+	 * {@link #TRACKS_PER_REQUEST} items that aren't full tracks and aren't
+	 * cached.
+	 *
+	 * @return An array of the songs in the user's queue.
 	 * @throws IOException            If an input or output exception occurs.
 	 * @throws ParseException         If a parsing exception occurs.
 	 * @throws SpotifyWebApiException If an error occurs while interacting with the
 	 *                                Spotify Web API.
 	 */
 	public Song[] getQueue() throws IOException, ParseException, SpotifyWebApiException {
-		final List<IPlaylistItem> queue = spot
+		final List<IPlaylistItem> queue = call("queue", () -> spot
 				.getTheUsersQueue()
 				.build()
-				.execute()
+				.execute())
 				.getQueue();
+		return toSongs(queue);
+	}
 
-		List<Song> queueList = new ArrayList<Song>();
-		for (IPlaylistItem song : queue) {
-			String songName = song.getName();
-			String songID = song.getId();
+	/**
+	 * Converts queue items to songs.
+	 *
+	 * Items that are already full {@link Track} objects are used as is and added
+	 * to the {@link TrackCache}, the rest are looked up in it and any misses are
+	 * fetched together with the several-tracks endpoint.
+	 */
+	Song[] toSongs(List<IPlaylistItem> items) throws IOException, ParseException, SpotifyWebApiException {
+		TrackMetadata[] tracks = new TrackMetadata[items.size()];
+		List<String> missing = new ArrayList<String>();
+
+		for (int i = 0; i < items.size(); i++) {
+			IPlaylistItem item = items.get(i);
+			if (item instanceof Track) {
+				tracks[i] = toMetadata((Track) item);
+				trackCache.put(tracks[i]);
+			} else {
+				tracks[i] = trackCache.get(item.getId());
+				if (tracks[i] == null && !missing.contains(item.getId())) {
+					missing.add(item.getId());
+				}
+			}
+		}
 
-			String artistName = getSongArtistFromID(songID);
-			String albumArt = getAlbumArtFromSongID(songID);
-			Song songObj = new Song(songName, artistName, albumArt);
-			queueList.add(songObj);
+		// resolve every miss in as few requests as possible.
+		Map<String, TrackMetadata> fetched = fetchTracks(missing);
+		Song[] songs = new Song[items.size()];
+		for (int i = 0; i < items.size(); i++) {
+			TrackMetadata track = tracks[i] != null ? tracks[i] : fetched.get(items.get(i).getId());
+			songs[i] = track != null ? toSong(track) : new Song(items.get(i).getName(), null, null, items.get(i).getId());
 		}
-		return queueList.toArray(new Song[0]);
+		return songs;
+	}
+
+	/**
+	 * Fetches tracks with the several-tracks endpoint, in chunks of
+	 * {@link #TRACKS_PER_REQUEST}, adding them to the {@link TrackCache}.
+	 *
+	 * @param IDs The track IDs to fetch.
+	 * @return The fetched tracks keyed by ID.
+	 */
+	private Map<String, TrackMetadata> fetchTracks(List<String> IDs)
+			throws IOException, ParseException, SpotifyWebApiException {
+		Map<String, TrackMetadata> fetched = new HashMap<String, TrackMetadata>();
+		for (int start = 0; start < IDs.size(); start += TRACKS_PER_REQUEST) {
+			List<String> chunk = IDs.subList(start, Math.min(start + TRACKS_PER_REQUEST, IDs.size()));
+			Track[] trackObjs = call("several-tracks", () -> spot
+					.getSeveralTracks(chunk.toArray(new String[0]))
+					.build()
+					.execute());
+			for (Track trackObj : trackObjs) {
+				// unknown IDs come back as null entries.
+				if (trackObj != null) {
+					TrackMetadata track = toMetadata(trackObj);
+					trackCache.put(track);
+					fetched.put(track.id(), track);
+				}
+			}
+		}
+		return fetched;
 	}
 
 	/**
 	 * Search a song by it's name and add to it a users queue.
 	 * 
 	 * @param query The name of the song to search for
-	 * @return The song added to the queue.
+	 * @return The song added to the queue, or null if nothing was found.
+	 * @throws IOException            If there is an issue with network
+	 *                                communication.
+	 * @throws ParseException         If there is an issue parsing the response.
+	 * @throws SpotifyWebApiException If there is an issue with the Spotify Web API.
 	 */
-	public Song addToQueue(String query) {
-		try {
-			LOG.info("Looking for " + query + " to add to queue.");
-			Track[] searchedSongs = spot.searchTracks(query).build().execute().getItems();
-			Track selectedSong = searchedSongs[0]; // Add the first song found in the search to the queue.
-			spot.addItemToUsersPlaybackQueue(selectedSong.getUri()).build().execute();
-			String songName = selectedSong.getName();
-			String artist = selectedSong.getArtists()[0].getName();
-			String albumArt = selectedSong.getAlbum().getImages()[0].getUrl();
-			LOG.info("Added " + songName + " by " + artist + " to queue");
-
-			return new Song(songName, artist, albumArt);
-		} catch (SpotifyWebApiException | IOException | ParseException e) {
-			LOG.error("Failed add song " + query + " to queue" + " ERROR TYPE: " + e.getClass().getName()
-					+ " ERROR MSG: "
-					+ e.getLocalizedMessage());
+	public Song addToQueue(String query) throws IOException, ParseException, SpotifyWebApiException {
+		LOG.info("Looking for " + query + " to add to queue.");
+		Track[] searchedSongs = call("search", () -> spot.searchTracks(query).build().execute()).getItems();
+		if (searchedSongs == null || searchedSongs.length == 0) {
+			LOG.info("No songs found for " + query + ", nothing added to queue.");
 			return null;
 		}
+		// every result is worth knowing about, the next request for one of them won't need a search.
+		for (Track track : searchedSongs) {
+			trackCache.getCatalog().add(toMetadata(track));
+		}
+		Track selectedSong = searchedSongs[0]; // Add the first song found in the search to the queue.
+		call("add-to-queue", () -> spot.addItemToUsersPlaybackQueue(selectedSong.getUri()).build().execute());
+		String songName = selectedSong.getName();
+		String artist = selectedSong.getArtists()[0].getName();
+		Image[] images = selectedSong.getAlbum().getImages();
+		String albumArt = images != null && images.length > 0 ? images[0].getUrl() : null;
+		LOG.info("Added " + songName + " by " + artist + " to queue");
+
+		return new Song(songName, artist, albumArt, selectedSong.getId());
+	}
+
+	/**
+	 * Add a song to the queue, looking it up in the {@link TrackCatalog} first
+	 * and only searching Spotify if it isn't there.
+	 *
+	 * @param title  The title of the song.
+	 * @param artist The artist of the song, may be blank.
+	 * @return The song added to the queue, or null if nothing was found.
+	 * @throws IOException            If there is an issue with network
+	 *                                communication.
+	 * @throws ParseException         If there is an issue parsing the response.
+	 * @throws SpotifyWebApiException If there is an issue with the Spotify Web API.
+	 */
+	public Song addToQueue(String title, String artist) throws IOException, ParseException, SpotifyWebApiException {
+		TrackMetadata known = trackCache.getCatalog().find(title, artist);
+		if (known == null) {
+			boolean anyArtist = artist == null || artist.isBlank();
+			return addToQueue("track:" + title + (anyArtist ? "" : " artist:" + artist));
+		}
+		call("add-to-queue",
+				() -> spot.addItemToUsersPlaybackQueue("spotify:track:" + known.id()).build().execute());
+		LOG.info("Added " + known.title() + " by " + known.artist() + " to queue from the catalog");
+		return toSong(known);
+	}
+
+	/**
+	 * Search the {@link TrackCatalog} for autocomplete, without asking Spotify.
+	 *
+	 * @param prefix What has been typed so far.
+	 * @param limit  The most songs to return.
+	 */
+	public List<Song> searchCatalog(String prefix, int limit) {
+		List<Song> songs = new ArrayList<>();
+		for (TrackMetadata track : trackCache.getCatalog().search(prefix, limit)) {
+			songs.add(toSong(track));
+		}
+		return songs;
+	}
+
+	/**
+	 * @return The size of the track catalog and how many searches it saved.
+	 */
+	public TrackCatalog.Stats getCatalogStats() {
+		return trackCache.getCatalog().getStats();
+	}
 
+	/**
+	 * Log back in with a refresh token saved before a restart, without the user
+	 * having to log in again. The access token is fetched in the background,
+	 * and if Spotify rejects the refresh token the user is logged out again.
+	 */
+	public void restoreRefreshToken(String refreshToken) {
+		// set first, a rejected token resets it from the refresh thread.
+		isAuthenticated = true;
+		tokenRefresher.restore(refreshToken);
+	}
+
+	/**
+	 * Be told about every new refresh token, and null once logged out, so it can
+	 * be saved.
+	 */
+	public void onRefreshToken(Consumer<String> listener) {
+		tokenRefresher.onRefreshToken(listener);
 	}
 
 	/**
@@ -314,6 +689,7 @@ public class SpotifyUserSingleton {
 	 * user as not authenticated.
 	 */
 	public void resetAuth() {
+		tokenRefresher.reset();
 		spot.setAccessToken(null);
 		spot.setRefreshToken(null);
 		this.isAuthenticated = false;
@@ -325,7 +701,8 @@ public class SpotifyUserSingleton {
 		String clientSecret = System.getenv("CLIENT_SECRET");
 		String redirectURL = System.getenv("REDIRECT_URL");
 		Scanner scan = new Scanner(System.in);
-		SpotifyUserSingleton singleton = SpotifyUserSingleton.getInstance(clientID, clientSecret, redirectURL);
+		SpotifyUserSingleton singleton = SpotifyUserSingleton.getInstance(clientID, clientSecret, redirectURL,
+				HashedWheelTimer.getDefault());
 
 		System.out.print("Enter auth code:");
 		String authCode = scan.nextLine();
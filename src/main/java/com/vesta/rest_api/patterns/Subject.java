@@ -1,20 +1,36 @@
 package com.vesta.rest_api.patterns;
 
-import java.util.ArrayList;
-
+import com.vesta.rest_api.events.EventBus;
 import com.vesta.rest_api.events.EventPayload;
 import com.vesta.rest_api.events.ObservableEvents;
 
+/**
+ * Something observers can subscribe to, events are delivered asynchronously
+ * through the subject's own {@link EventBus}.
+ */
 public interface Subject {
 
-	public ArrayList<Observer> observers = new ArrayList<Observer>();
+	/**
+	 * @return The bus this subject publishes its events on.
+	 */
+	EventBus getEventBus();
 
+	/**
+	 * Subscribe an observer to every event.
+	 */
 	default void attach(Observer o) {
-		observers.add(o);
+		getEventBus().subscribe(o);
+	};
+
+	/**
+	 * Subscribe an observer to only some events.
+	 */
+	default void attach(Observer o, ObservableEvents... types) {
+		getEventBus().subscribe(o, types);
 	};
 
 	default void detach(Observer o) {
-		observers.add(o);
+		getEventBus().unsubscribe(o);
 	};
 
 	/**
@@ -23,9 +39,7 @@ public interface Subject {
 	 * @param payload
 	 */
 	default void notifyObservers(EventPayload<?> payload) {
-		for (Observer o : observers) {
-			o.update(payload);
-		}
+		getEventBus().publish(payload);
 	};
 
 	/**
@@ -35,9 +49,6 @@ public interface Subject {
 	 * @param event
 	 */
 	default void notifyObservers(ObservableEvents event) {
-		EventPayload<?> payload = new EventPayload(event);
-		for (Observer o : observers) {
-			o.update(payload);
-		}
+		getEventBus().publish(new EventPayload<Void>(event));
 	}
 }
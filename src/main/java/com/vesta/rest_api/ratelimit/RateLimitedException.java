@@ -0,0 +1,26 @@
+package com.vesta.rest_api.ratelimit;
+
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+
+/**
+ * Thrown instead of making a Spotify request when the {@link RateLimiter}
+ * has no capacity for it.
+ *
+ * It extends {@link SpotifyWebApiException} so existing error handling treats
+ * it like any other failed request.
+ */
+public class RateLimitedException extends SpotifyWebApiException {
+	private final long retryAfterMs;
+
+	public RateLimitedException(String message, long retryAfterMs) {
+		super(message);
+		this.retryAfterMs = retryAfterMs;
+	}
+
+	/**
+	 * @return How long to wait before trying again, in milliseconds.
+	 */
+	public long getRetryAfterMs() {
+		return retryAfterMs;
+	}
+}
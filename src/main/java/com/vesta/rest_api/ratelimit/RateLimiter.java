@@ -0,0 +1,178 @@
+package com.vesta.rest_api.ratelimit;
+
+import java.util.ArrayDeque;
+
+/**
+ * Non-blocking rate limiter for requests against a rolling quota.
+ *
+ * Requests take a token from a bucket that refills at the estimated quota. The
+ * quota is estimated from a sliding window of recent requests: when the API
+ * answers with a 429, the quota is lowered below the number of requests that
+ * were in the window, and it is slowly raised again while requests succeed
+ * close to the limit. A Retry-After blocks every request until it passes.
+ *
+ * Nothing here sleeps, a request that can't go ahead is told how long to wait
+ * so the caller can fail fast or try again later.
+ */
+public class RateLimiter {
+
+	/**
+	 * Snapshot of the limiter counters.
+	 *
+	 * @param allowed        Requests that were let through.
+	 * @param rejected       Requests turned away before reaching the API.
+	 * @param rateLimited    429 responses received.
+	 * @param estimatedQuota The current estimate of requests allowed per window.
+	 * @param blockedForMs   How long every request is blocked for by a
+	 *                       Retry-After.
+	 */
+	public record Stats(long allowed, long rejected, long rateLimited, int estimatedQuota, long blockedForMs) {
+	}
+
+	private static final int MIN_QUOTA = 5;
+
+	private final long windowMs;
+	private final int maxQuota;
+
+	private int quota;
+	private double tokens;
+	private long lastRefill;
+	private long blockedUntil;
+	private long lastLimitedAt;
+	private long lastIncreaseAt;
+
+	/** Time of every request let through in the current window. */
+	private final ArrayDeque<Long> window = new ArrayDeque<>();
+
+	private long allowed;
+	private long rejected;
+	private long rateLimited;
+
+	/**
+	 * @param initialQuota The estimated number of requests allowed per window to
+	 *                     start with.
+	 * @param maxQuota     The highest the estimate may grow to.
+	 * @param windowMs     The length of the rolling window the API enforces its
+	 *                     quota over.
+	 */
+	public RateLimiter(int initialQuota, int maxQuota, long windowMs) {
+		this.quota = initialQuota;
+		this.maxQuota = maxQuota;
+		this.windowMs = windowMs;
+		this.tokens = capacity();
+		this.lastRefill = System.currentTimeMillis();
+	}
+
+	/**
+	 * Try to take a token for a request.
+	 *
+	 * @param now The current time in epoch milliseconds.
+	 * @return 0 if the request can go ahead, otherwise how many milliseconds to
+	 *         wait before trying again.
+	 */
+	public synchronized long tryAcquire(long now) {
+		if (now < blockedUntil) {
+			rejected++;
+			return blockedUntil - now;
+		}
+
+		trim(now);
+		refill(now);
+		maybeIncreaseQuota(now);
+
+		if (window.size() >= quota) {
+			rejected++;
+			return window.peekFirst() + windowMs - now;
+		}
+		if (tokens < 1) {
+			rejected++;
+			return (long) Math.ceil((1 - tokens) / refillRate());
+		}
+
+		tokens -= 1;
+		window.addLast(now);
+		allowed++;
+		return 0;
+	}
+
+	/**
+	 * Give back the token taken by the last {@link #tryAcquire(long)}, for a
+	 * request that turned out not to be needed.
+	 */
+	public synchronized void release() {
+		if (window.isEmpty()) {
+			return;
+		}
+		window.removeLast();
+		tokens = Math.min(capacity(), tokens + 1);
+		allowed--;
+	}
+
+	/**
+	 * Record a 429 response, blocking every request until the Retry-After has
+	 * passed and lowering the quota estimate.
+	 *
+	 * @param retryAfterMs The Retry-After sent with the response.
+	 * @param now          The current time in epoch milliseconds.
+	 */
+	public synchronized void onRateLimited(long retryAfterMs, long now) {
+		rateLimited++;
+		blockedUntil = Math.max(blockedUntil, now + retryAfterMs);
+		lastLimitedAt = now;
+
+		trim(now);
+		// the API let fewer than this many through, so aim a quarter below it.
+		quota = Math.max(MIN_QUOTA, Math.min(quota, window.size() * 3 / 4));
+		tokens = Math.min(tokens, capacity());
+	}
+
+	/**
+	 * @param now The current time in epoch milliseconds.
+	 * @return How long every request is blocked for by a Retry-After, 0 if not
+	 *         blocked.
+	 */
+	public synchronized long getBlockedForMs(long now) {
+		return Math.max(0, blockedUntil - now);
+	}
+
+	public synchronized Stats getStats() {
+		return new Stats(allowed, rejected, rateLimited, quota, getBlockedForMs(System.currentTimeMillis()));
+	}
+
+	/**
+	 * Raise the quota estimate by a tenth if the last window ran close to it
+	 * without being rate limited.
+	 */
+	private void maybeIncreaseQuota(long now) {
+		if (quota >= maxQuota || now - lastLimitedAt < windowMs || now - lastIncreaseAt < windowMs) {
+			return;
+		}
+		if (window.size() >= quota * 9 / 10) {
+			quota = Math.min(maxQuota, quota + Math.max(1, quota / 10));
+			lastIncreaseAt = now;
+		}
+	}
+
+	private void refill(long now) {
+		tokens = Math.min(capacity(), tokens + (now - lastRefill) * refillRate());
+		lastRefill = now;
+	}
+
+	private void trim(long now) {
+		while (!window.isEmpty() && window.peekFirst() <= now - windowMs) {
+			window.removeFirst();
+		}
+	}
+
+	/**
+	 * A quarter of the window's quota can be used in a burst, the rest is spread
+	 * out over the window.
+	 */
+	private double capacity() {
+		return Math.max(1, quota / 4.0);
+	}
+
+	private double refillRate() {
+		return (double) quota / windowMs;
+	}
+}
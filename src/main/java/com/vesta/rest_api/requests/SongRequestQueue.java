@@ -0,0 +1,258 @@
+package com.vesta.rest_api.requests;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.vesta.rest_api.Song;
+import com.vesta.rest_api.vbml.TitleNormalizer;
+
+/**
+ * Takes song requests without making the caller wait for Spotify.
+ *
+ * A request is given a ticket straight away and added to the end of a
+ * bounded queue, which is worked through one request at a time on a shared
+ * executor. The outcome is kept on the ticket for clients to poll, or wait
+ * for with {@link #whenDone(String)}.
+ *
+ * Requests for the same song, with the title and artist compared ignoring
+ * case, accents and punctuation, are coalesced: while one is waiting the same
+ * ticket is handed out again instead of searching and queueing the song a
+ * second time. Asking for a song again once it's queued queues it again,
+ * unless a dedupe window is set.
+ */
+public class SongRequestQueue {
+	private static final Logger LOG = LogManager.getLogger(SongRequestQueue.class);
+
+	/** How many tickets are kept for clients to look up. */
+	private static final int MAX_TICKETS = 1024;
+
+	public enum Status {
+		/** Waiting for its turn, or being searched for. */
+		PENDING,
+		/** Added to the Spotify queue. */
+		QUEUED,
+		/** Spotify didn't find the song, or wouldn't queue it. */
+		NOT_FOUND,
+		/** Something went wrong talking to Spotify. */
+		FAILED
+	}
+
+	/**
+	 * Snapshot of a request.
+	 *
+	 * @param id         The ticket ID, used to look the request up.
+	 * @param status     How far the request has got.
+	 * @param title      The title as requested.
+	 * @param artist     The artist as requested.
+	 * @param song       The song that was queued, null unless queued.
+	 * @param requesters How many requests were coalesced into this one.
+	 */
+	public record Ticket(String id, Status status, String title, String artist, Song song, int requesters) {
+	}
+
+	/**
+	 * Snapshot of the queue counters.
+	 *
+	 * @param submitted Requests received.
+	 * @param coalesced Requests handed the ticket of an identical request.
+	 * @param rejected  Requests turned away because the queue was full.
+	 * @param queued    Songs added to the Spotify queue.
+	 * @param notFound  Requests for songs that weren't found.
+	 * @param failed    Requests that failed.
+	 * @param waiting   Requests waiting for their turn.
+	 */
+	public record Stats(long submitted, long coalesced, long rejected, long queued, long notFound, long failed,
+			int waiting) {
+	}
+
+	/**
+	 * Searches for a song and adds it to the queue.
+	 */
+	@FunctionalInterface
+	public interface Handler {
+		/**
+		 * @return The song that was queued, or null if it wasn't found.
+		 */
+		Song request(String title, String artist) throws Exception;
+	}
+
+	private final class Request {
+		final String id = UUID.randomUUID().toString();
+		final String key;
+		final String title;
+		final String artist;
+		final CompletableFuture<Ticket> done = new CompletableFuture<>();
+		Status status = Status.PENDING;
+		Song song;
+		int requesters = 1;
+		long completedAt;
+
+		Request(String key, String title, String artist) {
+			this.key = key;
+			this.title = title;
+			this.artist = artist;
+		}
+
+		Ticket ticket() {
+			return new Ticket(id, status, title, artist, song, requesters);
+		}
+	}
+
+	private final Executor executor;
+	private final Handler handler;
+	private final int capacity;
+	/** How long a queued song is coalesced with new requests for it. */
+	private final long dedupeMs;
+
+	// everything below is guarded by this.
+	private final ArrayDeque<Request> waiting = new ArrayDeque<>();
+	/** Whether a worker is going through the queue. */
+	private boolean draining;
+	/** The requests that new ones are coalesced with, by song. */
+	private final Map<String, Request> bySong = new HashMap<>();
+	private final Map<String, Request> tickets = new LinkedHashMap<>() {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Request> eldest) {
+			if (size() > MAX_TICKETS) {
+				bySong.remove(eldest.getValue().key, eldest.getValue());
+				return true;
+			}
+			return false;
+		}
+	};
+
+	private long submitted;
+	private long coalesced;
+	private long rejected;
+	private long queued;
+	private long notFound;
+	private long failed;
+
+	/**
+	 * @param executor Runs the requests, only one at a time.
+	 * @param handler  Searches for and queues each song.
+	 * @param capacity How many requests can wait before new ones are turned
+	 *                 away.
+	 */
+	public SongRequestQueue(Executor executor, Handler handler, int capacity) {
+		this(executor, handler, capacity, 0);
+	}
+
+	/**
+	 * @param dedupeMs How long after a song was queued new requests for it get
+	 *                 the same ticket, 0 to only coalesce waiting requests.
+	 */
+	public SongRequestQueue(Executor executor, Handler handler, int capacity, long dedupeMs) {
+		this.executor = executor;
+		this.handler = handler;
+		this.capacity = capacity;
+		this.dedupeMs = dedupeMs;
+	}
+
+	/**
+	 * Accept a request, or coalesce it with an identical one.
+	 *
+	 * @return The ticket of the request, or null if the queue is full.
+	 */
+	public synchronized Ticket submit(String title, String artist) {
+		submitted++;
+		String key = TitleNormalizer.searchKey(title) + '\u0000' + TitleNormalizer.searchKey(artist);
+		Request existing = bySong.get(key);
+		if (existing != null && (existing.status == Status.PENDING
+				|| System.currentTimeMillis() - existing.completedAt < dedupeMs)) {
+			coalesced++;
+			existing.requesters++;
+			tickets.putIfAbsent(existing.id, existing);
+			return existing.ticket();
+		}
+		if (waiting.size() >= capacity) {
+			rejected++;
+			return null;
+		}
+
+		Request request = new Request(key, title, artist);
+		tickets.put(request.id, request);
+		bySong.put(key, request);
+		waiting.addLast(request);
+		if (!draining) {
+			draining = true;
+			executor.execute(this::drain);
+		}
+		return request.ticket();
+	}
+
+	/**
+	 * @return The ticket with the ID, or null if there is no such ticket.
+	 */
+	public synchronized Ticket getTicket(String id) {
+		Request request = tickets.get(id);
+		return request != null ? request.ticket() : null;
+	}
+
+	/**
+	 * @return Completes with the final ticket once the request is done, or null
+	 *         if there is no such ticket.
+	 */
+	public synchronized CompletableFuture<Ticket> whenDone(String id) {
+		Request request = tickets.get(id);
+		return request != null ? request.done : null;
+	}
+
+	public synchronized Stats getStats() {
+		return new Stats(submitted, coalesced, rejected, queued, notFound, failed, waiting.size());
+	}
+
+	/**
+	 * Works through the queue until it's empty, Spotify only sees one request
+	 * at a time.
+	 */
+	private void drain() {
+		while (true) {
+			Request request;
+			synchronized (this) {
+				request = waiting.pollFirst();
+				if (request == null) {
+					draining = false;
+					return;
+				}
+			}
+
+			Song song = null;
+			Status status;
+			try {
+				song = handler.request(request.title, request.artist);
+				status = song != null ? Status.QUEUED : Status.NOT_FOUND;
+			} catch (Exception e) {
+				LOG.warn("Could not request " + request.title + " by " + request.artist + ", ERROR_MSG: "
+						+ e.getMessage());
+				status = Status.FAILED;
+			}
+
+			Ticket ticket;
+			synchronized (this) {
+				request.status = status;
+				request.song = song;
+				request.completedAt = System.currentTimeMillis();
+				switch (status) {
+					case QUEUED -> queued++;
+					case NOT_FOUND -> notFound++;
+					default -> failed++;
+				}
+				// only a song that made it into the queue is worth coalescing with afterwards.
+				if (status != Status.QUEUED || dedupeMs <= 0) {
+					bySong.remove(request.key, request);
+				}
+				ticket = request.ticket();
+			}
+			request.done.complete(ticket);
+		}
+	}
+}
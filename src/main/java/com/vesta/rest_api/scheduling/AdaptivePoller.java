@@ -0,0 +1,127 @@
+package com.vesta.rest_api.scheduling;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.vesta.rest_api.PlaybackSnapshot;
+import com.vesta.rest_api.SpotifyIntegration;
+import com.vesta.rest_api.timer.HashedWheelTimer;
+import com.vesta.rest_api.timer.HashedWheelTimer.Timeout;
+
+/**
+ * Polls {@link SpotifyIntegration#run()} on a schedule set by a
+ * {@link PollingPolicy} instead of a fixed rate.
+ *
+ * After each poll the next one is scheduled from the progress and duration of
+ * the current song, so song changes are noticed soon after they happen while
+ * fewer requests are made when nothing is playing.
+ */
+public class AdaptivePoller {
+	private static final Logger LOG = LogManager.getLogger(AdaptivePoller.class);
+
+	private final SpotifyIntegration spot;
+	private final HashedWheelTimer timer;
+	private final PollingPolicy policy = new PollingPolicy();
+	private final PollStats stats = new PollStats();
+
+	private Timeout nextPoll;
+	private long lastPollAt;
+	private volatile boolean stopped;
+
+	/**
+	 * @param spot  The integration to poll.
+	 * @param timer The timer polls are scheduled and run on, shared by every
+	 *              poller.
+	 */
+	public AdaptivePoller(SpotifyIntegration spot, HashedWheelTimer timer) {
+		this.spot = spot;
+		this.timer = timer;
+	}
+
+	/**
+	 * Start polling, the first poll runs straight away.
+	 */
+	public synchronized void start() {
+		schedule(0);
+	}
+
+	/**
+	 * Stop polling, a poll that is already running finishes but doesn't schedule
+	 * another.
+	 */
+	public synchronized void stop() {
+		stopped = true;
+		if (nextPoll != null) {
+			nextPoll.cancel();
+		}
+	}
+
+	/**
+	 * Poll quickly for a little while, call this after a song request or login
+	 * when the playback is likely to change.
+	 */
+	public void boost() {
+		policy.boost(System.currentTimeMillis());
+		synchronized (this) {
+			// bring the next poll forward if it's further away than a boosted poll would be.
+			if (nextPoll != null && nextPoll.getDelayMs() > PollingPolicy.BOOST_INTERVAL_MS
+					&& nextPoll.cancel()) {
+				schedule(PollingPolicy.BOOST_INTERVAL_MS);
+			}
+		}
+	}
+
+	public PollStats.Stats getStats() {
+		return stats.getStats();
+	}
+
+	private synchronized void schedule(long delayMs) {
+		if (stopped) {
+			return;
+		}
+		nextPoll = timer.newTimeout(this::poll, delayMs);
+	}
+
+	private void poll() {
+		long delay = PollingPolicy.MIN_IDLE_INTERVAL_MS;
+		try {
+			LOG.debug("Checking for update...");
+			long now = System.currentTimeMillis();
+			PlaybackSnapshot before = spot.getLastSnapshot();
+			spot.run();
+			PlaybackSnapshot after = spot.getLastSnapshot();
+			boolean connected = spot.isConnected();
+
+			// one currently-playing request, plus one queue request if something is playing.
+			stats.recordPoll(now, connected ? (after != null ? 2 : 1) : 0);
+			if (before != null && after != null && !after.song().isSameTrack(before.song())) {
+				recordChange(before, now);
+			}
+			lastPollAt = now;
+
+			delay = policy.nextDelayMs(after, connected, System.currentTimeMillis());
+			// don't poll again while Spotify has told us to back off.
+			delay = Math.max(delay, spot.getRetryDelayMs());
+		} catch (Exception e) {
+			LOG.warn("Poll failed, ERROR_MSG: " + e.getMessage());
+		} finally {
+			LOG.debug("Next poll in " + delay + "ms");
+			schedule(delay);
+		}
+	}
+
+	/**
+	 * Record how long a song change took to notice, and poll quickly if the song
+	 * was skipped rather than finishing.
+	 */
+	private void recordChange(PlaybackSnapshot before, long now) {
+		long expectedEnd = before.fetchedAt() + before.durationMs() - before.progressMs();
+		if (before.isPlaying() && now >= expectedEnd) {
+			stats.recordChange(now - expectedEnd);
+		} else {
+			// a skip could have happened any time since the last poll, count the worst case.
+			stats.recordChange(now - lastPollAt);
+			policy.boost(now);
+		}
+	}
+}
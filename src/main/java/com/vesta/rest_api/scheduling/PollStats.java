@@ -0,0 +1,84 @@
+package com.vesta.rest_api.scheduling;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Keeps track of how often Spotify is polled and how quickly song changes are
+ * noticed, so the {@link PollingPolicy} can be checked against a fixed rate.
+ */
+public class PollStats {
+	private static final long HOUR_MS = 3_600_000;
+	private static final int MAX_DELAYS = 100;
+
+	/**
+	 * Snapshot of the polling counters.
+	 *
+	 * @param pollsLastHour           Polls made in the last hour.
+	 * @param callsLastHour           Spotify requests made by those polls.
+	 * @param pollsPerMinute          Average poll rate over the last hour.
+	 * @param medianDetectionDelayMs  Median time between a song changing and the
+	 *                                change being noticed.
+	 * @param changesDetected         Song changes noticed since startup.
+	 */
+	public record Stats(int pollsLastHour, long callsLastHour, double pollsPerMinute, long medianDetectionDelayMs,
+			long changesDetected) {
+	}
+
+	/** Time of each poll in the last hour, and the requests it made. */
+	private final ArrayDeque<long[]> polls = new ArrayDeque<>();
+
+	/** The most recent detection delays, used as a ring buffer. */
+	private final long[] delays = new long[MAX_DELAYS];
+	private long changesDetected;
+
+	/**
+	 * Record a poll.
+	 *
+	 * @param now   When the poll happened, in epoch milliseconds.
+	 * @param calls How many Spotify requests the poll made.
+	 */
+	public synchronized void recordPoll(long now, int calls) {
+		polls.addLast(new long[] { now, calls });
+		trim(now);
+	}
+
+	/**
+	 * Record a noticed song change.
+	 *
+	 * @param delayMs How long after the change it was noticed.
+	 */
+	public synchronized void recordChange(long delayMs) {
+		delays[(int) (changesDetected % MAX_DELAYS)] = Math.max(0, delayMs);
+		changesDetected++;
+	}
+
+	public synchronized Stats getStats() {
+		long now = System.currentTimeMillis();
+		trim(now);
+
+		long calls = 0;
+		for (long[] poll : polls) {
+			calls += poll[1];
+		}
+
+		// average over the time actually covered, so the rate is right before the first hour is up.
+		long window = polls.isEmpty() ? HOUR_MS : Math.max(60_000, now - polls.peekFirst()[0]);
+		double perMinute = polls.size() / (window / 60_000.0);
+
+		int count = (int) Math.min(changesDetected, MAX_DELAYS);
+		long median = 0;
+		if (count > 0) {
+			long[] sorted = Arrays.copyOf(delays, count);
+			Arrays.sort(sorted);
+			median = sorted[count / 2];
+		}
+		return new Stats(polls.size(), calls, perMinute, median, changesDetected);
+	}
+
+	private void trim(long now) {
+		while (!polls.isEmpty() && polls.peekFirst()[0] < now - HOUR_MS) {
+			polls.removeFirst();
+		}
+	}
+}
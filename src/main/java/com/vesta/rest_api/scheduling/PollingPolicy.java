@@ -0,0 +1,64 @@
+package com.vesta.rest_api.scheduling;
+
+import com.vesta.rest_api.PlaybackSnapshot;
+
+/**
+ * Decides how long to wait before polling Spotify again.
+ *
+ * While a song is playing the next poll is timed for just after the song is
+ * expected to end, capped so skips made in the Spotify app are still noticed.
+ * Right after a skip or a song request polls are made quickly, and while
+ * nothing is playing, playback is paused or the user isn't connected the
+ * interval backs off exponentially.
+ */
+public class PollingPolicy {
+	/** How long after the expected end of a song to poll, to be sure it changed. */
+	static final long END_MARGIN_MS = 750;
+	/** The longest to go without polling while a song is playing. */
+	static final long MAX_PLAYING_INTERVAL_MS = 15_000;
+	/** How often to poll right after a skip or request. */
+	static final long BOOST_INTERVAL_MS = 2_000;
+	/** How long polling stays fast after a skip or request. */
+	static final long BOOST_WINDOW_MS = 12_000;
+	/** The first interval when idle, doubled on every idle poll. */
+	static final long MIN_IDLE_INTERVAL_MS = 5_000;
+	/** The longest interval when idle. */
+	static final long MAX_IDLE_INTERVAL_MS = 60_000;
+
+	private long boostUntil;
+	private long idleInterval = MIN_IDLE_INTERVAL_MS;
+
+	/**
+	 * Poll quickly for a little while, call this after a skip or a song request
+	 * when the queue or current song is likely to change.
+	 *
+	 * @param now The current time in epoch milliseconds.
+	 */
+	public synchronized void boost(long now) {
+		boostUntil = now + BOOST_WINDOW_MS;
+		idleInterval = MIN_IDLE_INTERVAL_MS;
+	}
+
+	/**
+	 * @param snapshot  The playback from the last poll, null if nothing is
+	 *                  playing.
+	 * @param connected Whether a Spotify user is connected.
+	 * @param now       The current time in epoch milliseconds.
+	 * @return How long to wait before the next poll, in milliseconds.
+	 */
+	public synchronized long nextDelayMs(PlaybackSnapshot snapshot, boolean connected, long now) {
+		if (now < boostUntil) {
+			return BOOST_INTERVAL_MS;
+		}
+
+		if (!connected || snapshot == null || !snapshot.isPlaying()) {
+			long delay = idleInterval;
+			idleInterval = Math.min(idleInterval * 2, MAX_IDLE_INTERVAL_MS);
+			return delay;
+		}
+
+		idleInterval = MIN_IDLE_INTERVAL_MS;
+		long untilEnd = snapshot.getRemainingMs() + END_MARGIN_MS;
+		return Math.min(untilEnd, MAX_PLAYING_INTERVAL_MS);
+	}
+}
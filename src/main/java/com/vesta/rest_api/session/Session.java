@@ -0,0 +1,18 @@
+package com.vesta.rest_api.session;
+
+import com.vesta.rest_api.SpotifyIntegration;
+import com.vesta.rest_api.scheduling.AdaptivePoller;
+
+/**
+ * One user's integration and the poller driving it.
+ *
+ * @param key       The user and board this session belongs to.
+ * @param token     The secret handed to the client that opened the session,
+ *                  needed for everything done to it.
+ * @param spot      The integration syncing the user's playback to the board.
+ * @param poller    Polls the integration on the shared scheduler.
+ * @param createdAt When the session was opened, in epoch milliseconds.
+ */
+public record Session(SessionKey key, String token, SpotifyIntegration spot, AdaptivePoller poller,
+		long createdAt) {
+}
@@ -0,0 +1,11 @@
+package com.vesta.rest_api.session;
+
+/**
+ * Identifies a session, a Spotify user showing their music on one board.
+ *
+ * @param user  An ID for the user, chosen by the client.
+ * @param board An ID for the board, chosen by the client. This is not the
+ *              board's read-write key, that never leaves the server.
+ */
+public record SessionKey(String user, String board) {
+}
@@ -0,0 +1,210 @@
+package com.vesta.rest_api.session;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.vesta.rest_api.SpotifyIntegration;
+import com.vesta.rest_api.http.HttpTransport;
+import com.vesta.rest_api.patterns.SpotifyUserSingleton;
+import com.vesta.rest_api.scheduling.AdaptivePoller;
+import com.vesta.rest_api.timer.HashedWheelTimer;
+
+/**
+ * Keeps a session per user and board, so one deployment can serve many
+ * households.
+ *
+ * A session holds only what is specific to it, the user's tokens, the board
+ * key and what is on the board. Everything else is shared, the HTTP
+ * transport, the track cache, the Spotify rate limiter, and the
+ * {@link HashedWheelTimer} that polls, writes to the boards, delivers events
+ * and refreshes tokens for every session. That keeps each session down to a few
+ * kilobytes and a fixed number of threads no matter how many sessions there
+ * are.
+ *
+ * Clients pick the user and board IDs, so they aren't secret. Opening a
+ * session hands out a random token instead, and everything done to the
+ * session afterwards needs it.
+ */
+public class SessionRegistry implements AutoCloseable {
+	private static final Logger LOG = LogManager.getLogger(SessionRegistry.class);
+
+	/**
+	 * Snapshot of the registry.
+	 *
+	 * @param sessions      Sessions open.
+	 * @param connected     Sessions with a logged in Spotify user.
+	 * @param pendingLogins Logins started but not yet completed.
+	 */
+	public record Stats(int sessions, long connected, int pendingLogins) {
+	}
+
+	private final SpotifyUserSingleton app;
+	private final HttpTransport transport;
+	private final HashedWheelTimer timer;
+
+	/**
+	 * How long a user has to finish logging in to Spotify.
+	 */
+	static final long LOGIN_TTL_MS = 10 * 60_000;
+
+	/**
+	 * A login started for a session.
+	 *
+	 * @param key       The session logging in.
+	 * @param expiresAt When the login is forgotten, in epoch milliseconds.
+	 */
+	private record PendingLogin(SessionKey key, long expiresAt) {
+	}
+
+	private final Map<SessionKey, Session> sessions = new ConcurrentHashMap<>();
+	/**
+	 * Sessions waiting for the user to finish logging in, keyed by the OAuth
+	 * state sent to Spotify. A session only has its newest login in here, so
+	 * there are never more than there are sessions.
+	 */
+	private final Map<String, PendingLogin> pendingLogins = new ConcurrentHashMap<>();
+	private final SecureRandom random = new SecureRandom();
+
+	/**
+	 * @param app       The Spotify app, every session is a new user of it.
+	 * @param transport The transport shared by every board.
+	 * @param timer     The timer every session's work is scheduled on.
+	 */
+	public SessionRegistry(SpotifyUserSingleton app, HttpTransport transport, HashedWheelTimer timer) {
+		this.app = app;
+		this.transport = transport;
+		this.timer = timer;
+	}
+
+	/**
+	 * Open a session.
+	 *
+	 * @param key           The user and board.
+	 * @param vestaboardKey The read-write key of the board.
+	 * @return The new session, or null if one is already open for the user and
+	 *         board, close it first to change the board key.
+	 */
+	public Session open(SessionKey key, String vestaboardKey) {
+		Session[] opened = new Session[1];
+		sessions.computeIfAbsent(key, k -> {
+			LOG.info("Opening session for user " + k.user() + " on board " + k.board());
+			SpotifyIntegration spot = new SpotifyIntegration(app.newSession(timer), vestaboardKey, transport, timer);
+			AdaptivePoller poller = new AdaptivePoller(spot, timer);
+			poller.start();
+			opened[0] = new Session(k, newSecret(), spot, poller, System.currentTimeMillis());
+			return opened[0];
+		});
+		return opened[0];
+	}
+
+	/**
+	 * @return The session, or null if it isn't open.
+	 */
+	public Session get(SessionKey key) {
+		return sessions.get(key);
+	}
+
+	/**
+	 * Get a session for a client, checking it was the one that opened it.
+	 *
+	 * @param token The token the session was opened with.
+	 * @return The session, or null if it isn't open or the token is wrong.
+	 */
+	public Session authorize(SessionKey key, String token) {
+		Session session = sessions.get(key);
+		if (session == null || token == null) {
+			return null;
+		}
+		boolean matches = MessageDigest.isEqual(session.token().getBytes(StandardCharsets.UTF_8),
+				token.getBytes(StandardCharsets.UTF_8));
+		return matches ? session : null;
+	}
+
+	private String newSecret() {
+		byte[] bytes = new byte[18];
+		random.nextBytes(bytes);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+	}
+
+	/**
+	 * Start logging a session in to Spotify, replacing any login it started
+	 * before.
+	 *
+	 * @return The URL the user should be sent to.
+	 */
+	public String beginLogin(Session session) {
+		return session.spot().getAuthURL(newLogin(session.key(), System.currentTimeMillis()));
+	}
+
+	/**
+	 * @return The OAuth state identifying the new login.
+	 */
+	String newLogin(SessionKey key, long now) {
+		expireLogins(now);
+		pendingLogins.values().removeIf(login -> login.key().equals(key));
+		String state = newSecret();
+		pendingLogins.put(state, new PendingLogin(key, now + LOGIN_TTL_MS));
+		return state;
+	}
+
+	private void expireLogins(long now) {
+		pendingLogins.values().removeIf(login -> login.expiresAt() <= now);
+	}
+
+	/**
+	 * Finish logging in with the code and state Spotify redirected back with.
+	 *
+	 * @return true if the session is now connected.
+	 */
+	public boolean completeLogin(String state, String code) {
+		return completeLogin(state, code, System.currentTimeMillis());
+	}
+
+	boolean completeLogin(String state, String code, long now) {
+		PendingLogin login = state != null ? pendingLogins.remove(state) : null;
+		Session session = login != null && login.expiresAt() > now ? sessions.get(login.key()) : null;
+		if (session == null) {
+			LOG.warn("Login with an unknown or expired state, ignoring it.");
+			return false;
+		}
+		boolean authenticated = session.spot().useAuthToken(code);
+		session.poller().boost();
+		return authenticated;
+	}
+
+	/**
+	 * Log the session out, clear its board and stop polling it.
+	 */
+	public boolean close(SessionKey key) {
+		Session session = sessions.remove(key);
+		if (session == null) {
+			return false;
+		}
+		LOG.info("Closing session for user " + key.user() + " on board " + key.board());
+		session.poller().stop();
+		session.spot().logout();
+		pendingLogins.values().removeIf(login -> login.key().equals(key));
+		return true;
+	}
+
+	public Stats getStats() {
+		expireLogins(System.currentTimeMillis());
+		long connected = sessions.values().stream().filter(session -> session.spot().isConnected()).count();
+		return new Stats(sessions.size(), connected, pendingLogins.size());
+	}
+
+	@Override
+	public void close() {
+		for (Session session : sessions.values()) {
+			session.poller().stop();
+		}
+		sessions.clear();
+	}
+}
@@ -0,0 +1,287 @@
+package com.vesta.rest_api.stream;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.vesta.rest_api.StateResponse;
+import com.vesta.rest_api.events.EventPayload;
+import com.vesta.rest_api.events.ObservableEvents;
+import com.vesta.rest_api.patterns.Observer;
+import com.vesta.rest_api.timer.HashedWheelTimer;
+import com.vesta.rest_api.timer.HashedWheelTimer.Timeout;
+
+/**
+ * Pushes the state to every client of /current/stream as Server-Sent Events.
+ *
+ * Subscribe it to {@link ObservableEvents#STATE_UPDATE} and it sends each new
+ * state to every connected client, so clients only hear from the server when
+ * something changed instead of polling /current. Connections are async
+ * servlet requests, an idle client doesn't hold a thread.
+ *
+ * Every state gets an increasing ID and the most recent ones are kept, so a
+ * client that reconnects with a Last-Event-ID is sent what it missed. A
+ * heartbeat comment is sent regularly so proxies don't close idle
+ * connections and dead clients are noticed.
+ *
+ * Writing to a client can block, so nothing is written while publishing.
+ * Each client has a short queue drained on the timer's pool, and a client
+ * that falls so far behind that its queue fills up is dropped, it can
+ * reconnect and resume from its Last-Event-ID.
+ */
+public class StateBroadcaster implements Observer, AutoCloseable {
+	private static final Logger LOG = LogManager.getLogger(StateBroadcaster.class);
+
+	private static final long HEARTBEAT_MS = 15_000;
+	/** How long a client stays connected before it has to reconnect. */
+	private static final long CONNECTION_TIMEOUT_MS = 30 * 60_000;
+	/** How many past states are kept for clients resuming with a Last-Event-ID. */
+	private static final int HISTORY_SIZE = 32;
+	/** How many unsent events and heartbeats a client can have before it's dropped. */
+	static final int CLIENT_QUEUE_SIZE = 16;
+
+	/**
+	 * Snapshot of the broadcaster counters.
+	 *
+	 * @param clients     Clients connected.
+	 * @param lastEventId The ID of the newest state.
+	 * @param eventsSent  States sent, counting each client separately.
+	 * @param dropped     Clients dropped because a send failed or they fell too
+	 *                    far behind.
+	 */
+	public record Stats(int clients, long lastEventId, long eventsSent, long dropped) {
+	}
+
+	record Event(long id, StateResponse state) {
+	}
+
+	/** Queued for a client in place of an event to send a heartbeat. */
+	private static final Event HEARTBEAT = new Event(-1, null);
+
+	/**
+	 * A connected client and the events waiting to be written to it.
+	 */
+	private final class Client {
+		final SseEmitter emitter;
+		// both guarded by this.
+		private final ArrayDeque<Event> queue = new ArrayDeque<>();
+		private boolean draining;
+
+		Client(SseEmitter emitter) {
+			this.emitter = emitter;
+		}
+
+		/**
+		 * Queue an event, dropping the client if it's too far behind.
+		 */
+		void offer(Event event) {
+			synchronized (this) {
+				if (queue.size() < CLIENT_QUEUE_SIZE) {
+					queue.addLast(event);
+					if (!draining) {
+						draining = true;
+						sender.execute(this::drain);
+					}
+					return;
+				}
+			}
+			drop(this);
+		}
+
+		private void drain() {
+			while (true) {
+				Event event;
+				synchronized (this) {
+					event = queue.pollFirst();
+					if (event == null) {
+						draining = false;
+						return;
+					}
+				}
+				if (!send(this, event)) {
+					synchronized (this) {
+						queue.clear();
+						draining = false;
+					}
+					return;
+				}
+			}
+		}
+	}
+
+	private final HashedWheelTimer timer;
+	private final Executor sender;
+	private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+	/**
+	 * Guarded by itself, also serializes publishing with subscribing, so a new
+	 * client's missed events are queued before anything newer.
+	 */
+	private final ArrayDeque<Event> history = new ArrayDeque<>();
+	private long lastId;
+	private volatile Timeout heartbeat;
+	private volatile boolean closed;
+
+	private final AtomicLong eventsSent = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * Creates a broadcaster with no state, publish the current state before
+	 * clients connect.
+	 *
+	 * @param timer The timer heartbeats are scheduled on, and whose pool writes
+	 *              to the clients.
+	 */
+	public StateBroadcaster(HashedWheelTimer timer) {
+		this(timer, timer.getExecutor());
+	}
+
+	/**
+	 * @param sender Writes the queued events to the clients.
+	 */
+	StateBroadcaster(HashedWheelTimer timer, Executor sender) {
+		this.timer = timer;
+		this.sender = sender;
+		heartbeat = timer.newTimeout(this::heartbeat, HEARTBEAT_MS);
+	}
+
+	/**
+	 * Connect a client, it's sent the current state straight away, or everything
+	 * it missed if it's resuming.
+	 *
+	 * @param lastEventId The Last-Event-ID header of a reconnecting client, or
+	 *                    null.
+	 */
+	public SseEmitter subscribe(String lastEventId) {
+		SseEmitter emitter = new SseEmitter(CONNECTION_TIMEOUT_MS);
+		Client client = new Client(emitter);
+		emitter.onCompletion(() -> clients.remove(client));
+		emitter.onTimeout(() -> clients.remove(client));
+		emitter.onError(e -> clients.remove(client));
+
+		synchronized (history) {
+			clients.add(client);
+			for (Event event : missedEvents(parseId(lastEventId))) {
+				client.offer(event);
+			}
+		}
+		return emitter;
+	}
+
+	/**
+	 * Send a new state to every client, without waiting for it to be written.
+	 */
+	public void publish(StateResponse state) {
+		synchronized (history) {
+			Event event = new Event(++lastId, state);
+			history.addLast(event);
+			if (history.size() > HISTORY_SIZE) {
+				history.removeFirst();
+			}
+			for (Client client : clients) {
+				client.offer(event);
+			}
+		}
+	}
+
+	@Override
+	public void update(EventPayload<?> event) {
+		if (event.getType() == ObservableEvents.STATE_UPDATE) {
+			publish((StateResponse) event.getPayload());
+		}
+	}
+
+	public Stats getStats() {
+		synchronized (history) {
+			return new Stats(clients.size(), lastId, eventsSent.get(), dropped.get());
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		heartbeat.cancel();
+		for (Client client : clients) {
+			client.emitter.complete();
+		}
+		clients.clear();
+	}
+
+	/**
+	 * @return The states a client resuming after lastEventId missed, or only the
+	 *         newest state if it's new or missed more than is kept.
+	 */
+	List<Event> missedEvents(long lastEventId) {
+		List<Event> missed = new ArrayList<>();
+		if (history.isEmpty()) {
+			return missed;
+		}
+		if (lastEventId >= 0 && lastEventId >= history.peekFirst().id() - 1 && lastEventId <= lastId) {
+			for (Event event : history) {
+				if (event.id() > lastEventId) {
+					missed.add(event);
+				}
+			}
+		} else {
+			missed.add(history.peekLast());
+		}
+		return missed;
+	}
+
+	private static long parseId(String lastEventId) {
+		if (lastEventId == null || lastEventId.isBlank()) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(lastEventId.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * @return false if the client is gone and has been dropped.
+	 */
+	private boolean send(Client client, Event event) {
+		try {
+			if (event == HEARTBEAT) {
+				client.emitter.send(SseEmitter.event().comment("heartbeat"));
+				return true;
+			}
+			client.emitter.send(SseEmitter.event()
+					.id(String.valueOf(event.id()))
+					.name("state")
+					.data(event.state()));
+			eventsSent.incrementAndGet();
+			return true;
+		} catch (IOException | IllegalStateException e) {
+			drop(client);
+			return false;
+		}
+	}
+
+	private void heartbeat() {
+		for (Client client : clients) {
+			client.offer(HEARTBEAT);
+		}
+		if (!closed) {
+			heartbeat = timer.newTimeout(this::heartbeat, HEARTBEAT_MS);
+		}
+	}
+
+	private void drop(Client client) {
+		if (clients.remove(client)) {
+			dropped.incrementAndGet();
+			LOG.debug("Dropped a state stream client, " + clients.size() + " left.");
+		}
+		client.emitter.completeWithError(new IOException("Client disconnected"));
+	}
+}
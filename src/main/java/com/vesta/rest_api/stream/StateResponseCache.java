@@ -0,0 +1,114 @@
+package com.vesta.rest_api.stream;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vesta.rest_api.PlaybackSnapshot;
+import com.vesta.rest_api.SpotifyIntegration.VersionedState;
+
+/**
+ * Keeps the serialized body of /current for the newest state version, so the
+ * state is only turned into JSON once per change however often it's polled.
+ *
+ * Every body has a strong ETag made from a hash of its bytes, so it stays
+ * valid across restarts, letting clients that already have the state get a
+ * 304 instead.
+ */
+public class StateResponseCache {
+
+	/** How long a client may reuse the state while nothing is playing. */
+	static final long IDLE_MAX_AGE_SECONDS = 5;
+	/**
+	 * The longest a client may reuse the state while a song is playing, a skip
+	 * can change it before the song ends.
+	 */
+	static final long PLAYING_MAX_AGE_SECONDS = 30;
+
+	/**
+	 * A serialized state.
+	 *
+	 * @param version The version of the state.
+	 * @param body    The state as JSON.
+	 * @param etag    A quoted, strong ETag for the body.
+	 */
+	public record Entry(long version, byte[] body, String etag) {
+	}
+
+	private final ObjectMapper mapper;
+	private volatile Entry entry;
+
+	public StateResponseCache(ObjectMapper mapper) {
+		this.mapper = mapper;
+	}
+
+	/**
+	 * @return The body of the state, serialized only if this version hasn't been
+	 *         before.
+	 */
+	public Entry get(VersionedState state) throws JsonProcessingException {
+		Entry cached = entry;
+		if (cached != null && cached.version() == state.version()) {
+			return cached;
+		}
+		byte[] body = mapper.writeValueAsBytes(state.state());
+		Entry fresh = new Entry(state.version(), body, etag(body));
+		synchronized (this) {
+			// a slow request mustn't replace a newer version.
+			if (entry == null || entry.version() < fresh.version()) {
+				entry = fresh;
+			}
+		}
+		return fresh;
+	}
+
+	/**
+	 * Checks an If-None-Match header against an ETag.
+	 *
+	 * @param ifNoneMatch The header, may be null or a comma separated list.
+	 * @param etag        The quoted ETag of the current body.
+	 * @return true if the client already has the body.
+	 */
+	public static boolean matches(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+			if (candidate.startsWith("W/")) {
+				candidate = candidate.substring(2);
+			}
+			if (candidate.equals("*") || candidate.equals(etag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * How long a client can reuse the state, the state won't change on its own
+	 * until the current song ends.
+	 *
+	 * @param snapshot The playback as of the last poll, or null.
+	 * @return The max-age in seconds.
+	 */
+	public static long maxAgeSeconds(PlaybackSnapshot snapshot) {
+		if (snapshot == null || !snapshot.isPlaying()) {
+			return IDLE_MAX_AGE_SECONDS;
+		}
+		return Math.min(snapshot.getRemainingMs() / 1000, PLAYING_MAX_AGE_SECONDS);
+	}
+
+	private static String etag(byte[] body) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(body);
+			return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+		} catch (NoSuchAlgorithmException e) {
+			// every JVM has SHA-256, fall back to the content's hash code anyway.
+			return "\"" + Integer.toHexString(new String(body, StandardCharsets.UTF_8).hashCode()) + "\"";
+		}
+	}
+}
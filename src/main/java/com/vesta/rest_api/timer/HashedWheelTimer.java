@@ -0,0 +1,327 @@
+package com.vesta.rest_api.timer;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The one timer everything time based is scheduled on, polls, board write
+ * lingers, backoffs and token refreshes.
+ *
+ * Timeouts are kept in a ring of buckets, one per tick, and a single thread
+ * walks the ring expiring the bucket under it each tick. Adding or cancelling
+ * a timeout is O(1) no matter how many are pending, so tens of thousands fit
+ * on one thread. Timeouts further away than one turn of the ring wait a number
+ * of rounds in their bucket.
+ *
+ * Expired tasks are run on a small pool instead of the wheel thread, so a
+ * slow task can't hold up the ticks. Timeouts fire up to one tick late.
+ */
+public class HashedWheelTimer implements AutoCloseable {
+	private static final Logger LOG = LogManager.getLogger(HashedWheelTimer.class);
+
+	/** The most new timeouts moved onto the wheel per tick, so a flood can't stall it. */
+	private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+	private static HashedWheelTimer defaultTimer;
+
+	/**
+	 * A pending task, see {@link HashedWheelTimer#newTimeout(Runnable, long)}.
+	 */
+	public interface Timeout {
+		/**
+		 * Stop the task from running.
+		 *
+		 * @return false if it has already run or been cancelled.
+		 */
+		boolean cancel();
+
+		boolean isCancelled();
+
+		boolean isExpired();
+
+		/**
+		 * @return How long until the task runs, negative once it's due.
+		 */
+		long getDelayMs();
+	}
+
+	/**
+	 * Snapshot of the timer counters.
+	 *
+	 * @param pending   Timeouts waiting to expire.
+	 * @param expired   Timeouts that have run.
+	 * @param cancelled Timeouts cancelled before running.
+	 */
+	public record Stats(long pending, long expired, long cancelled) {
+	}
+
+	private final long tickNanos;
+	private final Bucket[] wheel;
+	private final int mask;
+	private final long startTime = System.nanoTime();
+
+	private final Queue<WheelTimeout> added = new ConcurrentLinkedQueue<>();
+	private final Queue<WheelTimeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+	private final ExecutorService executor;
+	private final Thread worker;
+	private volatile boolean running = true;
+	/** Only touched by the wheel thread. */
+	private long tick;
+
+	private final AtomicLong pending = new AtomicLong();
+	private final AtomicLong expired = new AtomicLong();
+	private final AtomicLong cancelled = new AtomicLong();
+
+	/**
+	 * @param tickMs        How often the wheel moves, the timer's resolution.
+	 * @param ticksPerWheel How many buckets are in the ring, rounded up to a
+	 *                      power of two.
+	 * @param threads       How many threads run expired tasks.
+	 */
+	public HashedWheelTimer(long tickMs, int ticksPerWheel, int threads) {
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMs));
+		int size = Integer.highestOneBit(Math.max(1, ticksPerWheel - 1)) << 1;
+		this.wheel = new Bucket[size];
+		for (int i = 0; i < size; i++) {
+			wheel[i] = new Bucket();
+		}
+		this.mask = size - 1;
+
+		AtomicInteger count = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "timer-task-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.worker = new Thread(this::run, "timer-wheel");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Returns a timer shared by everything created outside of Spring, the same
+	 * way {@link com.vesta.rest_api.http.HttpTransport#getDefault()} does.
+	 */
+	public static synchronized HashedWheelTimer getDefault() {
+		if (defaultTimer == null) {
+			defaultTimer = new HashedWheelTimer(10, 512, 4);
+		}
+		return defaultTimer;
+	}
+
+	/**
+	 * Run a task after a delay.
+	 *
+	 * @param task    The task, run on the timer's task pool.
+	 * @param delayMs How long to wait, 0 runs it on the next tick.
+	 * @return The timeout, which can be used to cancel the task.
+	 */
+	public Timeout newTimeout(Runnable task, long delayMs) {
+		if (!running) {
+			throw new RejectedExecutionException("Timer is stopped");
+		}
+		long deadline = System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMs));
+		WheelTimeout timeout = new WheelTimeout(task, deadline);
+		pending.incrementAndGet();
+		added.add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * @return The pool expired tasks run on, for work that should start straight
+	 *         away without a thread of its own.
+	 */
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	public Stats getStats() {
+		return new Stats(pending.get(), expired.get(), cancelled.get());
+	}
+
+	@Override
+	public void close() {
+		running = false;
+		LockSupport.unpark(worker);
+		executor.shutdown();
+	}
+
+	private void run() {
+		while (running) {
+			long deadline = tickNanos * (tick + 1);
+			long sleep = deadline - (System.nanoTime() - startTime);
+			if (sleep > 0) {
+				LockSupport.parkNanos(this, sleep);
+				continue;
+			}
+			removeCancelled();
+			transferAdded();
+			wheel[(int) (tick & mask)].expire(deadline);
+			tick++;
+		}
+	}
+
+	private void transferAdded() {
+		for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+			WheelTimeout timeout = added.poll();
+			if (timeout == null) {
+				return;
+			}
+			if (timeout.state.get() != WheelTimeout.PENDING) {
+				continue;
+			}
+			long due = timeout.deadline / tickNanos;
+			timeout.remainingRounds = (due - tick) / wheel.length;
+			// anything already due goes in the current bucket.
+			wheel[(int) (Math.max(due, tick) & mask)].add(timeout);
+		}
+	}
+
+	private void removeCancelled() {
+		WheelTimeout timeout;
+		while ((timeout = cancelledTimeouts.poll()) != null) {
+			if (timeout.bucket != null) {
+				timeout.bucket.remove(timeout);
+			}
+		}
+	}
+
+	private void execute(WheelTimeout timeout) {
+		try {
+			executor.execute(() -> {
+				try {
+					timeout.task.run();
+				} catch (Throwable t) {
+					LOG.error("Timer task failed, ERROR_MSG: " + t.getMessage());
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			LOG.warn("Timer is stopping, dropping a task.");
+		}
+	}
+
+	private final class WheelTimeout implements Timeout {
+		static final int PENDING = 0;
+		static final int CANCELLED = 1;
+		static final int EXPIRED = 2;
+
+		final Runnable task;
+		/** In nanoseconds since the timer started. */
+		final long deadline;
+		final AtomicInteger state = new AtomicInteger(PENDING);
+
+		// only touched by the wheel thread.
+		long remainingRounds;
+		Bucket bucket;
+		WheelTimeout next;
+		WheelTimeout prev;
+
+		WheelTimeout(Runnable task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		@Override
+		public boolean cancel() {
+			if (!state.compareAndSet(PENDING, CANCELLED)) {
+				return false;
+			}
+			pending.decrementAndGet();
+			cancelled.incrementAndGet();
+			// the wheel thread unlinks it on its next tick.
+			cancelledTimeouts.add(this);
+			return true;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return state.get() == CANCELLED;
+		}
+
+		@Override
+		public boolean isExpired() {
+			return state.get() == EXPIRED;
+		}
+
+		@Override
+		public long getDelayMs() {
+			return TimeUnit.NANOSECONDS.toMillis(deadline - (System.nanoTime() - startTime));
+		}
+
+		void expire() {
+			if (!state.compareAndSet(PENDING, EXPIRED)) {
+				return;
+			}
+			pending.decrementAndGet();
+			expired.incrementAndGet();
+			execute(this);
+		}
+	}
+
+	/**
+	 * A doubly linked list of the timeouts in one slot of the ring.
+	 */
+	private static final class Bucket {
+		private WheelTimeout head;
+		private WheelTimeout tail;
+
+		void add(WheelTimeout timeout) {
+			timeout.bucket = this;
+			if (head == null) {
+				head = tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+		/**
+		 * Run every timeout that is in its last round, and count down the rest.
+		 */
+		void expire(long deadline) {
+			WheelTimeout timeout = head;
+			while (timeout != null) {
+				WheelTimeout next = timeout.next;
+				if (timeout.isCancelled()) {
+					remove(timeout);
+				} else if (timeout.remainingRounds <= 0 && timeout.deadline < deadline) {
+					remove(timeout);
+					timeout.expire();
+				} else {
+					timeout.remainingRounds--;
+				}
+				timeout = next;
+			}
+		}
+
+		void remove(WheelTimeout timeout) {
+			if (timeout.bucket != this) {
+				return;
+			}
+			if (timeout.prev != null) {
+				timeout.prev.next = timeout.next;
+			} else {
+				head = timeout.next;
+			}
+			if (timeout.next != null) {
+				timeout.next.prev = timeout.prev;
+			} else {
+				tail = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.bucket = null;
+		}
+	}
+}
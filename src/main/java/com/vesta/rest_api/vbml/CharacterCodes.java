@@ -0,0 +1,87 @@
+package com.vesta.rest_api.vbml;
+
+import java.util.Arrays;
+
+/**
+ * Maps characters to the character codes understood by the Vestaboard.
+ *
+ * The board only displays uppercase letters, digits, a small set of
+ * punctuation and the color chips {63} - {71}, anything else is shown as a
+ * blank.
+ */
+public final class CharacterCodes {
+	public static final int BLANK = 0;
+
+	/** Highest character code accepted inside a {NN} template tag. */
+	public static final int MAX_CODE = 71;
+
+	private static final char DEGREE = '\u00B0';
+
+	/**
+	 * Lookup table indexed by ASCII value, -1 marks characters the board can't
+	 * display.
+	 */
+	private static final int[] CODES = new int[128];
+
+	static {
+		Arrays.fill(CODES, -1);
+		CODES[' '] = BLANK;
+		for (char c = 'A'; c <= 'Z'; c++) {
+			CODES[c] = c - 'A' + 1;
+			CODES[Character.toLowerCase(c)] = c - 'A' + 1;
+		}
+		for (char c = '1'; c <= '9'; c++) {
+			CODES[c] = c - '1' + 27;
+		}
+		CODES['0'] = 36;
+		CODES['!'] = 37;
+		CODES['@'] = 38;
+		CODES['#'] = 39;
+		CODES['$'] = 40;
+		CODES['('] = 41;
+		CODES[')'] = 42;
+		CODES['-'] = 44;
+		CODES['+'] = 46;
+		CODES['&'] = 47;
+		CODES['='] = 48;
+		CODES[';'] = 49;
+		CODES[':'] = 50;
+		CODES['\''] = 52;
+		CODES['"'] = 53;
+		CODES['%'] = 54;
+		CODES[','] = 55;
+		CODES['.'] = 56;
+		CODES['/'] = 59;
+		CODES['?'] = 60;
+	}
+
+	private CharacterCodes() {
+	}
+
+	/**
+	 * Checks if a character can be displayed on the board.
+	 *
+	 * @param c The character to check.
+	 * @return true if the board has a character code for it.
+	 */
+	public static boolean isSupported(char c) {
+		return c == DEGREE || (c < CODES.length && CODES[c] != -1);
+	}
+
+	/**
+	 * Get the character code for a character.
+	 *
+	 * @param c The character to convert.
+	 * @return The character code, or {@link #BLANK} if the board can't display
+	 *         it.
+	 */
+	public static int of(char c) {
+		if (c == DEGREE) {
+			return 62;
+		}
+		if (c < CODES.length && CODES[c] != -1) {
+			return CODES[c];
+		}
+		return BLANK;
+	}
+}
@@ -0,0 +1,197 @@
+package com.vesta.rest_api.vbml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.vesta.rest_api.Component;
+
+/**
+ * Lays out {@link Component} objects into the 6x22 character code grid the
+ * Vestaboard accepts, without a round trip to vbml.vestaboard.com.
+ *
+ * Components are placed left to right and wrap onto the next band of rows when
+ * they don't fit, the same way the VBML compose API flows them. Inside each
+ * component the template is word wrapped to the component's width, then
+ * aligned vertically (align) and horizontally (justify). {NN} tags in the
+ * template are written as the raw character code NN.
+ */
+public final class Compositor {
+	public static final int ROWS = 6;
+	public static final int COLUMNS = 22;
+
+	private Compositor() {
+	}
+
+	/**
+	 * Composes components into a board layout.
+	 *
+	 * @param components The components to lay out, in order.
+	 * @return A 6x22 array of character codes.
+	 */
+	public static int[][] compose(Component... components) {
+		int[][] layout = new int[ROWS][COLUMNS];
+
+		int row = 0;
+		int column = 0;
+		int bandHeight = 0;
+
+		for (Component component : components) {
+			int width = clamp(component.getWidth(), COLUMNS);
+			int height = clamp(component.getHeight(), ROWS);
+
+			// wrap onto the next band if this component doesn't fit next to the last one.
+			if (column + width > COLUMNS) {
+				row += bandHeight;
+				column = 0;
+				bandHeight = 0;
+			}
+			if (row >= ROWS) {
+				break;
+			}
+
+			int[][] block = render(component, width, height);
+			for (int r = 0; r < height && row + r < ROWS; r++) {
+				System.arraycopy(block[r], 0, layout[row + r], column, width);
+			}
+
+			column += width;
+			bandHeight = Math.max(bandHeight, height);
+		}
+		return layout;
+	}
+
+	/**
+	 * Renders a single component into a width x height block.
+	 */
+	private static int[][] render(Component component, int width, int height) {
+		int[][] block = new int[height][width];
+		List<int[]> lines = wrap(component.getBody(), width);
+		int lineCount = Math.min(lines.size(), height);
+
+		int top;
+		switch (String.valueOf(component.getAlign())) {
+			case "top":
+				top = 0;
+				break;
+			case "bottom":
+				top = height - lineCount;
+				break;
+			default:
+				top = (height - lineCount) / 2;
+		}
+
+		int longest = 0;
+		for (int i = 0; i < lineCount; i++) {
+			longest = Math.max(longest, lines.get(i).length);
+		}
+
+		for (int i = 0; i < lineCount; i++) {
+			int[] line = lines.get(i);
+			int left;
+			switch (String.valueOf(component.getJustify())) {
+				case "left":
+					left = 0;
+					break;
+				case "right":
+					left = width - line.length;
+					break;
+				case "justified":
+					// keep the lines left aligned with each other, but center the block.
+					left = (width - longest) / 2;
+					break;
+				default:
+					left = (width - line.length) / 2;
+			}
+			System.arraycopy(line, 0, block[top + i], left, line.length);
+		}
+		return block;
+	}
+
+	/**
+	 * Splits a template into lines of character codes no longer than width,
+	 * breaking on spaces where possible.
+	 */
+	static List<int[]> wrap(String template, int width) {
+		List<int[]> lines = new ArrayList<>();
+		if (template == null) {
+			return lines;
+		}
+
+		for (String paragraph : template.split("\n", -1)) {
+			int[] line = new int[width];
+			int length = 0;
+
+			for (String word : paragraph.split(" ")) {
+				if (word.isEmpty()) {
+					continue;
+				}
+				int[] codes = encode(word);
+
+				if (length > 0 && length + 1 + codes.length > width) {
+					lines.add(Arrays.copyOf(line, length));
+					length = 0;
+				}
+				if (length > 0) {
+					line[length++] = CharacterCodes.BLANK;
+				}
+
+				for (int code : codes) {
+					// hard break words that are wider than the component.
+					if (length == width) {
+						lines.add(Arrays.copyOf(line, length));
+						length = 0;
+					}
+					line[length++] = code;
+				}
+			}
+			lines.add(Arrays.copyOf(line, length));
+		}
+		return lines;
+	}
+
+	/**
+	 * Converts a word to character codes, translating {NN} tags to code NN.
+	 */
+	static int[] encode(String word) {
+		int[] codes = new int[word.length()];
+		int length = 0;
+
+		for (int i = 0; i < word.length(); i++) {
+			char c = word.charAt(i);
+			if (c == '{') {
+				int close = word.indexOf('}', i);
+				if (close > i + 1) {
+					Integer code = parseCode(word.substring(i + 1, close));
+					if (code != null) {
+						codes[length++] = code;
+						i = close;
+						continue;
+					}
+				}
+			}
+			codes[length++] = CharacterCodes.of(c);
+		}
+		return Arrays.copyOf(codes, length);
+	}
+
+	private static Integer parseCode(String tag) {
+		if (tag.length() > 2) {
+			return null;
+		}
+		for (int i = 0; i < tag.length(); i++) {
+			if (!Character.isDigit(tag.charAt(i))) {
+				return null;
+			}
+		}
+		int code = Integer.parseInt(tag);
+		return code <= CharacterCodes.MAX_CODE ? code : null;
+	}
+
+	private static int clamp(Integer value, int max) {
+		if (value == null || value > max) {
+			return max;
+		}
+		return Math.max(value, 0);
+	}
+}
@@ -0,0 +1,124 @@
+package com.vesta.rest_api.vbml;
+
+import java.awt.image.BufferedImage;
+import java.util.stream.IntStream;
+
+/**
+ * Turns an image, such as an album cover, into a block of color chips the
+ * board can show.
+ *
+ * The image is cropped around its center to the shape of the block, then
+ * every cell is the average color of the pixels under it, matched to the
+ * closest of the color chips {63} - {70}. Rows of cells are worked out in
+ * parallel, a cover is a few hundred thousand pixels for a few dozen chips.
+ */
+public final class Mosaic {
+
+	/** The width of a flap divided by its height. */
+	static final double FLAP_ASPECT = 0.6;
+
+	/** The first color chip, red. */
+	static final int FIRST_CHIP = 63;
+
+	/**
+	 * The color of each chip from {63} on, red, orange, yellow, green, blue,
+	 * violet, white and black.
+	 */
+	private static final int[] CHIP_COLORS = {
+			0xDA291C, 0xFF7500, 0xFFB81C, 0x009A44, 0x0084D5, 0x702F8A, 0xFFFFFF, 0x000000 };
+
+	private Mosaic() {
+	}
+
+	/**
+	 * Renders an image as color chips.
+	 *
+	 * @param image   The image to render.
+	 * @param rows    The height of the block in flaps.
+	 * @param columns The width of the block in flaps.
+	 * @return A rows x columns array of the character codes {63} - {70}.
+	 */
+	public static int[][] render(BufferedImage image, int rows, int columns) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+
+		// crop the sides or the top and bottom, so the picture isn't stretched.
+		double aspect = columns * FLAP_ASPECT / rows;
+		int cropWidth = width;
+		int cropHeight = height;
+		if (width > height * aspect) {
+			cropWidth = Math.max(1, (int) Math.round(height * aspect));
+		} else {
+			cropHeight = Math.max(1, (int) Math.round(width / aspect));
+		}
+		int left = (width - cropWidth) / 2;
+		int top = (height - cropHeight) / 2;
+
+		int[][] chips = new int[rows][columns];
+		final int stripWidth = cropWidth;
+		final int stripHeight = cropHeight;
+		IntStream.range(0, rows).parallel().forEach(row -> {
+			int y0 = top + row * stripHeight / rows;
+			int y1 = Math.max(y0 + 1, top + (row + 1) * stripHeight / rows);
+			int[] pixels = image.getRGB(left, y0, stripWidth, y1 - y0, null, 0, stripWidth);
+
+			for (int column = 0; column < columns; column++) {
+				int x0 = column * stripWidth / columns;
+				int x1 = Math.max(x0 + 1, (column + 1) * stripWidth / columns);
+				long red = 0;
+				long green = 0;
+				long blue = 0;
+				for (int y = 0; y < y1 - y0; y++) {
+					for (int x = x0; x < x1; x++) {
+						int pixel = pixels[y * stripWidth + x];
+						red += (pixel >> 16) & 0xFF;
+						green += (pixel >> 8) & 0xFF;
+						blue += pixel & 0xFF;
+					}
+				}
+				long count = (long) (y1 - y0) * (x1 - x0);
+				chips[row][column] = closestChip((int) (red / count), (int) (green / count), (int) (blue / count));
+			}
+		});
+		return chips;
+	}
+
+	/**
+	 * Find the chip closest to a color, weighting the channels the way the eye
+	 * does so dark reds don't turn violet.
+	 */
+	static int closestChip(int red, int green, int blue) {
+		int closest = 0;
+		long closestDistance = Long.MAX_VALUE;
+		for (int i = 0; i < CHIP_COLORS.length; i++) {
+			int chipRed = (CHIP_COLORS[i] >> 16) & 0xFF;
+			int meanRed = (red + chipRed) / 2;
+			long dr = red - chipRed;
+			long dg = green - ((CHIP_COLORS[i] >> 8) & 0xFF);
+			long db = blue - (CHIP_COLORS[i] & 0xFF);
+			long distance = ((512 + meanRed) * dr * dr >> 8) + 4 * dg * dg + ((767 - meanRed) * db * db >> 8);
+			if (distance < closestDistance) {
+				closest = i;
+				closestDistance = distance;
+			}
+		}
+		return FIRST_CHIP + closest;
+	}
+
+	/**
+	 * Write a block of character codes as a {@link com.vesta.rest_api.Component}
+	 * body, one {NN} tag per flap and one line per row.
+	 */
+	public static String toTemplate(int[][] codes) {
+		StringBuilder template = new StringBuilder();
+		for (int row = 0; row < codes.length; row++) {
+			if (row > 0) {
+				template.append('\n');
+			}
+			for (int code : codes[row]) {
+				template.append('{').append(code).append('}');
+			}
+		}
+		return template.toString();
+	}
+}
@@ -0,0 +1,215 @@
+package com.vesta.rest_api.vbml;
+
+import java.text.Normalizer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Cleans up song titles and artists so they fit on the board.
+ *
+ * Feature credits, remaster and version tags are stripped from titles, and
+ * everything is transliterated to characters the board can display, accents
+ * are dropped and anything that can't be transliterated is removed rather
+ * than shown as a blank, unless that leaves nothing, e.g. a Japanese title,
+ * then each character is shown as a "?". The patterns are compiled once, and
+ * the result is memoized per track so the work only happens once per song.
+ */
+public final class TitleNormalizer {
+
+	/**
+	 * A title and artist ready for the board.
+	 *
+	 * @param title  The title without tags, in the board's character set.
+	 * @param artist The artist in the board's character set.
+	 */
+	public record Normalized(String title, String artist) {
+	}
+
+	/** How many tracks are memoized. */
+	private static final int MEMO_SIZE = 512;
+
+	/** "(feat. X)", "[with X]" and the like. */
+	private static final Pattern BRACKETED_FEATURE = Pattern.compile(
+			"\\s*[(\\[][^)\\]]*?\\b(?:ft|feat|featuring|with)\\b[^)\\]]*[)\\]]",
+			Pattern.CASE_INSENSITIVE);
+	/** "Title feat. X" without brackets, up to the next tag or the end. */
+	private static final Pattern TRAILING_FEATURE = Pattern.compile(
+			"\\s+(?:ft\\.|feat\\.|featuring)\\s+[^(\\[-]*",
+			Pattern.CASE_INSENSITIVE);
+	/** "(2011 Remaster)", "[Radio Edit]", "(Deluxe Edition)" and the like. */
+	private static final Pattern BRACKETED_VERSION = Pattern.compile(
+			"\\s*[(\\[][^)\\]]*?\\b(?:remaster(?:ed)?|version|edit|mono|stereo|deluxe|edition|anniversary)\\b[^)\\]]*[)\\]]",
+			Pattern.CASE_INSENSITIVE);
+	/** "- Remastered 2009", "- Single Version" and the like, only at the end. */
+	private static final Pattern DASHED_VERSION = Pattern.compile(
+			"\\s+-\\s+[^-]*?\\b(?:remaster(?:ed)?|version|edit|mono|stereo|deluxe|edition|anniversary)\\b[^-]*$",
+			Pattern.CASE_INSENSITIVE);
+	private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+	private static final Pattern APOSTROPHES = Pattern.compile("['\u2019]");
+	private static final Pattern NOT_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+	private static final Map<String, Normalized> MEMO = new LinkedHashMap<>(64, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Normalized> eldest) {
+			return size() > MEMO_SIZE;
+		}
+	};
+
+	private TitleNormalizer() {
+	}
+
+	/**
+	 * Normalize a track's title and artist, memoized per track.
+	 *
+	 * @param trackId The Spotify track ID, or null to memoize by title and
+	 *                artist.
+	 */
+	public static Normalized normalize(String trackId, String title, String artist) {
+		String key = trackId != null ? trackId : title + '\u0000' + artist;
+		synchronized (MEMO) {
+			Normalized memoized = MEMO.get(key);
+			if (memoized != null) {
+				return memoized;
+			}
+		}
+		Normalized normalized = new Normalized(transliterate(stripTags(title)), transliterate(artist));
+		synchronized (MEMO) {
+			MEMO.put(key, normalized);
+		}
+		return normalized;
+	}
+
+	/**
+	 * Remove feature credits, remaster and version tags from a title.
+	 */
+	public static String stripTags(String title) {
+		if (title == null) {
+			return "";
+		}
+		String stripped = BRACKETED_FEATURE.matcher(title).replaceAll("");
+		stripped = BRACKETED_VERSION.matcher(stripped).replaceAll("");
+		stripped = DASHED_VERSION.matcher(stripped).replaceAll("");
+		stripped = TRAILING_FEATURE.matcher(stripped).replaceAll("");
+		stripped = stripped.trim();
+		// never strip a title down to nothing, "(Remastered)" alone is better than a blank.
+		return stripped.isEmpty() ? title.trim() : stripped;
+	}
+
+	/**
+	 * Convert text to characters the board can display.
+	 *
+	 * Accents are removed, a few letters and punctuation marks are spelled out,
+	 * and whatever is left that the board can't show is dropped. If that drops
+	 * everything, each character is replaced with a "?" instead, so the board
+	 * doesn't show a blank line.
+	 */
+	public static String transliterate(String text) {
+		if (text == null) {
+			return "";
+		}
+		String decomposed = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+				.replaceAll("");
+		String transliterated = transliterate(decomposed, false);
+		return transliterated.isEmpty() ? transliterate(decomposed, true) : transliterated;
+	}
+
+	/**
+	 * @param placeholders Whether characters the board can't show become a "?"
+	 *                     instead of being dropped.
+	 */
+	private static String transliterate(String decomposed, boolean placeholders) {
+		StringBuilder out = new StringBuilder(decomposed.length());
+		for (int i = 0; i < decomposed.length(); i++) {
+			char c = decomposed.charAt(i);
+			String replacement = replacement(c);
+			if (replacement != null) {
+				out.append(replacement);
+			} else if (CharacterCodes.isSupported(c)) {
+				out.append(c);
+			} else if (Character.isWhitespace(c)) {
+				out.append(' ');
+			} else if (placeholders && !Character.isLowSurrogate(c)) {
+				out.append('?');
+			}
+		}
+		return WHITESPACE.matcher(out).replaceAll(" ").trim();
+	}
+
+	/**
+	 * Lower case without accents or punctuation, for comparing what people type,
+	 * so "Don't Stop Me Now" and "dont stop me now!" are the same. Unlike
+	 * {@link #transliterate(String)} letters the board can't show are kept.
+	 *
+	 * @return The words of the text separated by single spaces.
+	 */
+	public static String searchKey(String text) {
+		if (text == null) {
+			return "";
+		}
+		String decomposed = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFKD))
+				.replaceAll("");
+		String words = APOSTROPHES.matcher(decomposed.toLowerCase(Locale.ROOT)).replaceAll("");
+		return NOT_ALPHANUMERIC.matcher(words).replaceAll(" ").trim();
+	}
+
+	/**
+	 * Shorten text to fit on one line, cutting at a word boundary if that
+	 * doesn't lose more than half the line.
+	 *
+	 * @param text    Text already in the board's character set.
+	 * @param columns The width of the line.
+	 */
+	public static String fit(String text, int columns) {
+		if (text.length() <= columns) {
+			return text;
+		}
+		int cut = text.lastIndexOf(' ', columns);
+		if (cut < columns / 2) {
+			cut = columns;
+		}
+		return text.substring(0, cut).trim();
+	}
+
+	private static String replacement(char c) {
+		switch (c) {
+			case '\u00DF': // sharp s
+				return "SS";
+			case '\u00C6':
+			case '\u00E6':
+				return "AE";
+			case '\u0152':
+			case '\u0153':
+				return "OE";
+			case '\u00D8':
+			case '\u00F8':
+				return "O";
+			case '\u0141':
+			case '\u0142':
+				return "L";
+			case '\u0110':
+			case '\u0111':
+				return "D";
+			case '\u00DE':
+			case '\u00FE':
+				return "TH";
+			case '\u2018': // curly single quotes
+			case '\u2019':
+			case '`':
+				return "'";
+			case '\u201C': // curly double quotes
+			case '\u201D':
+				return "\"";
+			case '\u2013': // en and em dashes
+			case '\u2014':
+			case '_':
+				return "-";
+			case '\u2026': // ellipsis
+				return "...";
+			default:
+				return null;
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package com.vesta.rest_api;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class SongTests {
+
+	@Test
+	void comparesTracksByIdIgnoringTheRest() {
+		Song song = new Song("Hey Jude", "The Beatles", "https://i.scdn.co/image/1", "id-1");
+
+		assertTrue(song.isSameTrack(new Song("Hey Jude - Remastered", "The Beatles", null, "id-1")));
+		assertFalse(song.isSameTrack(new Song("Hey Jude", "The Beatles", null, "id-2")));
+		assertFalse(song.isSameTrack(null));
+	}
+
+	@Test
+	void comparesLocalFilesByTitleAndArtist() {
+		// local files have no track ID, polling one must not look like a new song.
+		Song local = new Song("Demo", "Band", null, null);
+
+		assertTrue(local.isSameTrack(new Song("Demo", "Band", null, null)));
+		assertFalse(local.isSameTrack(new Song("Demo", "Other Band", null, null)));
+		assertFalse(local.isSameTrack(new Song("Demo 2", "Band", null, "id-1")));
+	}
+}
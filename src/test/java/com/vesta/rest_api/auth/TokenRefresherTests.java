@@ -0,0 +1,140 @@
+package com.vesta.rest_api.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.vesta.rest_api.metrics.CallMetrics.Call;
+import com.vesta.rest_api.timer.ManualTimer;
+
+import se.michaelthelin.spotify.SpotifyApi;
+import se.michaelthelin.spotify.exceptions.detailed.BadRequestException;
+import se.michaelthelin.spotify.model_objects.credentials.AuthorizationCodeCredentials;
+
+class TokenRefresherTests {
+
+	private final ManualTimer timer = new ManualTimer();
+	private final AtomicInteger exchanges = new AtomicInteger();
+	/** Every refresh token saved, null once logged out. */
+	private final List<String> saved = new CopyOnWriteArrayList<>();
+
+	@AfterEach
+	void closeTimer() {
+		timer.close();
+	}
+
+	private static AuthorizationCodeCredentials creds(String refreshToken, int expiresIn) {
+		return new AuthorizationCodeCredentials.Builder()
+				.setAccessToken("access")
+				.setRefreshToken(refreshToken)
+				.setExpiresIn(expiresIn)
+				.build();
+	}
+
+	private TokenRefresher refresher(Call<AuthorizationCodeCredentials, Exception> exchange) {
+		TokenRefresher refresher = new TokenRefresher(new SpotifyApi.Builder().build(), timer, () -> {
+			exchanges.incrementAndGet();
+			return exchange.execute();
+		}, timer::now);
+		refresher.onRefreshToken(token -> saved.add(String.valueOf(token)));
+		return refresher;
+	}
+
+	@Test
+	void refreshesAMinuteBeforeTheTokenExpires() throws Exception {
+		TokenRefresher refresher = refresher(() -> creds("rotated", 3600));
+		refresher.setCredentials(creds("first", 3600));
+
+		timer.advance(3600_000 - 60_000 - 1);
+		assertEquals(0, exchanges.get());
+		long expiresAt = refresher.getExpiresAt();
+		timer.advance(1);
+		// the refresh runs on the timer's pool.
+		while (refresher.getExpiresAt() == expiresAt) {
+			Thread.onSpinWait();
+		}
+
+		assertEquals(1, exchanges.get());
+		assertEquals(List.of("first", "rotated"), saved);
+		assertEquals(timer.now() + 3600_000, refresher.getExpiresAt());
+	}
+
+	@Test
+	void dropsARefreshThatFinishesAfterLoggingOut() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		TokenRefresher refresher = refresher(() -> {
+			started.countDown();
+			release.await(5, TimeUnit.SECONDS);
+			return creds("stale", 3600);
+		});
+
+		CompletableFuture<Void> restoring = refresher.restore("saved");
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		refresher.reset();
+		release.countDown();
+		restoring.get(5, TimeUnit.SECONDS);
+
+		assertEquals(0, refresher.getExpiresAt());
+		assertEquals(List.of("null"), saved);
+	}
+
+	@Test
+	void logsOutWhenTheRefreshTokenIsRejected() {
+		TokenRefresher refresher = refresher(() -> {
+			throw new BadRequestException("invalid_grant");
+		});
+		AtomicBoolean revoked = new AtomicBoolean();
+		refresher.onRevoked(() -> {
+			revoked.set(true);
+			refresher.reset();
+		});
+
+		CompletableFuture<Void> restoring = refresher.restore("revoked");
+		assertThrows(ExecutionException.class, () -> restoring.get(5, TimeUnit.SECONDS));
+		assertTrue(revoked.get());
+		assertEquals(0, refresher.getExpiresAt());
+
+		// the same token is never tried again.
+		timer.advance(TokenRefresher.RETRY_DELAY_MS * 4);
+		assertEquals(1, exchanges.get());
+	}
+
+	@Test
+	void refreshesOnTheCallersThreadWhenThePoolIsBusy() throws Exception {
+		TokenRefresher refresher = refresher(() -> creds(null, 3600));
+
+		// every pool thread is busy waiting on something, like requests waiting for the token.
+		CountDownLatch busy = new CountDownLatch(1);
+		timer.getExecutor().execute(() -> {
+			try {
+				busy.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		try {
+			// the scheduled refresh is queued behind the busy pool.
+			refresher.setCredentials(creds("first", 1));
+			timer.advance(2000);
+
+			refresher.ensureFresh();
+			assertEquals(1, exchanges.get());
+			assertEquals(timer.now() + 3600_000, refresher.getExpiresAt());
+		} finally {
+			busy.countDown();
+		}
+	}
+}
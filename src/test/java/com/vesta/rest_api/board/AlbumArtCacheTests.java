@@ -0,0 +1,78 @@
+package com.vesta.rest_api.board;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class AlbumArtCacheTests {
+
+	private final AtomicInteger fetches = new AtomicInteger();
+
+	/**
+	 * A gray image for every URL but "broken".
+	 */
+	private BufferedImage fetch(String url) throws IOException {
+		fetches.incrementAndGet();
+		if (url.equals("broken")) {
+			throw new IOException("Not an image");
+		}
+		return new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+	}
+
+	private static void runAll(Queue<Runnable> tasks) {
+		Runnable task;
+		while ((task = tasks.poll()) != null) {
+			task.run();
+		}
+	}
+
+	@Test
+	void rendersEachCoverOnce() {
+		// holds the downloads until they're run, like a busy pool would.
+		ConcurrentLinkedQueue<Runnable> downloads = new ConcurrentLinkedQueue<>();
+		Executor executor = downloads::add;
+		AlbumArtCache cache = new AlbumArtCache(1, 6, 8, this::fetch, executor);
+
+		CompletableFuture<int[][]> first = cache.get("a");
+		assertSame(first, cache.get("a"));
+		runAll(downloads);
+		assertEquals(1, fetches.get());
+		assertEquals(6, first.join().length);
+		assertSame(first.join(), cache.get("a").join());
+
+		// only one cover fits, so a comes back after b is rendered.
+		cache.get("b");
+		runAll(downloads);
+		cache.get("a");
+		runAll(downloads);
+		assertEquals(3, fetches.get());
+		assertEquals(new AlbumArtCache.Stats(1, 3, 0, 1), cache.getStats());
+	}
+
+	@Test
+	void retriesACoverThatFailedToLoadAfterAWhile() {
+		AtomicLong now = new AtomicLong();
+		AlbumArtCache cache = new AlbumArtCache(4, 6, 8, this::fetch, Runnable::run, now::get);
+
+		assertNull(cache.get("broken").join());
+		now.addAndGet(AlbumArtCache.RETRY_AFTER_MS - 1);
+		assertNull(cache.get("broken").join());
+		assertEquals(1, fetches.get());
+
+		now.addAndGet(1);
+		assertNull(cache.get("broken").join());
+		assertEquals(2, fetches.get());
+		assertEquals(new AlbumArtCache.Stats(0, 0, 2, 0), cache.getStats());
+	}
+}
@@ -0,0 +1,79 @@
+package com.vesta.rest_api.board;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.vesta.rest_api.vbml.Compositor;
+
+class BoardMirrorTests {
+
+	private static int[][] frame(int code) {
+		int[][] frame = new int[Compositor.ROWS][Compositor.COLUMNS];
+		frame[2][3] = code;
+		return frame;
+	}
+
+	@Test
+	void skipsAFrameThatIsAlreadyOnTheBoard() {
+		BoardMirror mirror = new BoardMirror();
+		mirror.seed(new Gson().toJson(frame(5)), new Gson());
+
+		assertTrue(mirror.isSeeded());
+		assertTrue(mirror.shouldSkip(frame(5)));
+		assertEquals(new BoardMirror.Stats(0, 1), mirror.getStats());
+	}
+
+	@Test
+	void sendsAFrameThatChangedTheBoard() {
+		BoardMirror mirror = new BoardMirror();
+		// the board couldn't be read, so nothing is known to be on it.
+		mirror.seed(null, new Gson());
+		assertFalse(mirror.shouldSkip(frame(5)));
+
+		mirror.update(frame(5));
+		assertFalse(mirror.shouldSkip(frame(6)));
+		mirror.update(frame(6));
+		assertTrue(mirror.shouldSkip(frame(6)));
+
+		// a plain text message can't be followed.
+		mirror.invalidate();
+		assertFalse(mirror.shouldSkip(frame(6)));
+		assertEquals(new BoardMirror.Stats(3, 1), mirror.getStats());
+	}
+
+	@Test
+	void restoresTheFrameSavedBeforeARestart() {
+		BoardMirror mirror = new BoardMirror();
+		mirror.seed(frame(7));
+
+		assertTrue(mirror.isSeeded());
+		assertTrue(mirror.shouldSkip(frame(7)));
+		assertFalse(mirror.shouldSkip(frame(8)));
+	}
+
+	@Test
+	void tellsTheListenerOutsideTheLock() {
+		BoardMirror mirror = new BoardMirror();
+		List<int[][]> saved = new ArrayList<>();
+		mirror.onUpdate(frame -> {
+			assertFalse(Thread.holdsLock(mirror));
+			saved.add(frame);
+		});
+
+		int[][] sent = frame(9);
+		mirror.update(sent);
+
+		assertEquals(1, saved.size());
+		assertNotSame(sent, saved.get(0));
+		assertArrayEquals(sent, saved.get(0));
+	}
+}
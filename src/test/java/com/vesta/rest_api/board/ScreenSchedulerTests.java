@@ -0,0 +1,204 @@
+package com.vesta.rest_api.board;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.vesta.rest_api.Vestaboard;
+import com.vesta.rest_api.Vestaboard.Outcome;
+import com.vesta.rest_api.board.ScreenScheduler.Slot;
+import com.vesta.rest_api.http.HttpTransport;
+import com.vesta.rest_api.ratelimit.RateLimiter;
+import com.vesta.rest_api.timer.ManualTimer;
+
+class ScreenSchedulerTests {
+
+	/**
+	 * Records frames instead of sending them.
+	 */
+	static class RecordingBoard extends Vestaboard {
+		final List<int[][]> frames = new CopyOnWriteArrayList<>();
+		/** How sending each frame goes. */
+		Outcome outcome = Outcome.SENT;
+		/** Run while a frame is being sent, if set. */
+		Runnable onSend;
+
+		RecordingBoard() {
+			super("key", new HttpTransport(1, 1, 100, 100, 100));
+		}
+
+		@Override
+		public LayoutResult sendLayout(int[][] layout) {
+			frames.add(layout);
+			if (onSend != null) {
+				onSend.run();
+			}
+			return new LayoutResult(outcome, outcome != Outcome.FAILED ? new HashMap<>() : null);
+		}
+	}
+
+	private final ManualTimer timer = new ManualTimer();
+	private final RecordingBoard board = new RecordingBoard();
+
+	@AfterEach
+	void closeTimer() {
+		timer.close();
+	}
+
+	private ScreenScheduler scheduler(long minDisplayMs) {
+		return scheduler(minDisplayMs, new RateLimiter(1000, 1000, 1000));
+	}
+
+	private ScreenScheduler scheduler(long minDisplayMs, RateLimiter budget) {
+		return new ScreenScheduler(board, 50, minDisplayMs, budget, timer, timer::now);
+	}
+
+	@Test
+	void collapsesABurstIntoOneWriteOfTheNewestFrame() {
+		ScreenScheduler scheduler = scheduler(0);
+
+		int[][] newest = new int[6][22];
+		for (int i = 0; i < 4; i++) {
+			scheduler.submit(Slot.NOW_PLAYING, new int[6][22]);
+		}
+		scheduler.submit(Slot.NEXT_UP, newest);
+		timer.advance(50);
+
+		assertEquals(1, board.frames.size());
+		assertSame(newest, board.frames.get(0));
+		assertEquals(4, scheduler.getStats().superseded());
+		assertEquals(1, scheduler.getStats().sent());
+	}
+
+	@Test
+	void holdsAFrameForTheMinimumDisplayTimeUnlessClearing() {
+		ScreenScheduler scheduler = scheduler(400);
+		int[][] first = new int[6][22];
+		int[][] second = new int[6][22];
+		int[][] blank = new int[6][22];
+
+		scheduler.submit(Slot.NOW_PLAYING, first);
+		timer.advance(200);
+		scheduler.submit(Slot.NOW_PLAYING, second);
+		timer.advance(150);
+		assertEquals(List.<int[][]>of(first), board.frames);
+
+		// logging out drops the song that was waiting.
+		scheduler.submit(Slot.CLEAR, blank);
+		timer.advance(100);
+		assertEquals(List.<int[][]>of(first, blank), board.frames);
+	}
+
+	@Test
+	void showsTheStateAgainAfterARequestConfirmation() {
+		ScreenScheduler scheduler = scheduler(200);
+		int[][] state = new int[6][22];
+		int[][] confirmation = new int[6][22];
+
+		scheduler.submit(Slot.NOW_PLAYING, state);
+		timer.advance(100);
+		scheduler.submit(Slot.REQUEST_CONFIRMATION, confirmation);
+		timer.advance(600);
+
+		assertEquals(List.<int[][]>of(state, confirmation, state), board.frames);
+	}
+
+	@Test
+	void holdsBackWritesBeyondTheBudget() {
+		// one write in a burst, then one every 15 seconds.
+		ScreenScheduler scheduler = scheduler(0, new RateLimiter(4, 4, 60_000));
+		int[][] first = new int[6][22];
+		int[][] second = new int[6][22];
+
+		scheduler.submit(Slot.NOW_PLAYING, first);
+		timer.advance(50);
+		scheduler.submit(Slot.NOW_PLAYING, second);
+		timer.advance(14_000);
+		assertEquals(List.<int[][]>of(first), board.frames);
+		assertEquals(1, scheduler.getStats().heldBack());
+		assertEquals(1, scheduler.getStats().pending());
+
+		timer.advance(2000);
+		assertEquals(List.<int[][]>of(first, second), board.frames);
+		assertEquals(2, scheduler.getStats().sent());
+	}
+
+	@Test
+	void sendsAFrameAgainIfTheBoardDidNotAcceptIt() {
+		ScreenScheduler scheduler = scheduler(0);
+		int[][] state = new int[6][22];
+
+		board.outcome = Outcome.FAILED;
+		scheduler.submit(Slot.NOW_PLAYING, state);
+		timer.advance(50);
+		assertEquals(0, scheduler.getStats().sent());
+		assertEquals(1, scheduler.getStats().failed());
+		assertEquals(1, scheduler.getStats().pending());
+
+		board.outcome = Outcome.SENT;
+		timer.advance(50);
+		assertEquals(List.<int[][]>of(state, state), board.frames);
+		assertEquals(1, scheduler.getStats().sent());
+		assertEquals(0, scheduler.getStats().pending());
+	}
+
+	@Test
+	void dropsAFailedFrameThatWasReplaced() {
+		ScreenScheduler scheduler = scheduler(0);
+		int[][] stale = new int[6][22];
+		int[][] newer = new int[6][22];
+
+		// the next up changes while the song is being sent, and the send fails.
+		board.outcome = Outcome.FAILED;
+		board.onSend = () -> {
+			board.onSend = null;
+			scheduler.submit(Slot.NEXT_UP, newer);
+		};
+		scheduler.submit(Slot.NOW_PLAYING, stale);
+		timer.advance(50);
+
+		board.outcome = Outcome.SENT;
+		timer.advance(50);
+		assertEquals(List.<int[][]>of(stale, newer), board.frames);
+		assertEquals(0, scheduler.getStats().pending());
+	}
+
+	@Test
+	void dropsAFrameTheBoardRefused() {
+		ScreenScheduler scheduler = scheduler(0);
+		int[][] state = new int[6][22];
+
+		board.outcome = Outcome.REJECTED;
+		scheduler.submit(Slot.NOW_PLAYING, state);
+		timer.advance(1000);
+
+		assertEquals(List.<int[][]>of(state), board.frames);
+		assertEquals(1, scheduler.getStats().failed());
+		assertEquals(0, scheduler.getStats().pending());
+	}
+
+	@Test
+	void doesNotCountAFrameThatWasAlreadyUp() {
+		// one write in a burst, so a frame that wasn't written must give it back.
+		ScreenScheduler scheduler = scheduler(1000, new RateLimiter(4, 4, 60_000));
+		int[][] same = new int[6][22];
+		int[][] next = new int[6][22];
+
+		board.outcome = Outcome.UNCHANGED;
+		scheduler.submit(Slot.NOW_PLAYING, same);
+		timer.advance(50);
+		board.outcome = Outcome.SENT;
+		scheduler.submit(Slot.NOW_PLAYING, next);
+		timer.advance(50);
+
+		assertEquals(List.<int[][]>of(same, next), board.frames);
+		assertEquals(1, scheduler.getStats().sent());
+		assertEquals(0, scheduler.getStats().heldBack());
+	}
+}
@@ -0,0 +1,115 @@
+package com.vesta.rest_api.cache;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.vesta.rest_api.Song;
+import com.vesta.rest_api.StateResponse;
+
+class StateJournalTests {
+
+	@TempDir
+	Path dir;
+
+	private static int[][] frame(int code) {
+		int[][] frame = new int[6][22];
+		frame[1][2] = code;
+		return frame;
+	}
+
+	@Test
+	void latestRecordsSurviveARestart() throws IOException {
+		String path = dir.resolve("state.journal").toString();
+		StateResponse state = new StateResponse(true, "User", true,
+				new Song("Hey Jude", "The Beatles", "https://i.scdn.co/image/1", "id-1"),
+				new Song("Let It Be", "The Beatles", null, "id-2"));
+		try (StateJournal journal = new StateJournal(path)) {
+			journal.writeRefreshToken("old-token");
+			journal.writeRefreshToken("new-token");
+			journal.writeState(new StateResponse(true, "User", false, null, null));
+			journal.writeState(state);
+			journal.writeFrame(frame(5));
+		}
+
+		try (StateJournal restarted = new StateJournal(path)) {
+			assertEquals("new-token", restarted.getRefreshToken());
+			assertEquals(state, restarted.getState());
+			assertArrayEquals(frame(5), restarted.getFrame());
+
+			// logging out clears the token for the next start.
+			restarted.writeRefreshToken(null);
+		}
+		try (StateJournal restarted = new StateJournal(path)) {
+			assertNull(restarted.getRefreshToken());
+		}
+	}
+
+	@Test
+	void compactsToTheLatestRecords() throws IOException {
+		String path = dir.resolve("state.journal").toString();
+		try (StateJournal journal = new StateJournal(path)) {
+			journal.writeRefreshToken("token");
+			for (int i = 0; i < 2000; i++) {
+				journal.writeFrame(frame(i % 60));
+			}
+		}
+
+		assertTrue(new File(path).length() < StateJournal.COMPACT_BYTES);
+		try (StateJournal restarted = new StateJournal(path)) {
+			assertEquals("token", restarted.getRefreshToken());
+			assertArrayEquals(frame(1999 % 60), restarted.getFrame());
+		}
+	}
+
+	@Test
+	void dropsAPartialRecord() throws IOException {
+		String path = dir.resolve("state.journal").toString();
+		try (StateJournal journal = new StateJournal(path)) {
+			journal.writeRefreshToken("token");
+			journal.writeFrame(frame(7));
+		}
+		try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+			file.setLength(file.length() - 10);
+		}
+
+		try (StateJournal restarted = new StateJournal(path)) {
+			assertEquals("token", restarted.getRefreshToken());
+			assertNull(restarted.getFrame());
+		}
+	}
+
+	@Test
+	void onlyTheOwnerCanReadTheJournal() throws IOException {
+		assumeTrue(dir.getFileSystem().supportedFileAttributeViews().contains("posix"));
+		Path path = dir.resolve("state.journal");
+		try (StateJournal journal = new StateJournal(path.toString())) {
+			journal.writeRefreshToken("token");
+			assertEquals(StateJournal.OWNER_ONLY, Files.getPosixFilePermissions(path));
+
+			// the compacted file replaces the journal, so it's owner only too.
+			for (int i = 0; i < 2000; i++) {
+				journal.writeFrame(frame(i % 60));
+			}
+			assertEquals(StateJournal.OWNER_ONLY, Files.getPosixFilePermissions(path));
+		}
+
+		// a journal written before the permissions were set is tightened.
+		Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-r--r--"));
+		try (StateJournal restarted = new StateJournal(path.toString())) {
+			assertEquals(StateJournal.OWNER_ONLY, Files.getPosixFilePermissions(path));
+		}
+	}
+}
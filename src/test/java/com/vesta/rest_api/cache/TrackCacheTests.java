@@ -0,0 +1,57 @@
+package com.vesta.rest_api.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TrackCacheTests {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void evictsLeastRecentlyUsedTrack() {
+		TrackCache cache = new TrackCache(2, null);
+		cache.put(new TrackMetadata("a", "A", "Artist", null));
+		cache.put(new TrackMetadata("b", "B", "Artist", null));
+		cache.get("a");
+		cache.put(new TrackMetadata("c", "C", "Artist", null));
+
+		assertNull(cache.get("b"));
+		assertEquals("A", cache.get("a").title());
+		assertEquals(new TrackCache.Stats(2, 0, 1, 2), cache.getStats());
+	}
+
+	@Test
+	void skipsTracksWithoutAnId() {
+		String path = dir.resolve("tracks.dat").toString();
+		TrackCache cache = new TrackCache(8, new TrackStore(path));
+
+		// local files come back from Spotify without an ID.
+		cache.put(new TrackMetadata(null, "Demo", "Band", null));
+
+		assertEquals(new TrackCache.Stats(0, 0, 0, 0), cache.getStats());
+		List<TrackMetadata> stored = new ArrayList<>();
+		new TrackStore(path).forEach(stored::add);
+		assertEquals(List.of(), stored);
+	}
+
+	@Test
+	void tracksSurviveARestart() {
+		String path = dir.resolve("tracks.dat").toString();
+		TrackCache cache = new TrackCache(8, new TrackStore(path));
+		cache.put(new TrackMetadata("id", "Hey Jude", "The Beatles", "https://i.scdn.co/image/1"));
+
+		TrackCache restarted = new TrackCache(8, new TrackStore(path));
+
+		assertEquals("The Beatles", restarted.get("id").artist());
+		assertEquals("Hey Jude", restarted.get("id").title());
+		assertEquals(new TrackCache.Stats(1, 1, 0, 1), restarted.getStats());
+	}
+}
@@ -0,0 +1,59 @@
+package com.vesta.rest_api.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TrackCatalogTests {
+
+	private static final TrackMetadata DONT_STOP = new TrackMetadata("1", "Don't Stop Me Now - Remastered 2011",
+			"Queen", null);
+	private static final TrackMetadata STOP = new TrackMetadata("2", "Stop", "Spice Girls", null);
+	private static final TrackMetadata STOP_LIVE = new TrackMetadata("3", "Stop", "Jane's Addiction", null);
+	private static final TrackMetadata BOHEMIAN = new TrackMetadata("4", "Bohemian Rhapsody", "Queen", null);
+
+	private TrackCatalog catalog() {
+		TrackCatalog catalog = new TrackCatalog();
+		for (TrackMetadata track : List.of(DONT_STOP, STOP, STOP_LIVE, BOHEMIAN)) {
+			catalog.add(track);
+		}
+		return catalog;
+	}
+
+	@Test
+	void searchesByWordPrefixes() {
+		TrackCatalog catalog = catalog();
+
+		assertEquals(List.of(STOP_LIVE, STOP, DONT_STOP), catalog.search("sto", 10));
+		assertEquals(List.of(DONT_STOP), catalog.search("queen don't", 10));
+		assertEquals(List.of(BOHEMIAN, DONT_STOP), catalog.search("QUE", 10));
+		assertEquals(List.of(STOP_LIVE), catalog.search("sto", 1));
+		assertEquals(List.of(), catalog.search("  !", 10));
+	}
+
+	@Test
+	void findsRequestsWithoutVersionTags() {
+		TrackCatalog catalog = catalog();
+
+		assertEquals(DONT_STOP, catalog.find("dont stop me now", "QUEEN"));
+		assertEquals(BOHEMIAN, catalog.find("Bohemian Rhapsody", ""));
+		// two different songs called Stop, Spotify has to pick one.
+		assertNull(catalog.find("Stop", null));
+		assertEquals(STOP, catalog.find("Stop", "Spice Girls"));
+		assertEquals(3, catalog.getStats().hits());
+	}
+
+	@Test
+	void reindexesARenamedTrack() {
+		TrackCatalog catalog = catalog();
+		TrackMetadata renamed = new TrackMetadata("4", "Killer Queen", "Queen", null);
+		catalog.add(renamed);
+
+		assertEquals(List.of(), catalog.search("bohemian", 10));
+		assertEquals(List.of(renamed), catalog.search("killer", 10));
+		assertEquals(4, catalog.getStats().tracks());
+	}
+}
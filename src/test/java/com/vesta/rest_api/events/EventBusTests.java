@@ -0,0 +1,68 @@
+package com.vesta.rest_api.events;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class EventBusTests {
+
+	@Test
+	void routesEventsByType() throws InterruptedException {
+		EventBus bus = new EventBus(1, 4);
+		List<ObservableEvents> received = new CopyOnWriteArrayList<>();
+		CountDownLatch latch = new CountDownLatch(1);
+		bus.subscribe(event -> {
+			received.add(event.getType());
+			latch.countDown();
+		}, ObservableEvents.LOGOUT);
+
+		bus.publish(new EventPayload<Void>(ObservableEvents.NEW_SONG));
+		bus.publish(new EventPayload<Void>(ObservableEvents.LOGOUT));
+
+		assertTrue(latch.await(1, TimeUnit.SECONDS));
+		assertEquals(List.of(ObservableEvents.LOGOUT), received);
+		bus.close();
+	}
+
+	@Test
+	void aSlowObserverDoesNotBlockPublishing() throws InterruptedException {
+		EventBus bus = new EventBus(2, 4);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch fastDone = new CountDownLatch(1);
+		bus.subscribe(event -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		bus.subscribe(event -> {
+			if (Integer.valueOf(19).equals(event.getPayload())) {
+				fastDone.countDown();
+			}
+		});
+
+		bus.publish(new EventPayload<Void>(ObservableEvents.NEW_SONG));
+		assertTrue(started.await(1, TimeUnit.SECONDS));
+		long start = System.nanoTime();
+		for (int i = 1; i < 20; i++) {
+			bus.publish(new EventPayload<Integer>(ObservableEvents.NEW_SONG, i));
+		}
+		long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertTrue(elapsedMs < 500);
+		assertTrue(fastDone.await(1, TimeUnit.SECONDS));
+		// the slow observer holds one event and keeps only the newest four queued.
+		assertTrue(bus.getStats().dropped() >= 15);
+		release.countDown();
+		bus.close();
+	}
+}
@@ -0,0 +1,112 @@
+package com.vesta.rest_api.history;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.vesta.rest_api.Song;
+import com.vesta.rest_api.history.PlayHistory.Count;
+import com.vesta.rest_api.history.PlayHistory.Stats;
+
+class PlayHistoryTests {
+
+	private static final Song HEY_JUDE = new Song("Hey Jude", "The Beatles", null, "1");
+	private static final Song LET_IT_BE = new Song("Let It Be", "The Beatles", null, "2");
+	private static final Song HALO = new Song("Halo", "Beyonc\u00E9", null, "3");
+
+	/** 10:00 UTC. */
+	private static final long TEN_AM = 36_000_000L;
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void keepsStatsAcrossARestart() {
+		String path = dir.resolve("plays.log").toString();
+		try (PlayHistory history = new PlayHistory(path, ZoneOffset.UTC)) {
+			history.recordRequest(HALO);
+			history.recordPlay(HEY_JUDE, TEN_AM);
+			history.recordPlay(HALO, TEN_AM + 60_000);
+			history.recordPlay(HEY_JUDE, TEN_AM + 3_600_000);
+			history.recordRequest(LET_IT_BE);
+		}
+
+		try (PlayHistory restarted = new PlayHistory(path, ZoneOffset.UTC)) {
+			// a request from before the restart still counts when it plays, one that already played doesn't.
+			restarted.recordPlay(LET_IT_BE, TEN_AM + 7_200_000);
+			restarted.recordPlay(HALO, TEN_AM + 7_300_000);
+			Stats stats = restarted.getStats(2);
+
+			assertEquals(5, stats.plays());
+			assertEquals(3, stats.tracks());
+			assertEquals(2, stats.artists());
+			assertEquals(List.of(new Count(null, "The Beatles", 3), new Count(null, "Beyonc\u00E9", 2)),
+					stats.topArtists());
+			// a tie goes to the track seen first, Halo was requested before anything played.
+			assertEquals(List.of(new Count("Halo", "Beyonc\u00E9", 2), new Count("Hey Jude", "The Beatles", 2)),
+					stats.topTracks());
+			assertEquals(2, stats.playsByHour()[10]);
+			assertEquals(1, stats.playsByHour()[11]);
+			assertEquals(2, stats.playsByHour()[12]);
+			assertEquals(2, stats.requests());
+			assertEquals(2, stats.requestsPlayed());
+			assertEquals(1.0, stats.requestHitRate());
+		}
+	}
+
+	@Test
+	void growsPastOneMappedSegment() {
+		String path = dir.resolve("plays.log").toString();
+		int plays = 70_000;
+		try (PlayHistory history = new PlayHistory(path, ZoneOffset.UTC)) {
+			for (int i = 0; i < plays; i++) {
+				history.recordPlay(i % 2 == 0 ? HEY_JUDE : HALO, TEN_AM);
+			}
+		}
+
+		try (PlayHistory restarted = new PlayHistory(path, ZoneOffset.UTC)) {
+			Stats stats = restarted.getStats(1);
+			assertEquals(plays, stats.plays());
+			assertEquals(List.of(new Count("Hey Jude", "The Beatles", plays / 2)), stats.topTracks());
+		}
+	}
+
+	@Test
+	void leavesAFileThatIsNotAPlayHistoryAlone() throws Exception {
+		Path path = dir.resolve("plays.log");
+		byte[] notes = "Songs to play at the party, in no particular order.".getBytes(StandardCharsets.UTF_8);
+		Files.write(path, notes);
+
+		try (PlayHistory history = new PlayHistory(path.toString(), ZoneOffset.UTC)) {
+			history.recordPlay(HEY_JUDE, TEN_AM);
+			// still counted, just not written.
+			assertEquals(1, history.getStats(1).plays());
+		}
+		assertArrayEquals(notes, Files.readAllBytes(path));
+		assertFalse(Files.exists(dir.resolve("plays.log.dict")));
+	}
+
+	@Test
+	void leavesALogWithADifferentRecordSizeAlone() throws Exception {
+		Path path = dir.resolve("plays.log");
+		// written by a version with 32 byte records, holding one play.
+		byte[] log = ByteBuffer.allocate(16 + 32).putInt(0x56504831).putInt(32).putLong(1).array();
+		Files.write(path, log);
+
+		try (PlayHistory history = new PlayHistory(path.toString(), ZoneOffset.UTC)) {
+			assertEquals(0, history.getStats(1).plays());
+			history.recordPlay(HEY_JUDE, TEN_AM);
+		}
+		assertArrayEquals(log, Files.readAllBytes(path));
+	}
+}
@@ -0,0 +1,120 @@
+package com.vesta.rest_api.load;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.StringJoiner;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import com.vesta.rest_api.patterns.SpotifyUserSingleton;
+import com.vesta.rest_api.ratelimit.RateLimiter;
+import com.vesta.rest_api.timer.HashedWheelTimer;
+
+import se.michaelthelin.spotify.SpotifyApi;
+
+/**
+ * Stands in for the Spotify Web API endpoints the service uses, the player,
+ * queue, track, search and profile endpoints.
+ *
+ * Playback follows a script, the user listens to the tracks in order, moving
+ * on to the next one every so often, and the next track of the script is
+ * always next in the queue.
+ */
+class FakeSpotifyServer extends StandInServer {
+
+	private final List<String> script;
+	private final long changeEveryMs;
+	private final long startedAt = System.currentTimeMillis();
+
+	/**
+	 * @param script        The IDs of the tracks played, in order, repeating.
+	 * @param changeEveryMs How long each track plays for.
+	 */
+	FakeSpotifyServer(List<String> script, long changeEveryMs) throws IOException {
+		this.script = script;
+		this.changeEveryMs = changeEveryMs;
+
+		route("/v1/me/player/currently-playing", exchange -> respond(exchange, 200, currentlyPlaying()));
+		route("/v1/me/player/queue", exchange -> {
+			if ("POST".equals(exchange.getRequestMethod())) {
+				respond(exchange, 204, null);
+			} else {
+				respond(exchange, 200, "{\"currently_playing\":" + track(playing()) + ",\"queue\":["
+						+ track(upNext()) + "]}");
+			}
+		});
+		route("/v1/me/player", exchange -> respond(exchange, 200, currentlyPlaying()));
+		route("/v1/me", exchange -> respond(exchange, 200,
+				"{\"id\":\"load\",\"display_name\":\"Load Test\",\"type\":\"user\",\"uri\":\"spotify:user:load\"}"));
+		route("/v1/tracks", this::tracks);
+		route("/v1/search", exchange -> respond(exchange, 200, "{\"tracks\":{\"href\":\"\",\"items\":["
+				+ track(upNext()) + "],\"limit\":1,\"offset\":0,\"total\":1}}"));
+		start();
+	}
+
+	/**
+	 * A user of an API pointed at this server, already logged in.
+	 *
+	 * The library always sends token requests to accounts.spotify.com, so
+	 * rather than logging in the user is handed a token up front.
+	 */
+	SpotifyUserSingleton newUser(RateLimiter rateLimiter, HashedWheelTimer timer) {
+		SpotifyApi api = new SpotifyApi.Builder()
+				.setScheme("http")
+				.setHost("127.0.0.1")
+				.setPort(getPort())
+				.setAccessToken("load-test-token")
+				.build();
+		return SpotifyUserSingleton.forApi(api, rateLimiter, timer);
+	}
+
+	private int position() {
+		return (int) ((System.currentTimeMillis() - startedAt) / changeEveryMs);
+	}
+
+	private String playing() {
+		return script.get(position() % script.size());
+	}
+
+	private String upNext() {
+		return script.get((position() + 1) % script.size());
+	}
+
+	private String currentlyPlaying() {
+		long progress = (System.currentTimeMillis() - startedAt) % changeEveryMs;
+		return "{\"timestamp\":0,\"progress_ms\":" + progress + ",\"is_playing\":true,"
+				+ "\"currently_playing_type\":\"track\",\"item\":" + track(playing()) + "}";
+	}
+
+	/**
+	 * /v1/tracks/{id} and /v1/tracks?ids=a,b.
+	 */
+	private void tracks(HttpExchange exchange) throws IOException {
+		String path = exchange.getRequestURI().getPath();
+		String query = exchange.getRequestURI().getQuery();
+		if (path.length() > "/v1/tracks/".length()) {
+			respond(exchange, 200, track(path.substring("/v1/tracks/".length())));
+			return;
+		}
+		StringJoiner tracks = new StringJoiner(",", "{\"tracks\":[", "]}");
+		String ids = query != null && query.startsWith("ids=") ? query.substring(4) : "";
+		for (String id : ids.split(",")) {
+			if (!id.isEmpty()) {
+				tracks.add(track(id));
+			}
+		}
+		respond(exchange, 200, tracks.toString());
+	}
+
+	private long duration() {
+		return Math.max(changeEveryMs, 1000);
+	}
+
+	private String track(String id) {
+		return "{\"id\":\"" + id + "\",\"type\":\"track\",\"uri\":\"spotify:track:" + id + "\","
+				+ "\"name\":\"Track " + id + "\",\"duration_ms\":" + duration() + ","
+				+ "\"artists\":[{\"name\":\"Artist " + id + "\",\"type\":\"artist\"}],"
+				+ "\"album\":{\"name\":\"Album " + id + "\",\"images\":[{\"url\":\"https://example.com/" + id
+				+ ".jpg\"}]}}";
+	}
+}
@@ -0,0 +1,50 @@
+package com.vesta.rest_api.load;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stands in for the Vestaboard read-write API under /rw/ and the VBML API
+ * under /vbml/, see {@link RedirectingTransport}.
+ */
+class FakeVestaboardServer extends StandInServer {
+	private static final String BLANK_LAYOUT;
+
+	static {
+		StringBuilder layout = new StringBuilder("[");
+		for (int row = 0; row < 6; row++) {
+			layout.append(row > 0 ? ",[" : "[");
+			for (int column = 0; column < 22; column++) {
+				layout.append(column > 0 ? ",0" : "0");
+			}
+			layout.append(']');
+		}
+		BLANK_LAYOUT = layout.append(']').toString();
+	}
+
+	private final AtomicLong writes = new AtomicLong();
+
+	FakeVestaboardServer() throws IOException {
+		route("/rw/", exchange -> {
+			if ("POST".equals(exchange.getRequestMethod())) {
+				writes.incrementAndGet();
+				exchange.getRequestBody().readAllBytes();
+				respond(exchange, 200, "{\"status\":\"ok\"}");
+			} else {
+				respond(exchange, 200, "{\"currentMessage\":{\"layout\":\"" + BLANK_LAYOUT + "\"}}");
+			}
+		});
+		route("/vbml/", exchange -> {
+			exchange.getRequestBody().readAllBytes();
+			respond(exchange, 200, BLANK_LAYOUT);
+		});
+		start();
+	}
+
+	/**
+	 * @return Layouts and messages written to the board.
+	 */
+	long getWrites() {
+		return writes.get();
+	}
+}
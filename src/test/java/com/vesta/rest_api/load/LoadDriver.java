@@ -0,0 +1,157 @@
+package com.vesta.rest_api.load;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongSupplier;
+
+/**
+ * Sends requests to one endpoint of the service from several clients at once
+ * for a while, and reports how it held up.
+ */
+class LoadDriver {
+
+	/**
+	 * How one endpoint held up.
+	 *
+	 * @param path               The endpoint.
+	 * @param requests           Requests answered, including errors.
+	 * @param errors             Requests that failed or weren't answered with a
+	 *                           2xx or 304.
+	 * @param throughput         Requests answered per second.
+	 * @param p50Ms              Median latency.
+	 * @param p99Ms              99th percentile latency.
+	 * @param outboundPerRequest Requests the service made to the stand-ins per
+	 *                           request it answered, background polling
+	 *                           included.
+	 */
+	record Report(String path, long requests, long errors, double throughput, double p50Ms, double p99Ms,
+			double outboundPerRequest) {
+
+		@Override
+		public String toString() {
+			return String.format("%-40s %8d req %5d err %9.1f req/s  p50 %7.2fms  p99 %7.2fms  %5.2f outbound/req",
+					path, requests, errors, throughput, p50Ms, p99Ms, outboundPerRequest);
+		}
+	}
+
+	private final String baseUrl;
+	private final int clients;
+	private final long warmupMs;
+	private final long durationMs;
+	private final LongSupplier outboundCalls;
+	private final HttpClient http = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_1_1)
+			.connectTimeout(Duration.ofSeconds(5))
+			.build();
+
+	/**
+	 * @param baseUrl       The address of the service.
+	 * @param clients       How many clients send requests at once.
+	 * @param warmupMs      How long to send requests before measuring.
+	 * @param durationMs    How long to measure for.
+	 * @param outboundCalls Counts the requests made to the stand-ins.
+	 */
+	LoadDriver(String baseUrl, int clients, long warmupMs, long durationMs, LongSupplier outboundCalls) {
+		this.baseUrl = baseUrl;
+		this.clients = clients;
+		this.warmupMs = warmupMs;
+		this.durationMs = durationMs;
+		this.outboundCalls = outboundCalls;
+	}
+
+	Report run(String path) throws Exception {
+		URI uri = URI.create(baseUrl + path);
+		drive(uri, warmupMs);
+
+		long outboundBefore = outboundCalls.getAsLong();
+		long start = System.nanoTime();
+		List<Client> results = drive(uri, durationMs);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long outbound = outboundCalls.getAsLong() - outboundBefore;
+
+		long errors = 0;
+		int count = 0;
+		for (Client client : results) {
+			errors += client.errors;
+			count += client.count;
+		}
+		long[] latencies = new long[count];
+		int offset = 0;
+		for (Client client : results) {
+			System.arraycopy(client.latencies, 0, latencies, offset, client.count);
+			offset += client.count;
+		}
+		Arrays.sort(latencies);
+		return new Report(path, count, errors, count / seconds, percentile(latencies, 0.50),
+				percentile(latencies, 0.99), count > 0 ? (double) outbound / count : 0);
+	}
+
+	private List<Client> drive(URI uri, long forMs) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(clients);
+		try {
+			long deadline = System.nanoTime() + forMs * 1_000_000;
+			List<Future<Client>> futures = new ArrayList<>();
+			for (int i = 0; i < clients; i++) {
+				futures.add(pool.submit(() -> new Client().drive(uri, deadline)));
+			}
+			List<Client> results = new ArrayList<>();
+			for (Future<Client> future : futures) {
+				results.add(future.get());
+			}
+			return results;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static double percentile(long[] sortedNanos, double percentile) {
+		if (sortedNanos.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+		return sortedNanos[Math.max(0, index)] / 1e6;
+	}
+
+	/**
+	 * One client sending requests one after the other.
+	 */
+	private final class Client {
+		long[] latencies = new long[1024];
+		int count;
+		long errors;
+
+		Client drive(URI uri, long deadline) throws InterruptedException {
+			HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(10)).GET().build();
+			while (System.nanoTime() < deadline) {
+				long start = System.nanoTime();
+				try {
+					int status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+					if (status != 304 && (status < 200 || status >= 300)) {
+						errors++;
+					}
+				} catch (IOException e) {
+					errors++;
+				}
+				record(System.nanoTime() - start);
+			}
+			return this;
+		}
+
+		private void record(long latency) {
+			if (count == latencies.length) {
+				latencies = Arrays.copyOf(latencies, count * 2);
+			}
+			latencies[count++] = latency;
+		}
+	}
+}
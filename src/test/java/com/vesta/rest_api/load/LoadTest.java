@@ -0,0 +1,105 @@
+package com.vesta.rest_api.load;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import com.vesta.rest_api.http.HttpTransport;
+import com.vesta.rest_api.patterns.SpotifyUserSingleton;
+import com.vesta.rest_api.ratelimit.RateLimiter;
+import com.vesta.rest_api.timer.HashedWheelTimer;
+
+/**
+ * Loads the whole service, running against stand-ins for Spotify, the board
+ * and VBML instead of the real APIs.
+ *
+ * Tagged "load" so it only runs with the load profile, e.g.
+ * {@code ./mvnw test -Pload -Dload.clients=32 -Dload.latency-ms=50}. The
+ * load.* properties set the number of clients, how long each endpoint is
+ * loaded, the latency of the stand-ins and how often Spotify answers with a
+ * 429.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT,
+		properties = { "vestaboard.journal.path=target/load-test/state.journal",
+				"vestaboard.history.path=target/load-test/plays.log" })
+class LoadTest {
+	private static final int CLIENTS = Integer.getInteger("load.clients", 16);
+	private static final long WARMUP_MS = Long.getLong("load.warmup-ms", 2_000);
+	private static final long DURATION_MS = Long.getLong("load.duration-ms", 10_000);
+	private static final long LATENCY_MS = Long.getLong("load.latency-ms", 20);
+	private static final int TOO_MANY_REQUESTS_EVERY = Integer.getInteger("load.429-every", 0);
+	/** How long each track of the script plays for. */
+	private static final long TRACK_MS = Long.getLong("load.track-ms", 3_000);
+
+	@TestConfiguration
+	static class StandIns {
+
+		@Bean(destroyMethod = "close")
+		FakeSpotifyServer fakeSpotify() throws IOException {
+			FakeSpotifyServer spotify = new FakeSpotifyServer(List.of("track-a", "track-b", "track-c"), TRACK_MS);
+			spotify.setLatencyMs(LATENCY_MS);
+			spotify.setTooManyRequestsEvery(TOO_MANY_REQUESTS_EVERY, 1);
+			return spotify;
+		}
+
+		@Bean(destroyMethod = "close")
+		FakeVestaboardServer fakeVestaboard() throws IOException {
+			FakeVestaboardServer board = new FakeVestaboardServer();
+			board.setLatencyMs(LATENCY_MS);
+			return board;
+		}
+
+		/** The same limits as the real user, so the limiter is loaded too. */
+		@Bean
+		@Primary
+		SpotifyUserSingleton loadTestUser(FakeSpotifyServer spotify, HashedWheelTimer timer) {
+			return spotify.newUser(new RateLimiter(90, 300, 30_000), timer);
+		}
+
+		@Bean(destroyMethod = "close")
+		@Primary
+		HttpTransport loadTestTransport(FakeVestaboardServer board) {
+			return new RedirectingTransport(board);
+		}
+	}
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private FakeSpotifyServer spotify;
+
+	@Autowired
+	private FakeVestaboardServer board;
+
+	@Test
+	void reportsThroughputLatencyAndOutboundCalls() throws Exception {
+		LoadDriver driver = new LoadDriver("http://127.0.0.1:" + port, CLIENTS, WARMUP_MS, DURATION_MS,
+				() -> spotify.getRequests() + board.getRequests());
+
+		System.out.println("Load test, " + CLIENTS + " clients, " + LATENCY_MS + "ms stand-in latency");
+		for (String path : List.of("/current", "/auth_status", "/request_song?title=Track&artist=Artist")) {
+			LoadDriver.Report report = driver.run(path);
+			System.out.println(report);
+
+			assertTrue(report.requests() > 0, path + " wasn't answered");
+			assertEquals(0, report.errors(), path + " had errors");
+		}
+		System.out.println("Spotify stand-in: " + spotify.getRequests() + " requests, "
+				+ spotify.getTooManyRequests() + " answered with a 429. Board stand-in: " + board.getRequests()
+				+ " requests, " + board.getWrites() + " writes.");
+	}
+}
@@ -0,0 +1,42 @@
+package com.vesta.rest_api.load;
+
+import java.io.IOException;
+import java.util.Map;
+
+import com.vesta.rest_api.http.HttpResult;
+import com.vesta.rest_api.http.HttpTransport;
+
+/**
+ * A transport that sends requests for the Vestaboard and VBML APIs to a
+ * {@link FakeVestaboardServer} instead.
+ */
+class RedirectingTransport extends HttpTransport {
+	private static final String VESTABOARD = "https://rw.vestaboard.com/";
+	private static final String VBML = "https://vbml.vestaboard.com/";
+
+	private final String baseUrl;
+
+	RedirectingTransport(FakeVestaboardServer server) {
+		super(50, 50, 5000, 10000, 30000);
+		this.baseUrl = server.getBaseUrl();
+	}
+
+	@Override
+	public HttpResult get(String url, Map<String, String> headers) throws IOException {
+		return super.get(redirect(url), headers);
+	}
+
+	@Override
+	public HttpResult postJson(String url, Map<String, String> headers, String json) throws IOException {
+		return super.postJson(redirect(url), headers, json);
+	}
+
+	private String redirect(String url) {
+		if (url.startsWith(VESTABOARD)) {
+			return baseUrl + "/rw/" + url.substring(VESTABOARD.length());
+		} else if (url.startsWith(VBML)) {
+			return baseUrl + "/vbml/" + url.substring(VBML.length());
+		}
+		throw new IllegalArgumentException("Not redirecting " + url + " during a load test");
+	}
+}
@@ -0,0 +1,136 @@
+package com.vesta.rest_api.load;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local HTTP server standing in for an outside API.
+ *
+ * Every response can be delayed by a fixed latency, and every nth request can
+ * be answered with a 429 instead, so the service can be loaded without
+ * touching the real APIs.
+ */
+abstract class StandInServer implements AutoCloseable {
+
+	/**
+	 * Answers a request that got past the latency and 429 injection.
+	 */
+	@FunctionalInterface
+	interface Handler {
+		void handle(HttpExchange exchange) throws IOException;
+	}
+
+	static {
+		// otherwise small responses wait on Nagle's algorithm, adding ~40ms to every request.
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	private volatile long latencyMs;
+	private volatile int tooManyRequestsEvery;
+	private volatile int retryAfterSeconds = 1;
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong tooManyRequests = new AtomicLong();
+
+	StandInServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(executor);
+	}
+
+	/**
+	 * Must be called once the routes are added.
+	 */
+	protected void start() {
+		server.start();
+	}
+
+	protected void route(String path, Handler handler) {
+		server.createContext(path, exchange -> {
+			try {
+				long request = requests.incrementAndGet();
+				if (latencyMs > 0) {
+					Thread.sleep(latencyMs);
+				}
+				int every = tooManyRequestsEvery;
+				if (every > 0 && request % every == 0) {
+					tooManyRequests.incrementAndGet();
+					exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+					respond(exchange, 429, "{\"error\":{\"status\":429,\"message\":\"API rate limit exceeded\"}}");
+					return;
+				}
+				handler.handle(exchange);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				exchange.close();
+			}
+		});
+	}
+
+	protected static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		if (body == null) {
+			exchange.sendResponseHeaders(status, -1);
+			return;
+		}
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * @return The address of the server, without a trailing slash.
+	 */
+	String getBaseUrl() {
+		return "http://127.0.0.1:" + getPort();
+	}
+
+	int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Delay every response.
+	 */
+	void setLatencyMs(long latencyMs) {
+		this.latencyMs = latencyMs;
+	}
+
+	/**
+	 * Answer every nth request with a 429, 0 turns it off.
+	 */
+	void setTooManyRequestsEvery(int every, int retryAfterSeconds) {
+		this.tooManyRequestsEvery = every;
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	/**
+	 * @return Requests received, including those answered with a 429.
+	 */
+	long getRequests() {
+		return requests.get();
+	}
+
+	long getTooManyRequests() {
+		return tooManyRequests.get();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,57 @@
+package com.vesta.rest_api.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import com.vesta.rest_api.http.HttpResult;
+import com.vesta.rest_api.ratelimit.RateLimitedException;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CallMetricsTests {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final CallMetrics metrics = new CallMetrics(registry, "test.requests", "endpoint");
+
+	private long count(String endpoint, String outcome) {
+		return registry.get("test.requests").tags("endpoint", endpoint, "outcome", outcome).timer().count();
+	}
+
+	@Test
+	void tagsResponsesByStatus() throws IOException {
+		metrics.record("send", () -> new HttpResult(200, "{}"));
+		metrics.record("send", () -> new HttpResult(200, "{}"));
+		metrics.record("send", () -> new HttpResult(429, null));
+		metrics.record("send", () -> new HttpResult(503, null));
+
+		assertEquals(2, count("send", CallMetrics.SUCCESS));
+		assertEquals(1, count("send", CallMetrics.TOO_MANY_REQUESTS));
+		assertEquals(1, count("send", CallMetrics.SERVER_ERROR));
+	}
+
+	@Test
+	void exportsOnlyTheFixedBuckets() throws IOException {
+		metrics.record("send", () -> new HttpResult(200, "{}"));
+
+		Timer timer = registry.get("test.requests").tags("endpoint", "send").timer();
+		assertEquals(CallMetrics.BUCKETS.length, timer.takeSnapshot().histogramCounts().length);
+	}
+
+	@Test
+	void tagsAndRethrowsFailures() {
+		assertThrows(RateLimitedException.class, () -> metrics.record("queue", () -> {
+			throw new RateLimitedException("Rate limited", 100);
+		}));
+		assertThrows(IOException.class, () -> metrics.run("queue", () -> {
+			throw new IOException("Connection reset");
+		}));
+
+		assertEquals(1, count("queue", CallMetrics.RATE_LIMITED));
+		assertEquals(1, count("queue", CallMetrics.ERROR));
+	}
+}
@@ -0,0 +1,54 @@
+package com.vesta.rest_api.patterns;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.vesta.rest_api.Song;
+import com.vesta.rest_api.cache.TrackCache;
+import com.vesta.rest_api.ratelimit.RateLimiter;
+import com.vesta.rest_api.timer.HashedWheelTimer;
+
+import se.michaelthelin.spotify.SpotifyApi;
+import se.michaelthelin.spotify.model_objects.specification.AlbumSimplified;
+import se.michaelthelin.spotify.model_objects.specification.ArtistSimplified;
+import se.michaelthelin.spotify.model_objects.specification.Image;
+import se.michaelthelin.spotify.model_objects.specification.Track;
+
+class SpotifyUserSingletonTests {
+
+	private final HashedWheelTimer timer = new HashedWheelTimer(10, 64, 1);
+
+	@AfterEach
+	void closeTimer() {
+		timer.close();
+	}
+
+	private static Track track(String id, String title, String artist) {
+		return new Track.Builder()
+				.setId(id)
+				.setName(title)
+				.setArtists(new ArtistSimplified.Builder().setName(artist).build())
+				.setAlbum(new AlbumSimplified.Builder()
+						.setImages(new Image.Builder().setUrl("https://i.scdn.co/image/" + id).build())
+						.build())
+				.build();
+	}
+
+	@Test
+	void cachesFullTracksFromTheQueue() throws Exception {
+		SpotifyUserSingleton user = SpotifyUserSingleton.forApi(new SpotifyApi.Builder().build(),
+				new RateLimiter(100, 100, 1000), timer);
+
+		Song[] songs = user.toSongs(List.of(track("id-1", "Hey Jude", "The Beatles"),
+				track("id-2", "Let It Be", "The Beatles")));
+
+		assertEquals("Hey Jude", songs[0].getTitle());
+		assertEquals("https://i.scdn.co/image/id-2", songs[1].getAlbumArt());
+		// looking either up by ID later doesn't need a request.
+		assertEquals(new TrackCache.Stats(0, 0, 0, 2), user.getTrackCacheStats());
+	}
+}
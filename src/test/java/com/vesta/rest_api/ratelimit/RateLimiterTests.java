@@ -0,0 +1,51 @@
+package com.vesta.rest_api.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class RateLimiterTests {
+
+	@Test
+	void retryAfterBlocksEveryRequestWithoutSleeping() {
+		long now = System.currentTimeMillis();
+		RateLimiter limiter = new RateLimiter(40, 100, 30_000);
+		assertEquals(0, limiter.tryAcquire(now));
+
+		limiter.onRateLimited(5_000, now);
+
+		assertEquals(5_000, limiter.tryAcquire(now));
+		assertEquals(1_000, limiter.tryAcquire(now + 4_000));
+		assertEquals(0, limiter.tryAcquire(now + 5_000));
+	}
+
+	@Test
+	void lowersTheQuotaBelowWhatWasLetThrough() {
+		long now = System.currentTimeMillis();
+		RateLimiter limiter = new RateLimiter(40, 100, 30_000);
+		for (int i = 0; i < 10; i++) {
+			assertEquals(0, limiter.tryAcquire(now + i * 1_000));
+		}
+
+		limiter.onRateLimited(0, now + 10_000);
+
+		assertEquals(7, limiter.getStats().estimatedQuota());
+		// the window already holds more than the new quota, so wait for it to roll over.
+		assertTrue(limiter.tryAcquire(now + 10_000) > 0);
+	}
+
+	@Test
+	void givesBackATokenThatWasNotUsed() {
+		RateLimiter limiter = new RateLimiter(4, 4, 60_000);
+		// a moment after the limiter was created, so the bucket is full.
+		long now = System.currentTimeMillis() + 1_000;
+		assertEquals(0, limiter.tryAcquire(now));
+		assertTrue(limiter.tryAcquire(now) > 0);
+
+		limiter.release();
+
+		assertEquals(0, limiter.tryAcquire(now));
+		assertEquals(1, limiter.getStats().allowed());
+	}
+}
@@ -0,0 +1,105 @@
+package com.vesta.rest_api.requests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.vesta.rest_api.Song;
+import com.vesta.rest_api.requests.SongRequestQueue.Status;
+import com.vesta.rest_api.requests.SongRequestQueue.Ticket;
+
+class SongRequestQueueTests {
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final AtomicInteger searches = new AtomicInteger();
+
+	@AfterEach
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Holds every request until released, and doesn't find "Nothing".
+	 */
+	private Song search(String title, String artist) throws InterruptedException {
+		searches.incrementAndGet();
+		release.await(5, TimeUnit.SECONDS);
+		return title.equals("Nothing") ? null : new Song(title, artist, null, "id-" + title);
+	}
+
+	@Test
+	void coalescesIdenticalRequestsIntoOneSearch() throws Exception {
+		SongRequestQueue queue = new SongRequestQueue(executor, this::search, 8);
+
+		Ticket first = queue.submit("Don't Stop Me Now", "Queen");
+		Ticket same = queue.submit("dont stop me now!", " QUEEN ");
+		Ticket other = queue.submit("Nothing", "Queen");
+		assertEquals(first.id(), same.id());
+		assertNotEquals(first.id(), other.id());
+		assertEquals(Status.PENDING, queue.getTicket(first.id()).status());
+		assertEquals(2, queue.getTicket(first.id()).requesters());
+
+		release.countDown();
+		assertEquals(Status.QUEUED, queue.whenDone(first.id()).get(5, TimeUnit.SECONDS).status());
+		assertEquals(Status.NOT_FOUND, queue.whenDone(other.id()).get(5, TimeUnit.SECONDS).status());
+		assertEquals(2, searches.get());
+
+		// once done, asking again queues the song again and searches again for one that wasn't found.
+		Ticket again = queue.submit("Don't Stop Me Now", "Queen");
+		assertNotEquals(first.id(), again.id());
+		Ticket retry = queue.submit("Nothing", "Queen");
+		assertNotEquals(other.id(), retry.id());
+		queue.whenDone(retry.id()).get(5, TimeUnit.SECONDS);
+		assertEquals(4, searches.get());
+		assertEquals(1, queue.getStats().coalesced());
+	}
+
+	@Test
+	void coalescesWithAQueuedSongWithinTheDedupeWindow() throws Exception {
+		SongRequestQueue queue = new SongRequestQueue(executor, this::search, 8, 60_000);
+		release.countDown();
+
+		Ticket first = queue.submit("Don't Stop Me Now", "Queen");
+		assertEquals(Status.QUEUED, queue.whenDone(first.id()).get(5, TimeUnit.SECONDS).status());
+		assertEquals(first.id(), queue.submit("Don't Stop Me Now", "Queen").id());
+		assertEquals(1, searches.get());
+	}
+
+	@Test
+	void failsARequestSpotifyCouldNotBeReachedFor() throws Exception {
+		SongRequestQueue queue = new SongRequestQueue(executor, (title, artist) -> {
+			throw new IOException("Connection reset");
+		}, 8);
+
+		Ticket ticket = queue.submit("Don't Stop Me Now", "Queen");
+		assertEquals(Status.FAILED, queue.whenDone(ticket.id()).get(5, TimeUnit.SECONDS).status());
+		assertEquals(1, queue.getStats().failed());
+		assertEquals(0, queue.getStats().notFound());
+	}
+
+	@Test
+	void turnsRequestsAwayWhenFull() {
+		SongRequestQueue queue = new SongRequestQueue(executor, this::search, 1);
+
+		queue.submit("One", "Artist");
+		// wait for the first request to be taken off the queue and held by the search.
+		while (searches.get() == 0) {
+			Thread.onSpinWait();
+		}
+		queue.submit("Two", "Artist");
+		assertNull(queue.submit("Three", "Artist"));
+		assertEquals(1, queue.getStats().rejected());
+		release.countDown();
+	}
+}
@@ -0,0 +1,47 @@
+package com.vesta.rest_api.scheduling;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import com.vesta.rest_api.PlaybackSnapshot;
+import com.vesta.rest_api.Song;
+
+class PollingPolicyTests {
+
+	private static PlaybackSnapshot playing(int progressMs, int durationMs, boolean isPlaying) {
+		return new PlaybackSnapshot(new Song("Title", "Artist", null, "id"), isPlaying, progressMs, durationMs,
+				System.currentTimeMillis());
+	}
+
+	@Test
+	void pollsJustAfterTheSongEnds() {
+		PollingPolicy policy = new PollingPolicy();
+		long delay = policy.nextDelayMs(playing(200_000, 204_000, true), true, System.currentTimeMillis());
+
+		// allow for the few milliseconds between building the snapshot and asking.
+		assertEquals(4_000 + PollingPolicy.END_MARGIN_MS, delay, 50);
+	}
+
+	@Test
+	void capsTheIntervalWhileALongSongPlays() {
+		PollingPolicy policy = new PollingPolicy();
+		assertEquals(PollingPolicy.MAX_PLAYING_INTERVAL_MS,
+				policy.nextDelayMs(playing(0, 300_000, true), true, System.currentTimeMillis()));
+	}
+
+	@Test
+	void backsOffWhilePausedAndBoostsAfterARequest() {
+		PollingPolicy policy = new PollingPolicy();
+		long now = System.currentTimeMillis();
+		PlaybackSnapshot paused = playing(0, 300_000, false);
+
+		assertEquals(5_000, policy.nextDelayMs(paused, true, now));
+		assertEquals(10_000, policy.nextDelayMs(paused, true, now));
+		assertEquals(20_000, policy.nextDelayMs(paused, true, now));
+
+		policy.boost(now);
+		assertEquals(PollingPolicy.BOOST_INTERVAL_MS, policy.nextDelayMs(paused, true, now));
+		assertEquals(5_000, policy.nextDelayMs(paused, true, now + PollingPolicy.BOOST_WINDOW_MS));
+	}
+}
@@ -0,0 +1,82 @@
+package com.vesta.rest_api.session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.vesta.rest_api.http.HttpTransport;
+import com.vesta.rest_api.patterns.SpotifyUserSingleton;
+import com.vesta.rest_api.timer.HashedWheelTimer;
+
+class SessionRegistryTests {
+	private HashedWheelTimer timer;
+	private SessionRegistry registry;
+
+	@BeforeEach
+	void setUp() {
+		timer = new HashedWheelTimer(10, 64, 1);
+		SpotifyUserSingleton app = SpotifyUserSingleton.getInstance("id", "secret", "http://localhost/callback", timer);
+		registry = new SessionRegistry(app, new HttpTransport(1, 1, 100, 100, 100), timer);
+	}
+
+	@AfterEach
+	void tearDown() {
+		registry.close();
+		timer.close();
+	}
+
+	@Test
+	void keepsOneSessionPerUserAndBoard() {
+		Session first = registry.open(new SessionKey("alex", "kitchen"), "key");
+
+		// opening it again would hand its token to whoever asked, or swap its board.
+		assertNull(registry.open(new SessionKey("alex", "kitchen"), "other-key"));
+		Session office = registry.open(new SessionKey("alex", "office"), "key");
+		assertNotNull(office);
+		assertNotEquals(first.token(), office.token());
+		assertEquals(2, registry.getStats().sessions());
+		assertEquals(0, registry.getStats().connected());
+	}
+
+	@Test
+	void onlyTheTokenItWasOpenedWithOpensASession() {
+		SessionKey key = new SessionKey("alex", "kitchen");
+		Session session = registry.open(key, "key");
+
+		assertSame(session, registry.authorize(key, session.token()));
+		assertNull(registry.authorize(key, "guess"));
+		assertNull(registry.authorize(key, null));
+		assertNull(registry.authorize(new SessionKey("alex", "office"), session.token()));
+	}
+
+	@Test
+	void forgetsAbandonedLogins() {
+		Session session = registry.open(new SessionKey("sam", "hall"), "key");
+
+		long now = System.currentTimeMillis();
+		registry.newLogin(session.key(), now);
+		registry.newLogin(session.key(), now);
+		// only the newest login of a session is kept.
+		assertEquals(1, registry.getStats().pendingLogins());
+		String state = registry.newLogin(session.key(), now);
+		assertFalse(registry.completeLogin(state, "code", now + SessionRegistry.LOGIN_TTL_MS));
+		assertEquals(0, registry.getStats().pendingLogins());
+	}
+
+	@Test
+	void ignoresLoginsWithAnUnknownState() {
+		registry.open(new SessionKey("sam", "hall"), "key");
+
+		assertFalse(registry.completeLogin("not-a-state", "code"));
+		assertTrue(registry.close(new SessionKey("sam", "hall")));
+		assertNull(registry.get(new SessionKey("sam", "hall")));
+	}
+}
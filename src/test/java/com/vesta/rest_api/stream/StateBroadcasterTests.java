@@ -0,0 +1,86 @@
+package com.vesta.rest_api.stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.vesta.rest_api.Song;
+import com.vesta.rest_api.StateResponse;
+import com.vesta.rest_api.timer.HashedWheelTimer;
+
+class StateBroadcasterTests {
+	private HashedWheelTimer timer;
+	private StateBroadcaster broadcaster;
+	/** Writes to clients, held until the test runs them. */
+	private final Queue<Runnable> sends = new ConcurrentLinkedQueue<>();
+
+	@BeforeEach
+	void setUp() {
+		timer = new HashedWheelTimer(10, 64, 1);
+		broadcaster = new StateBroadcaster(timer, sends::add);
+	}
+
+	@AfterEach
+	void tearDown() {
+		broadcaster.close();
+		timer.close();
+	}
+
+	private static StateResponse state(String title) {
+		return new StateResponse(true, "user", true, new Song(title, "Artist", null), null);
+	}
+
+	@Test
+	void newClientsGetTheCurrentState() {
+		assertEquals(List.of(), broadcaster.missedEvents(-1));
+		broadcaster.publish(state("Nothing"));
+		List<StateBroadcaster.Event> missed = broadcaster.missedEvents(-1);
+
+		assertEquals(1, missed.size());
+		assertEquals("Nothing", missed.get(0).state().nowPlaying().getTitle());
+
+		broadcaster.publish(state("One"));
+		broadcaster.publish(state("Two"));
+		assertEquals(List.of(3L), ids(broadcaster.missedEvents(-1)));
+	}
+
+	@Test
+	void dropsClientsThatFallTooFarBehind() {
+		broadcaster.publish(state("Nothing"));
+		broadcaster.subscribe(null);
+		assertEquals(1, broadcaster.getStats().clients());
+
+		// nothing is written while publishing, the sends wait in the client's queue.
+		for (int i = 1; i < StateBroadcaster.CLIENT_QUEUE_SIZE; i++) {
+			broadcaster.publish(state("Song " + i));
+		}
+		assertEquals(1, sends.size());
+		assertEquals(1, broadcaster.getStats().clients());
+
+		broadcaster.publish(state("One too many"));
+		assertEquals(0, broadcaster.getStats().clients());
+		assertEquals(1, broadcaster.getStats().dropped());
+	}
+
+	@Test
+	void resumingClientsGetWhatTheyMissed() {
+		broadcaster.publish(state("One"));
+		broadcaster.publish(state("Two"));
+		broadcaster.publish(state("Three"));
+
+		assertEquals(List.of(2L, 3L), ids(broadcaster.missedEvents(1)));
+		assertEquals(List.of(), ids(broadcaster.missedEvents(3)));
+		// an ID from before a restart can't be resumed, so only the newest is sent.
+		assertEquals(List.of(3L), ids(broadcaster.missedEvents(40)));
+	}
+
+	private static List<Long> ids(List<StateBroadcaster.Event> events) {
+		return events.stream().map(StateBroadcaster.Event::id).toList();
+	}
+}
@@ -0,0 +1,56 @@
+package com.vesta.rest_api.stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vesta.rest_api.PlaybackSnapshot;
+import com.vesta.rest_api.Song;
+import com.vesta.rest_api.SpotifyIntegration.VersionedState;
+import com.vesta.rest_api.StateResponse;
+
+class StateResponseCacheTests {
+
+	private static VersionedState state(long version, String title) {
+		return new VersionedState(version,
+				new StateResponse(true, "user", true, new Song(title, "Artist", null), null));
+	}
+
+	@Test
+	void serializesEachVersionOnce() throws JsonProcessingException {
+		StateResponseCache cache = new StateResponseCache(new ObjectMapper());
+
+		StateResponseCache.Entry first = cache.get(state(1, "One"));
+		assertSame(first, cache.get(state(1, "One")));
+
+		StateResponseCache.Entry second = cache.get(state(2, "Two"));
+		assertNotEquals(first.etag(), second.etag());
+		assertTrue(new String(second.body()).contains("\"Two\""));
+	}
+
+	@Test
+	void matchesIfNoneMatchHeaders() {
+		assertTrue(StateResponseCache.matches("\"abc\"", "\"abc\""));
+		assertTrue(StateResponseCache.matches("\"x\", W/\"abc\"", "\"abc\""));
+		assertTrue(StateResponseCache.matches("*", "\"abc\""));
+		assertFalse(StateResponseCache.matches("\"abd\"", "\"abc\""));
+		assertFalse(StateResponseCache.matches(null, "\"abc\""));
+	}
+
+	@Test
+	void cachesUntilTheSongEnds() {
+		Song song = new Song("One", "Artist", null);
+		long now = System.currentTimeMillis();
+
+		assertEquals(12, StateResponseCache.maxAgeSeconds(new PlaybackSnapshot(song, true, 187_500, 200_000, now)));
+		assertEquals(StateResponseCache.PLAYING_MAX_AGE_SECONDS,
+				StateResponseCache.maxAgeSeconds(new PlaybackSnapshot(song, true, 0, 200_000, now)));
+		assertEquals(StateResponseCache.IDLE_MAX_AGE_SECONDS, StateResponseCache.maxAgeSeconds(null));
+	}
+}
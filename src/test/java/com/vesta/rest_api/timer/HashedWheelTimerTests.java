@@ -0,0 +1,63 @@
+package com.vesta.rest_api.timer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import com.vesta.rest_api.timer.HashedWheelTimer.Timeout;
+
+class HashedWheelTimerTests {
+
+	@Test
+	void runsTimeoutsFurtherAwayThanOneTurnOfTheWheel() throws InterruptedException {
+		// 8 buckets of 5ms, so the wheel turns every 40ms.
+		HashedWheelTimer timer = new HashedWheelTimer(5, 8, 1);
+		CountDownLatch done = new CountDownLatch(1);
+		long start = System.nanoTime();
+
+		timer.newTimeout(done::countDown, 120);
+
+		assertTrue(done.await(1, TimeUnit.SECONDS));
+		long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertTrue(elapsedMs >= 120, "fired after " + elapsedMs + "ms");
+		timer.close();
+	}
+
+	@Test
+	void cancelledTimeoutsNeverRun() throws InterruptedException {
+		HashedWheelTimer timer = new HashedWheelTimer(5, 8, 1);
+		AtomicBoolean ran = new AtomicBoolean();
+		CountDownLatch later = new CountDownLatch(1);
+
+		Timeout timeout = timer.newTimeout(() -> ran.set(true), 30);
+		timer.newTimeout(later::countDown, 60);
+		assertTrue(timeout.cancel());
+		assertFalse(timeout.cancel());
+
+		assertTrue(later.await(1, TimeUnit.SECONDS));
+		assertFalse(ran.get());
+		assertEquals(1, timer.getStats().cancelled());
+		timer.close();
+	}
+
+	@Test
+	void holdsManyPendingTimeouts() throws InterruptedException {
+		HashedWheelTimer timer = new HashedWheelTimer(10, 512, 2);
+		int count = 50_000;
+		CountDownLatch done = new CountDownLatch(count);
+
+		for (int i = 0; i < count; i++) {
+			timer.newTimeout(done::countDown, i % 200);
+		}
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(0, timer.getStats().pending());
+		timer.close();
+	}
+}
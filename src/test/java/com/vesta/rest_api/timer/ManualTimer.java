@@ -0,0 +1,112 @@
+package com.vesta.rest_api.timer;
+
+import java.util.PriorityQueue;
+
+/**
+ * Runs timeouts when the test moves its clock forward, instead of on the
+ * wheel thread. Tasks handed to {@link #getExecutor()} still run on the pool.
+ */
+public class ManualTimer extends HashedWheelTimer {
+	private final PriorityQueue<ManualTimeout> timeouts = new PriorityQueue<>();
+	private long added;
+	/**
+	 * Starts ahead of the wall clock, so a rate limiter created during the test
+	 * has already started.
+	 */
+	private long now = System.currentTimeMillis() + 60_000;
+
+	public ManualTimer() {
+		super(10, 2, 1);
+	}
+
+	/**
+	 * @return The test's clock, in epoch milliseconds.
+	 */
+	public synchronized long now() {
+		return now;
+	}
+
+	@Override
+	public synchronized Timeout newTimeout(Runnable task, long delayMs) {
+		ManualTimeout timeout = new ManualTimeout(task, now + Math.max(0, delayMs), added++);
+		timeouts.add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * Move the clock forward, running every timeout that comes due in order on
+	 * the calling thread.
+	 */
+	public void advance(long ms) {
+		long until;
+		synchronized (this) {
+			until = now + ms;
+		}
+		while (true) {
+			ManualTimeout timeout;
+			synchronized (this) {
+				if (timeouts.isEmpty() || timeouts.peek().deadline > until) {
+					now = until;
+					return;
+				}
+				timeout = timeouts.poll();
+				now = timeout.deadline;
+				if (timeout.cancelled) {
+					continue;
+				}
+				timeout.expired = true;
+			}
+			timeout.task.run();
+		}
+	}
+
+	private class ManualTimeout implements Timeout, Comparable<ManualTimeout> {
+		final Runnable task;
+		final long deadline;
+		final long order;
+		boolean cancelled;
+		boolean expired;
+
+		ManualTimeout(Runnable task, long deadline, long order) {
+			this.task = task;
+			this.deadline = deadline;
+			this.order = order;
+		}
+
+		@Override
+		public boolean cancel() {
+			synchronized (ManualTimer.this) {
+				if (cancelled || expired) {
+					return false;
+				}
+				cancelled = true;
+				return true;
+			}
+		}
+
+		@Override
+		public boolean isCancelled() {
+			synchronized (ManualTimer.this) {
+				return cancelled;
+			}
+		}
+
+		@Override
+		public boolean isExpired() {
+			synchronized (ManualTimer.this) {
+				return expired;
+			}
+		}
+
+		@Override
+		public long getDelayMs() {
+			return deadline - now();
+		}
+
+		@Override
+		public int compareTo(ManualTimeout other) {
+			int byDeadline = Long.compare(deadline, other.deadline);
+			return byDeadline != 0 ? byDeadline : Long.compare(order, other.order);
+		}
+	}
+}
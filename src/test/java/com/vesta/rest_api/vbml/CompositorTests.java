@@ -0,0 +1,58 @@
+package com.vesta.rest_api.vbml;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.vesta.rest_api.Component;
+
+class CompositorTests {
+
+	@Test
+	void stacksComponentsAndTranslatesColorCodes() {
+		Component nowPlaying = new Component();
+		nowPlaying.setAlign("top");
+		nowPlaying.setJustify("left");
+		nowPlaying.setHeight(3);
+		nowPlaying.setBody("{66} Now Playing\n{64} Hey Jude\n{63} The Beatles");
+		Component upNext = new Component();
+		upNext.setAlign("top");
+		upNext.setJustify("left");
+		upNext.setHeight(3);
+		upNext.setBody("\n{65} Next Up\n{67} Let It Be");
+
+		int[][] layout = Compositor.compose(nowPlaying, upNext);
+
+		assertEquals(Compositor.ROWS, layout.length);
+		assertEquals(Compositor.COLUMNS, layout[0].length);
+		// {66} N O W _ P
+		assertArrayEquals(new int[] { 66, 0, 14, 15, 23, 0, 16 }, Arrays.copyOf(layout[0], 7));
+		assertEquals(64, layout[1][0]);
+		// the next up component starts with an empty line.
+		assertArrayEquals(new int[Compositor.COLUMNS], layout[3]);
+		assertEquals(65, layout[4][0]);
+		assertEquals(67, layout[5][0]);
+	}
+
+	@Test
+	void centersAndWrapsLongText() {
+		Component component = new Component();
+		component.setBody("abcdefghij klmnopqrst uvwxyz");
+
+		int[][] layout = Compositor.compose(component);
+
+		// two lines in a six row component are centered on rows 2 and 3.
+		assertArrayEquals(new int[Compositor.COLUMNS], layout[1]);
+		assertEquals(1, layout[2][0]);
+		assertEquals(0, layout[2][10]);
+		assertEquals(21, layout[3][8]);
+	}
+
+	@Test
+	void hardBreaksWordsWiderThanTheBoard() {
+		assertEquals(2, Compositor.wrap("ABCDEFGHIJKLMNOPQRSTUVWXYZ", Compositor.COLUMNS).size());
+	}
+}
@@ -0,0 +1,53 @@
+package com.vesta.rest_api.vbml;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+class MosaicTests {
+
+	private static BufferedImage image(int width, int height, Color background) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setColor(background);
+		graphics.fillRect(0, 0, width, height);
+		graphics.dispose();
+		return image;
+	}
+
+	@Test
+	void matchesEachCellToTheClosestChip() {
+		// 2x2 flaps are 0.6 wide for every 1 tall, so nothing is cropped.
+		BufferedImage image = image(60, 100, new Color(0x0080D0));
+		Graphics2D graphics = image.createGraphics();
+		graphics.setColor(Color.RED);
+		graphics.fillRect(0, 0, 30, 100);
+		graphics.setColor(Color.WHITE);
+		graphics.fillRect(30, 50, 30, 50);
+		graphics.dispose();
+
+		int[][] chips = Mosaic.render(image, 2, 2);
+
+		assertArrayEquals(new int[] { 63, 67 }, chips[0]);
+		assertArrayEquals(new int[] { 63, 69 }, chips[1]);
+		assertEquals("{63}{67}\n{63}{69}", Mosaic.toTemplate(chips));
+	}
+
+	@Test
+	void cropsAroundTheCenterInsteadOfStretching() {
+		// a single flap of a wide image only sees the middle, which is white.
+		BufferedImage image = image(300, 100, Color.BLACK);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setColor(Color.WHITE);
+		graphics.fillRect(110, 0, 80, 100);
+		graphics.dispose();
+
+		assertArrayEquals(new int[] { 69 }, Mosaic.render(image, 1, 1)[0]);
+		assertEquals(70, Mosaic.closestChip(20, 20, 30));
+	}
+}
@@ -0,0 +1,53 @@
+package com.vesta.rest_api.vbml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+class TitleNormalizerTests {
+
+	@Test
+	void stripsFeaturesAndVersionTags() {
+		assertEquals("Hey Jude", TitleNormalizer.stripTags("Hey Jude - Remastered 2015"));
+		assertEquals("Stay", TitleNormalizer.stripTags("Stay (with Justin Bieber)"));
+		assertEquals("Creep", TitleNormalizer.stripTags("Creep [Radio Edit]"));
+		assertEquals("Sunflower", TitleNormalizer.stripTags("Sunflower feat. Swae Lee"));
+		assertEquals("Hey Ya!", TitleNormalizer.stripTags("Hey Ya! (2003 Remaster) - Single Version"));
+		// a hyphen that is part of the title stays.
+		assertEquals("Anti-Hero", TitleNormalizer.stripTags("Anti-Hero"));
+	}
+
+	@Test
+	void transliteratesToTheBoardCharacterSet() {
+		assertEquals("Beyonce", TitleNormalizer.transliterate("Beyoncé"));
+		assertEquals("Sigur Ros", TitleNormalizer.transliterate("Sigur Rós"));
+		assertEquals("STRASSE", TitleNormalizer.transliterate("STRAßE"));
+		assertEquals("Don't Stop", TitleNormalizer.transliterate("Don’t Stop"));
+		// template tags and characters with no equivalent are dropped.
+		assertEquals("Hello 63", TitleNormalizer.transliterate("Hello {63} こん"));
+	}
+
+	@Test
+	void showsPlaceholdersWhenNothingCanBeTransliterated() {
+		assertEquals("??? ??", TitleNormalizer.transliterate("\u4E09\u6708\u306E \u30D1\u30F3"));
+		// a character outside the basic plane is still one placeholder.
+		assertEquals("?", TitleNormalizer.transliterate("\uD83C\uDFB5"));
+		assertEquals("", TitleNormalizer.transliterate("  "));
+	}
+
+	@Test
+	void fitsOnOneLineAtAWordBoundary() {
+		assertEquals("Short", TitleNormalizer.fit("Short", 20));
+		assertEquals("Somebody That I Used", TitleNormalizer.fit("Somebody That I Used To Know", 20));
+		assertEquals("Supercalifragilistic", TitleNormalizer.fit("Supercalifragilisticexpialidocious", 20));
+	}
+
+	@Test
+	void memoizesPerTrack() {
+		TitleNormalizer.Normalized first = TitleNormalizer.normalize("track-1", "Café (feat. X)", "Art");
+
+		assertEquals("Cafe", first.title());
+		assertSame(first, TitleNormalizer.normalize("track-1", "Café (feat. X)", "Art"));
+	}
+}